@@ -0,0 +1,171 @@
+package com.dyrnq.dbops;
+
+import com.dyrnq.dbops.command.DatasourceOption;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.noear.solon.Solon;
+import org.noear.solon.core.Props;
+import picocli.CommandLine;
+
+import java.lang.reflect.AnnotatedElement;
+import java.util.*;
+
+/**
+ * Decides, from the parsed command line, how much of the Solon context a command needs before it runs.
+ * <p>
+ * Help, version and commands that never open a connection run without starting Solon. Everything else
+ * starts it with {@code solon.dataSources} trimmed to the datasources the command names through its
+ * {@link DatasourceOption} options, so only those beans are built. Commands without such an option, an
+ * empty datasource list (every configured datasource) and {@code -Ddbops.bootstrap=full} keep the whole
+ * configuration.
+ */
+@Slf4j
+public class Bootstrap {
+    public enum Mode {
+        // no Solon context at all
+        NONE,
+        // configuration only, no datasource
+        CONFIG,
+        // datasources matching the names or glob patterns
+        SELECTED,
+        // every configured datasource
+        ALL
+    }
+
+    static final Set<String> NO_CONTEXT = Set.of("version", "bcrypt");
+    static final Set<String> CONFIG_ONLY = Set.of("report");
+    // the shell can switch to any datasource with use
+    static final Set<String> FULL_CONTEXT = Set.of("shell");
+    static final String DATASOURCES_PREFIX = "solon.dataSources.";
+
+    private final Mode mode;
+    private final Set<String> patterns;
+
+    private Bootstrap(Mode mode, Set<String> patterns) {
+        this.mode = mode;
+        this.patterns = patterns;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public static Bootstrap plan(CommandLine cmd, String[] args) {
+        if ("full".equals(System.getProperty("dbops.bootstrap"))) {
+            return new Bootstrap(Mode.ALL, Set.of());
+        }
+        CommandLine.ParseResult parsed;
+        try {
+            parsed = cmd.parseArgs(args);
+        } catch (CommandLine.ParameterException e) {
+            // execute reports the error, which needs no context
+            return new Bootstrap(Mode.NONE, Set.of());
+        }
+        if (parsed.isUsageHelpRequested() || parsed.isVersionHelpRequested() || !parsed.hasSubcommand()) {
+            return new Bootstrap(Mode.NONE, Set.of());
+        }
+        CommandLine.ParseResult sub = parsed.subcommand();
+        while (sub.hasSubcommand()) {
+            sub = sub.subcommand();
+        }
+        if (sub.isUsageHelpRequested() || sub.isVersionHelpRequested()) {
+            return new Bootstrap(Mode.NONE, Set.of());
+        }
+        String name = sub.commandSpec().name();
+        if (NO_CONTEXT.contains(name)) {
+            return new Bootstrap(Mode.NONE, Set.of());
+        }
+        if (FULL_CONTEXT.contains(name)) {
+            return new Bootstrap(Mode.ALL, Set.of());
+        }
+        if (CONFIG_ONLY.contains(name)) {
+            return new Bootstrap(Mode.CONFIG, Set.of());
+        }
+
+        Set<String> patterns = new LinkedHashSet<>();
+        boolean found = false;
+        for (CommandLine.Model.OptionSpec option : sub.commandSpec().options()) {
+            if (!isDatasourceOption(option)) {
+                continue;
+            }
+            Object value = option.getValue();
+            if (value == null && !option.isMultiValue()) {
+                // an optional single datasource that was not given
+                continue;
+            }
+            found = true;
+            Collection<?> values = value instanceof Collection<?> c ? c : value == null ? List.of() : List.of(value);
+            if (values.isEmpty()) {
+                // an unset datasource list means every configured datasource
+                return new Bootstrap(Mode.ALL, Set.of());
+            }
+            for (Object v : values) {
+                for (String part : String.valueOf(v).split(",")) {
+                    if (StringUtils.isNotBlank(part)) {
+                        patterns.add(part.trim());
+                    }
+                }
+            }
+        }
+        if (!found) {
+            return new Bootstrap(Mode.ALL, Set.of());
+        }
+        return new Bootstrap(Mode.SELECTED, patterns);
+    }
+
+    static boolean isDatasourceOption(CommandLine.Model.OptionSpec option) {
+        return option.userObject() instanceof AnnotatedElement element && element.isAnnotationPresent(DatasourceOption.class);
+    }
+
+    /**
+     * Removes the {@code solon.dataSources} entries the command does not use, before plugins build them.
+     */
+    public void apply(Props cfg) {
+        if (mode == Mode.ALL || mode == Mode.NONE) {
+            return;
+        }
+        Set<String> kept = new TreeSet<>();
+        Set<String> dropped = new TreeSet<>();
+        for (String key : cfg.stringPropertyNames()) {
+            if (!key.startsWith(DATASOURCES_PREFIX)) {
+                continue;
+            }
+            String plain = datasourceName(key);
+            if (mode == Mode.SELECTED && patterns.stream().anyMatch(p -> FilenameUtils.wildcardMatch(plain, p))) {
+                kept.add(plain);
+                continue;
+            }
+            dropped.add(plain);
+            cfg.remove(key);
+        }
+        log.debug("bootstrap {}: datasources {} kept, {} skipped", mode, kept, dropped);
+    }
+
+    /**
+     * Datasource names from {@code solon.dataSources} of the running context, in configuration order.
+     */
+    public static List<String> configuredDatasources() {
+        return configuredDatasources(Solon.cfg());
+    }
+
+    static List<String> configuredDatasources(Props cfg) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String key : cfg.stringPropertyNames()) {
+            if (key.startsWith(DATASOURCES_PREFIX)) {
+                names.add(datasourceName(key));
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * The name in a {@code solon.dataSources.<name>.<property>} key; a trailing {@code !} marks the typed
+     * default bean and is not part of the name.
+     */
+    private static String datasourceName(String key) {
+        String name = StringUtils.substringBefore(key.substring(DATASOURCES_PREFIX.length()), ".");
+        return Strings.CS.removeEnd(name, "!");
+    }
+}
@@ -25,7 +25,22 @@ import java.io.File;
                 Info.class,
                 Process.class,
                 Tables.class,
-                Db.class
+                Db.class,
+                Top.class,
+                Digest.class,
+                IndexAdvisor.class,
+                Locks.class,
+                TableStats.class,
+                Replicas.class,
+                Serve.class,
+                VarDiff.class,
+                Recorder.class,
+                Report.class,
+                BinlogStats.class,
+                Explain.class,
+                PlanDiff.class,
+                Replay.class,
+                Shell.class
         },
         mixinStandardHelpOptions = true,
         showDefaultValues = true
@@ -48,23 +63,26 @@ public class Main implements Runnable {
     }
 
     public static void main(String[] args) {
-
-        Solon.start(Main.class, args, app -> {
-            String homeDir = homeAbsolutePath("", "." + app.cfg().appName());
-            String[] files = new String[]{"config.yaml", "config.yml"};
-            for (String file : files) {
-                String yamlFile = StringUtils.joinWith(File.separator, homeDir, file);
-                if (FileUtil.exist(yamlFile)) {
-                    log.info("load config yaml {}", yamlFile);
-                    app.cfg().loadAdd(yamlFile);
-                }
-            }
-
-        });
-
         Main app = new Main();
         CommandLine cmd = new CommandLine(app);
 
+        // parse first, so help, version and bcrypt skip the context and other commands only build their datasources
+        Bootstrap bootstrap = Bootstrap.plan(cmd, args);
+        if (bootstrap.mode() != Bootstrap.Mode.NONE) {
+            Solon.start(Main.class, args, solon -> {
+                String homeDir = homeAbsolutePath("", "." + solon.cfg().appName());
+                String[] files = new String[]{"config.yaml", "config.yml"};
+                for (String file : files) {
+                    String yamlFile = StringUtils.joinWith(File.separator, homeDir, file);
+                    if (FileUtil.exist(yamlFile)) {
+                        log.info("load config yaml {}", yamlFile);
+                        solon.cfg().loadAdd(yamlFile);
+                    }
+                }
+                bootstrap.apply(solon.cfg());
+            });
+        }
+
         int code = cmd.execute(args);
 
         System.exit(code);
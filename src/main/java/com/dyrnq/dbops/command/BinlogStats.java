@@ -0,0 +1,329 @@
+package com.dyrnq.dbops.command;
+
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "binlog-stats", description = "binlog write rate, retention estimate and event volume by table")
+@Slf4j
+public class BinlogStats extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"-i", "--interval"}, description = "seconds between the two position samples", defaultValue = "10")
+    int interval;
+    @CommandLine.Option(names = {"-n", "--count"}, description = "number of rate samples, 0 runs until interrupted", defaultValue = "1")
+    int count;
+    @CommandLine.Option(names = {"--events"}, description = "aggregate SHOW BINLOG EVENTS by table and event type")
+    boolean events;
+    @CommandLine.Option(names = {"--log"}, split = ",", description = "binary logs to read with --events, defaults to the newest")
+    List<String> logs;
+    @CommandLine.Option(names = {"--last"}, description = "read the newest N binary logs with --events", defaultValue = "1")
+    int last;
+    @CommandLine.Option(names = {"--page-size"}, description = "events fetched per SHOW BINLOG EVENTS call", defaultValue = "10000")
+    int pageSize;
+    @CommandLine.Option(names = {"--max-events"}, description = "stop after this many events per log, 0 reads the whole log", defaultValue = "0")
+    long maxEvents;
+    @CommandLine.Option(names = {"--top"}, description = "tables to print", defaultValue = "30")
+    int top;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    // "table_id: 123 (db.tbl)" in the Info column of a Table_map event
+    static final Pattern TABLE_MAP = Pattern.compile("table_id: (\\d+) \\((.+)\\)");
+    static final Pattern TABLE_ID = Pattern.compile("table_id: (\\d+)");
+
+    /**
+     * Binary log sizes and the current write position at one instant.
+     */
+    static class Position {
+        long nanos;
+        final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>();
+        String file;
+        long pos;
+
+        long totalSize() {
+            long total = 0;
+            for (long size : sizes.values()) {
+                total += size;
+            }
+            return total;
+        }
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        try (Connection conn = sqlUtils.getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            long expireSeconds = expireSeconds(stmt);
+            Position previous = position(stmt);
+            if (previous.file == null) {
+                System.err.println("binary logging is disabled on " + ds);
+                return 1;
+            }
+            for (int n = 0; count <= 0 || n < count; n++) {
+                TimeUnit.SECONDS.sleep(Math.max(interval, 1));
+                Position current = position(stmt);
+                print(rate(previous, current, expireSeconds));
+                previous = current;
+            }
+            if (events) {
+                List<String> names = logs;
+                if (names == null || names.isEmpty()) {
+                    List<String> all = new ArrayList<>(previous.sizes.keySet());
+                    names = all.subList(Math.max(0, all.size() - Math.max(last, 1)), all.size());
+                }
+                for (String name : names) {
+                    print(events(conn, name));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            log.error("binlog-stats {} failed", ds, e);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static long expireSeconds(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT @@binlog_expire_logs_seconds")) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            // before 8.0 only expire_logs_days exists
+            log.debug("binlog_expire_logs_seconds unavailable: {}", e.getMessage());
+        }
+        try (ResultSet rs = stmt.executeQuery("SELECT @@expire_logs_days")) {
+            return rs.next() ? Math.round(rs.getDouble(1) * 86400) : 0;
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    static Position position(Statement stmt) throws SQLException {
+        Position p = new Position();
+        p.nanos = System.nanoTime();
+        try (ResultSet rs = stmt.executeQuery("SHOW BINARY LOGS")) {
+            while (rs.next()) {
+                p.sizes.put(rs.getString(1), rs.getLong(2));
+            }
+        } catch (SQLException e) {
+            // ER_NO_BINARY_LOGGING
+            if (e.getErrorCode() == 1381) {
+                return p;
+            }
+            throw e;
+        }
+        try (ResultSet rs = binaryLogStatus(stmt)) {
+            if (rs.next()) {
+                p.file = rs.getString(1);
+                p.pos = rs.getLong(2);
+            }
+        }
+        return p;
+    }
+
+    private static ResultSet binaryLogStatus(Statement stmt) throws SQLException {
+        try {
+            return stmt.executeQuery("SHOW BINARY LOG STATUS");
+        } catch (SQLException e) {
+            // SHOW BINARY LOG STATUS needs 8.2, SHOW MASTER STATUS is gone in 8.4
+            return stmt.executeQuery("SHOW MASTER STATUS");
+        }
+    }
+
+    /**
+     * Bytes written between two positions, following rotations through the sizes of the closed logs.
+     */
+    static long written(Position from, Position to) {
+        if (Objects.equals(from.file, to.file)) {
+            return Math.max(0, to.pos - from.pos);
+        }
+        long bytes = 0;
+        boolean inRange = false;
+        for (Map.Entry<String, Long> entry : to.sizes.entrySet()) {
+            if (entry.getKey().equals(from.file)) {
+                inRange = true;
+                bytes += Math.max(0, entry.getValue() - from.pos);
+            } else if (entry.getKey().equals(to.file)) {
+                bytes += to.pos;
+                break;
+            } else if (inRange) {
+                bytes += entry.getValue();
+            }
+        }
+        return bytes;
+    }
+
+    private Map<String, Object> rate(Position from, Position to, long expireSeconds) {
+        double seconds = (to.nanos - from.nanos) / 1_000_000_000d;
+        long bytes = written(from, to);
+        double bytesPerSecond = seconds > 0 ? bytes / seconds : 0;
+        long total = to.totalSize();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("datasource", ds);
+        m.put("file", to.file);
+        m.put("position", to.pos);
+        m.put("logs", to.sizes.size());
+        m.put("total_bytes", total);
+        m.put("written_bytes", bytes);
+        m.put("seconds", seconds);
+        m.put("bytes_per_second", bytesPerSecond);
+        m.put("bytes_per_day", (long) (bytesPerSecond * 86400));
+        m.put("expire_seconds", expireSeconds);
+        // steady state disk use if this rate holds for a whole retention period
+        m.put("retained_bytes_estimate", expireSeconds > 0 ? (long) (bytesPerSecond * expireSeconds) : null);
+        // how much history the logs on disk cover at this rate
+        m.put("history_seconds_estimate", bytesPerSecond > 0 ? (long) (total / bytesPerSecond) : null);
+        return m;
+    }
+
+    /**
+     * Reads one binary log page by page, resuming each page from the end position of the previous
+     * page's last event, and keeps only the running aggregates.
+     */
+    private Map<String, Object> events(Connection conn, String name) throws SQLException {
+        Map<String, long[]> byType = new TreeMap<>();
+        Map<String, long[]> byTable = new HashMap<>();
+        long total = 0;
+        long bytes = 0;
+        long from = 4;
+        // a statement maps all its tables before its rows events, so rows are matched by table_id
+        Map<String, String> tableIds = new HashMap<>();
+        long started = System.currentTimeMillis();
+        try (PreparedStatement ps = conn.prepareStatement("SHOW BINLOG EVENTS IN ? FROM ? LIMIT ?")) {
+            while (maxEvents <= 0 || total < maxEvents) {
+                ps.setString(1, name);
+                ps.setLong(2, from);
+                ps.setInt(3, pageSize);
+                int rows = 0;
+                long next = from;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        long pos = rs.getLong("Pos");
+                        long end = rs.getLong("End_log_pos");
+                        String type = rs.getString("Event_type");
+                        long size = Math.max(0, end - pos);
+                        next = end;
+                        total++;
+                        bytes += size;
+                        long[] t = byType.computeIfAbsent(type, k -> new long[2]);
+                        t[0]++;
+                        t[1] += size;
+                        if ("Table_map".equals(type)) {
+                            Matcher m = TABLE_MAP.matcher(StringUtils.defaultString(rs.getString("Info")));
+                            if (m.find()) {
+                                tableIds.put(m.group(1), m.group(2));
+                            }
+                        } else if (type.contains("_rows")) {
+                            Matcher m = TABLE_ID.matcher(StringUtils.defaultString(rs.getString("Info")));
+                            String table = m.find() ? tableIds.get(m.group(1)) : null;
+                            if (table != null) {
+                                // {events, bytes} for write, update, delete
+                                long[] b = byTable.computeIfAbsent(table, k -> new long[6]);
+                                int op = type.startsWith("Write") ? 0 : type.startsWith("Update") ? 1 : 2;
+                                b[op * 2]++;
+                                b[op * 2 + 1] += size;
+                            }
+                        }
+                    }
+                }
+                if (rows < pageSize || next <= from) {
+                    break;
+                }
+                from = next;
+            }
+        }
+
+        List<Map.Entry<String, long[]>> tables = new ArrayList<>(byTable.entrySet());
+        tables.sort((a, b) -> Long.compare(b.getValue()[1] + b.getValue()[3] + b.getValue()[5],
+                a.getValue()[1] + a.getValue()[3] + a.getValue()[5]));
+        List<Map<String, Object>> tableRows = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : tables.subList(0, Math.min(top, tables.size()))) {
+            long[] b = entry.getValue();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("table", entry.getKey());
+            row.put("write_events", b[0]);
+            row.put("write_bytes", b[1]);
+            row.put("update_events", b[2]);
+            row.put("update_bytes", b[3]);
+            row.put("delete_events", b[4]);
+            row.put("delete_bytes", b[5]);
+            tableRows.add(row);
+        }
+        Map<String, Object> typeRows = new LinkedHashMap<>();
+        byType.forEach((type, t) -> typeRows.put(type, Map.of("events", t[0], "bytes", t[1])));
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("datasource", ds);
+        m.put("log", name);
+        m.put("events", total);
+        m.put("bytes", bytes);
+        m.put("truncated", maxEvents > 0 && total >= maxEvents);
+        m.put("elapsed_ms", System.currentTimeMillis() - started);
+        m.put("by_type", typeRows);
+        m.put("by_table", tableRows);
+        return m;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void print(Map<String, Object> m) {
+        if ("json".equals(format)) {
+            System.out.println(new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(m));
+            return;
+        }
+        if (!m.containsKey("by_type")) {
+            Object retained = m.get("retained_bytes_estimate");
+            Object history = m.get("history_seconds_estimate");
+            System.out.printf("%s %s:%s  %.1f KB/s  %.1f MB/day  on disk %.1f MB in %s logs  expire %s  retained at this rate %s  history on disk %s%n",
+                    ds, m.get("file"), m.get("position"), (double) m.get("bytes_per_second") / 1024,
+                    (long) m.get("bytes_per_day") / 1048576d, (long) m.get("total_bytes") / 1048576d, m.get("logs"),
+                    duration((long) m.get("expire_seconds")),
+                    retained == null ? "-" : String.format("%.1f MB", (long) retained / 1048576d),
+                    history == null ? "-" : duration((long) history));
+            return;
+        }
+        System.out.printf("%s %s: %d events, %.1f MB%s, %d ms%n%n", ds, m.get("log"), m.get("events"),
+                (long) m.get("bytes") / 1048576d, (boolean) m.get("truncated") ? " (truncated)" : "", m.get("elapsed_ms"));
+        System.out.printf("%-28s %12s %12s%n", "EVENT_TYPE", "EVENTS", "MB");
+        ((Map<String, Map<String, Long>>) m.get("by_type")).forEach((type, t) ->
+                System.out.printf("%-28s %12d %12.2f%n", type, t.get("events"), t.get("bytes") / 1048576d));
+        System.out.println();
+        System.out.printf("%-48s %10s %10s %10s %10s %10s %10s%n", "TABLE", "WRITES", "WRITE_MB", "UPDATES", "UPDATE_MB", "DELETES", "DELETE_MB");
+        for (Map<String, Object> row : (List<Map<String, Object>>) m.get("by_table")) {
+            System.out.printf("%-48s %10d %10.2f %10d %10.2f %10d %10.2f%n", StringUtils.abbreviate((String) row.get("table"), 48),
+                    row.get("write_events"), (long) row.get("write_bytes") / 1048576d,
+                    row.get("update_events"), (long) row.get("update_bytes") / 1048576d,
+                    row.get("delete_events"), (long) row.get("delete_bytes") / 1048576d);
+        }
+        System.out.println();
+    }
+
+    private static String duration(long seconds) {
+        if (seconds <= 0) {
+            return "off";
+        }
+        if (seconds >= 86400) {
+            return String.format("%.1fd", seconds / 86400d);
+        }
+        return seconds >= 3600 ? String.format("%.1fh", seconds / 3600d) : seconds + "s";
+    }
+}
@@ -7,6 +7,7 @@ public class CommonOptions {
     boolean verbose;
     @CommandLine.Option(names = {"-s", "--sql"}, description = "sql", defaultValue = "select 1=1;")
     String sql;
+    @DatasourceOption
     @CommandLine.Option(names = {"--ds", "-ds"}, description = "datasource name", defaultValue = "default")
     String ds;
 }
@@ -0,0 +1,16 @@
+package com.dyrnq.dbops.command;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks an option whose values name datasources (comma separated names or glob patterns).
+ * <p>
+ * {@link com.dyrnq.dbops.Bootstrap} only builds the datasources named by marked options, so every option a
+ * command passes to {@code SqlUtils.ofName} must carry it. An unset multi-value option means every configured
+ * datasource; an unset single-value option names none.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DatasourceOption {
+}
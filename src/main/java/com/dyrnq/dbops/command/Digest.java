@@ -0,0 +1,278 @@
+package com.dyrnq.dbops.command;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONUtil;
+import com.dyrnq.dbops.utils.LongIntMap;
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "digest", description = "rank statement digests by the change in performance_schema counters")
+@Slf4j
+public class Digest extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"-i", "--interval"}, description = "seconds between the two snapshots", defaultValue = "10")
+    int interval;
+    @CommandLine.Option(names = {"--baseline"}, description = "compare against a snapshot file saved with --save instead of sampling twice")
+    String baseline;
+    @CommandLine.Option(names = {"--save"}, description = "write the current snapshot to this file and exit")
+    String save;
+    @CommandLine.Option(names = {"--top"}, description = "number of digests to report", defaultValue = "20")
+    int top;
+    @CommandLine.Option(names = {"--order-by"}, description = "latency, count, rows_examined, examined_per_sent, tmp_disk_tables, no_index_used", defaultValue = "latency")
+    String orderBy;
+    @CommandLine.Option(names = {"--schema"}, description = "only digests of this schema")
+    String schema;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json,text)", defaultValue = "text")
+    String format;
+
+    static final String SQL = "SELECT SCHEMA_NAME, DIGEST, DIGEST_TEXT, COUNT_STAR, SUM_TIMER_WAIT, SUM_ROWS_EXAMINED, " +
+            "SUM_ROWS_SENT, SUM_CREATED_TMP_DISK_TABLES, SUM_NO_INDEX_USED + SUM_NO_GOOD_INDEX_USED, SUM_ERRORS " +
+            "FROM performance_schema.events_statements_summary_by_digest WHERE DIGEST IS NOT NULL";
+    static final Gson GSON = new Gson();
+
+    @Override
+    public Integer call() throws Exception {
+        if (!List.of("latency", "count", "rows_examined", "examined_per_sent", "tmp_disk_tables", "no_index_used").contains(orderBy)) {
+            System.err.println("unsupported --order-by " + orderBy);
+            return 1;
+        }
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        Snapshot before;
+        Snapshot after;
+        try (Connection conn = sqlUtils.getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            if (StringUtils.isNotBlank(save)) {
+                Snapshot snapshot = Snapshot.read(stmt);
+                snapshot.trim();
+                FileUtil.writeString(GSON.toJson(snapshot), save, StandardCharsets.UTF_8);
+                System.out.println("saved " + snapshot.size + " digests to " + save);
+                return 0;
+            }
+            if (StringUtils.isNotBlank(baseline)) {
+                before = GSON.fromJson(FileUtil.readString(baseline, StandardCharsets.UTF_8), Snapshot.class);
+                before.reindex();
+            } else {
+                before = Snapshot.read(stmt);
+                TimeUnit.SECONDS.sleep(Math.max(interval, 1));
+            }
+            after = Snapshot.read(stmt);
+        } catch (SQLException e) {
+            System.err.println("reading events_statements_summary_by_digest failed: " + e.getMessage());
+            log.error(e.getMessage(), e);
+            return 1;
+        }
+
+        Snapshot delta = after.minus(before);
+        List<Map<String, Object>> report = report(delta, rank(delta));
+        double seconds = (after.takenAt - before.takenAt) / 1000d;
+        if ("json".equals(format)) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("seconds", seconds);
+            out.put("digests", delta.size);
+            out.put("order_by", orderBy);
+            out.put("top", report);
+            System.out.println(JSONUtil.toJsonPrettyStr(out));
+        } else {
+            printText(report, seconds, delta.size);
+        }
+        return 0;
+    }
+
+    /**
+     * Indexes of the top digests by --order-by, kept in a bounded heap so ranking is O(n log top).
+     */
+    private int[] rank(Snapshot d) {
+        double[] metric = new double[d.size];
+        for (int i = 0; i < d.size; i++) {
+            metric[i] = switch (orderBy) {
+                case "count" -> d.count[i];
+                case "rows_examined" -> d.rowsExamined[i];
+                case "examined_per_sent" -> (double) d.rowsExamined[i] / Math.max(d.rowsSent[i], 1);
+                case "tmp_disk_tables" -> d.tmpDiskTables[i];
+                case "no_index_used" -> d.noIndexUsed[i];
+                default -> d.latency[i];
+            };
+        }
+        int limit = Math.max(top, 1);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(i -> metric[i]));
+        for (int i = 0; i < d.size; i++) {
+            if (d.count[i] == 0 || metric[i] <= 0 || (schema != null && !schema.equals(d.schema[i]))) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(i);
+            } else if (metric[i] > metric[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int j = result.length - 1; j >= 0; j--) {
+            result[j] = heap.poll();
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> report(Snapshot d, int[] ranked) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i : ranked) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("schema", d.schema[i]);
+            item.put("digest", d.digest[i]);
+            item.put("count", d.count[i]);
+            // timers are picoseconds
+            item.put("total_latency_ms", Math.round(d.latency[i] / 1e7) / 100d);
+            item.put("avg_latency_ms", Math.round(d.latency[i] / 1e7 / d.count[i]) / 100d);
+            item.put("rows_examined", d.rowsExamined[i]);
+            item.put("rows_sent", d.rowsSent[i]);
+            item.put("examined_per_sent", Math.round(100d * d.rowsExamined[i] / Math.max(d.rowsSent[i], 1)) / 100d);
+            item.put("tmp_disk_tables", d.tmpDiskTables[i]);
+            item.put("no_index_used", d.noIndexUsed[i]);
+            item.put("errors", d.errors[i]);
+            item.put("digest_text", d.text[i]);
+            list.add(item);
+        }
+        return list;
+    }
+
+    private static void printText(List<Map<String, Object>> report, double seconds, int digests) {
+        System.out.printf("%d digests changed over %.1fs%n%n", digests, seconds);
+        System.out.printf("%-4s %-16s %10s %14s %12s %14s %12s %10s %8s %8s  %s%n",
+                "#", "SCHEMA", "COUNT", "TOTAL_MS", "AVG_MS", "ROWS_EXAM", "ROWS_SENT", "EXAM/SENT", "TMP_DISK", "NO_IDX", "DIGEST_TEXT");
+        int rank = 1;
+        for (Map<String, Object> item : report) {
+            System.out.printf("%-4d %-16s %10d %14.2f %12.2f %14d %12d %10.2f %8d %8d  %s%n",
+                    rank++, StringUtils.abbreviate(StringUtils.defaultString((String) item.get("schema")), 16),
+                    item.get("count"), item.get("total_latency_ms"), item.get("avg_latency_ms"),
+                    item.get("rows_examined"), item.get("rows_sent"), item.get("examined_per_sent"),
+                    item.get("tmp_disk_tables"), item.get("no_index_used"),
+                    StringUtils.abbreviate(StringUtils.defaultString((String) item.get("digest_text")), 120));
+        }
+    }
+
+    /**
+     * Column-oriented copy of the digest summary, indexed by a 64-bit key derived from schema and digest hash.
+     */
+    static class Snapshot {
+        long takenAt;
+        int size;
+        String[] schema = new String[1024];
+        String[] digest = new String[1024];
+        String[] text = new String[1024];
+        long[] count = new long[1024];
+        long[] latency = new long[1024];
+        long[] rowsExamined = new long[1024];
+        long[] rowsSent = new long[1024];
+        long[] tmpDiskTables = new long[1024];
+        long[] noIndexUsed = new long[1024];
+        long[] errors = new long[1024];
+        transient LongIntMap index = new LongIntMap(1024);
+
+        static Snapshot read(Statement stmt) throws SQLException {
+            Snapshot s = new Snapshot();
+            s.takenAt = System.currentTimeMillis();
+            try (ResultSet rs = stmt.executeQuery(SQL)) {
+                while (rs.next()) {
+                    int i = s.add(rs.getString(1), rs.getString(2), rs.getString(3));
+                    s.count[i] = rs.getLong(4);
+                    s.latency[i] = rs.getLong(5);
+                    s.rowsExamined[i] = rs.getLong(6);
+                    s.rowsSent[i] = rs.getLong(7);
+                    s.tmpDiskTables[i] = rs.getLong(8);
+                    s.noIndexUsed[i] = rs.getLong(9);
+                    s.errors[i] = rs.getLong(10);
+                }
+            }
+            return s;
+        }
+
+        static long key(String schema, String digest) {
+            // DIGEST is an md5 (5.7) or sha256 (8.0) hex string; its first 16 hex digits are already well mixed
+            long hash = digest.length() >= 16 ? Long.parseUnsignedLong(digest.substring(0, 16), 16) : digest.hashCode();
+            return hash ^ (schema == null ? 0 : schema.hashCode() * 0x9e3779b97f4a7c15L);
+        }
+
+        int add(String schemaName, String digestHash, String digestText) {
+            if (size == count.length) {
+                grow(size * 2);
+            }
+            int i = size++;
+            schema[i] = schemaName;
+            digest[i] = digestHash;
+            text[i] = digestText;
+            index.put(key(schemaName, digestHash), i);
+            return i;
+        }
+
+        int indexOf(String schemaName, String digestHash) {
+            return index.get(key(schemaName, digestHash));
+        }
+
+        void trim() {
+            grow(size);
+        }
+
+        void reindex() {
+            index = new LongIntMap(size);
+            for (int i = 0; i < size; i++) {
+                index.put(key(schema[i], digest[i]), i);
+            }
+        }
+
+        private void grow(int capacity) {
+            schema = Arrays.copyOf(schema, capacity);
+            digest = Arrays.copyOf(digest, capacity);
+            text = Arrays.copyOf(text, capacity);
+            count = Arrays.copyOf(count, capacity);
+            latency = Arrays.copyOf(latency, capacity);
+            rowsExamined = Arrays.copyOf(rowsExamined, capacity);
+            rowsSent = Arrays.copyOf(rowsSent, capacity);
+            tmpDiskTables = Arrays.copyOf(tmpDiskTables, capacity);
+            noIndexUsed = Arrays.copyOf(noIndexUsed, capacity);
+            errors = Arrays.copyOf(errors, capacity);
+        }
+
+        /**
+         * Per-digest change since {@code before}; digests that are new or were evicted and re-added count from zero.
+         */
+        Snapshot minus(Snapshot before) {
+            Snapshot d = new Snapshot();
+            d.takenAt = takenAt;
+            for (int i = 0; i < size; i++) {
+                int j = before.indexOf(schema[i], digest[i]);
+                long c = count[i];
+                if (j >= 0 && before.count[j] <= c) {
+                    c -= before.count[j];
+                } else {
+                    j = -1;
+                }
+                if (c == 0) {
+                    continue;
+                }
+                int k = d.add(schema[i], digest[i], text[i]);
+                d.count[k] = c;
+                d.latency[k] = latency[i] - (j < 0 ? 0 : before.latency[j]);
+                d.rowsExamined[k] = rowsExamined[i] - (j < 0 ? 0 : before.rowsExamined[j]);
+                d.rowsSent[k] = rowsSent[i] - (j < 0 ? 0 : before.rowsSent[j]);
+                d.tmpDiskTables[k] = tmpDiskTables[i] - (j < 0 ? 0 : before.tmpDiskTables[j]);
+                d.noIndexUsed[k] = noIndexUsed[i] - (j < 0 ? 0 : before.noIndexUsed[j]);
+                d.errors[k] = errors[i] - (j < 0 ? 0 : before.errors[j]);
+            }
+            return d;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.dyrnq.dbops.command;
+
+import cn.hutool.core.io.FileUtil;
+import com.dyrnq.dbops.explain.Plan;
+import com.dyrnq.dbops.utils.SqlSplitter;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "explain", description = "EXPLAIN FORMAT=JSON a batch of statements and rank the risky plans")
+@Slf4j
+public class Explain extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"-f", "--file"}, split = ",", description = "SQL files, statements separated by ;")
+    List<String> files;
+    @CommandLine.Option(names = {"--digests"}, description = "also explain the sample statements of the top N digests by latency", defaultValue = "0")
+    int digests;
+    @CommandLine.Option(names = {"--schema"}, description = "default schema for the statements of --file")
+    String schema;
+    @CommandLine.Option(names = {"-t", "--threads"}, description = "concurrent connections", defaultValue = "8")
+    int threads;
+    @CommandLine.Option(names = {"--rows-threshold"}, description = "flag plans examining at least this many rows", defaultValue = "100000")
+    long rowsThreshold;
+    @CommandLine.Option(names = {"--timeout"}, description = "seconds per EXPLAIN", defaultValue = "30")
+    int timeout;
+    @CommandLine.Option(names = {"--top"}, description = "statements to print, 0 prints all", defaultValue = "0")
+    int top;
+    @CommandLine.Option(names = {"--only-flagged"}, description = "omit statements without findings")
+    boolean onlyFlagged;
+    @CommandLine.Option(names = {"--fail-on-flag"}, description = "exit with 1 when any plan has findings")
+    boolean failOnFlag;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    static final Set<String> EXPLAINABLE = Set.of("SELECT", "WITH", "TABLE", "INSERT", "REPLACE", "UPDATE", "DELETE");
+
+    static final String DIGEST_SQL = "SELECT SCHEMA_NAME, QUERY_SAMPLE_TEXT FROM performance_schema.events_statements_summary_by_digest " +
+            "WHERE DIGEST IS NOT NULL AND QUERY_SAMPLE_TEXT IS NOT NULL ORDER BY SUM_TIMER_WAIT DESC LIMIT ";
+
+    static class Item {
+        String source;
+        String schema;
+        String sql;
+        Plan plan;
+        String error;
+        List<String[]> flags = List.of();
+        int score;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        DataSource dataSource = SqlUtils.ofName(ds).getDataSource();
+        List<Item> items = new ArrayList<>();
+        // local, the shell runs every line on the same command instance
+        int skipped = 0;
+        if (files != null) {
+            for (String file : files) {
+                List<String> statements = SqlSplitter.split(FileUtil.readString(FileUtil.file(file), StandardCharsets.UTF_8));
+                for (int i = 0; i < statements.size(); i++) {
+                    if (!add(items, file + "#" + (i + 1), schema, statements.get(i))) {
+                        skipped++;
+                    }
+                }
+            }
+        }
+        if (digests > 0) {
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(DIGEST_SQL + digests)) {
+                int rank = 0;
+                while (rs.next()) {
+                    if (!add(items, "digest#" + (++rank), rs.getString(1), rs.getString(2))) {
+                        skipped++;
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("cannot read statement digests: " + e.getMessage());
+                log.error("digest samples on {} failed", ds, e);
+                return 1;
+            }
+        }
+        if (skipped > 0) {
+            System.err.println(skipped + " statements skipped, only SELECT, WITH, TABLE, INSERT, REPLACE, UPDATE and DELETE are explained");
+        }
+        if (items.isEmpty()) {
+            System.err.println("no statements to explain, use --file and/or --digests");
+            return 1;
+        }
+
+        // each worker keeps one connection for the whole batch and takes the next statement from a shared counter
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(threads, items.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            futures.add(executor.submit(() -> {
+                try (Connection conn = dataSource.getConnection()) {
+                    String initial = conn.getCatalog();
+                    String current = initial;
+                    for (int i = next.getAndIncrement(); i < items.size(); i = next.getAndIncrement()) {
+                        Item item = items.get(i);
+                        // statements without a schema run in the datasource's default, not the last digest's
+                        String wanted = StringUtils.defaultIfBlank(item.schema, initial);
+                        try {
+                            if (StringUtils.isNotBlank(wanted) && !wanted.equals(current)) {
+                                conn.setCatalog(wanted);
+                                current = wanted;
+                            }
+                            item.plan = explain(conn, item.sql, timeout);
+                            item.flags = item.plan.flags(rowsThreshold);
+                            item.score = item.flags.stream().mapToInt(f -> Plan.weight(f[0])).sum();
+                        } catch (Exception e) {
+                            item.error = e.getMessage();
+                            log.debug("explain {} failed: {}", item.source, e.getMessage());
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            System.err.println(e.getCause().getMessage());
+            log.error("explain on {} failed", ds, e.getCause());
+            return 1;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Item> ranked = new ArrayList<>(items);
+        ranked.sort(Comparator.comparingInt((Item i) -> i.error != null ? 1 : 0)
+                .thenComparing(Comparator.comparingInt((Item i) -> i.score).reversed())
+                .thenComparing(Comparator.comparingLong((Item i) -> i.plan == null ? 0 : i.plan.rowsExaminedEstimate()).reversed())
+                .thenComparing(Comparator.comparingDouble((Item i) -> i.plan == null ? 0 : i.plan.cost).reversed()));
+        if (onlyFlagged) {
+            ranked.removeIf(i -> i.error == null && i.flags.isEmpty());
+        }
+        if (top > 0 && ranked.size() > top) {
+            ranked = ranked.subList(0, top);
+        }
+        print(ranked);
+
+        long errors = items.stream().filter(i -> i.error != null).count();
+        boolean flagged = items.stream().anyMatch(i -> !i.flags.isEmpty());
+        return errors > 0 || failOnFlag && flagged ? 1 : 0;
+    }
+
+    static String keyword(String sql) {
+        return StringUtils.stripStart(sql.trim(), "(").split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+    }
+
+    private boolean add(List<Item> items, String source, String schema, String sql) {
+        if (!EXPLAINABLE.contains(keyword(sql))) {
+            return false;
+        }
+        Item item = new Item();
+        item.source = source;
+        item.schema = schema;
+        item.sql = sql.trim();
+        items.add(item);
+        return true;
+    }
+
+    static Plan explain(Connection conn, String sql, int timeout) throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(timeout);
+            try (ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON " + sql)) {
+                if (!rs.next()) {
+                    throw new SQLException("EXPLAIN returned no plan");
+                }
+                try (Reader reader = rs.getCharacterStream(1)) {
+                    return Plan.parse(reader);
+                }
+            }
+        }
+    }
+
+    private void print(List<Item> ranked) {
+        if ("json".equals(format)) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Item item : ranked) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("source", item.source);
+                row.put("schema", item.schema);
+                row.put("sql", item.sql);
+                if (item.error != null) {
+                    row.put("error", item.error);
+                } else {
+                    row.put("score", item.score);
+                    row.put("cost", item.plan.cost);
+                    row.put("rows_examined_estimate", item.plan.rowsExaminedEstimate());
+                    Map<String, List<String>> flags = new LinkedHashMap<>();
+                    for (String[] f : item.flags) {
+                        flags.computeIfAbsent(f[0], k -> new ArrayList<>()).add(f[1]);
+                    }
+                    row.put("flags", flags);
+                    if (item.plan.message != null) {
+                        row.put("message", item.plan.message);
+                    }
+                }
+                rows.add(row);
+            }
+            System.out.println(new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(rows));
+            return;
+        }
+        System.out.printf("%-5s %-24s %12s %14s  %s%n", "SCORE", "SOURCE", "COST", "ROWS_EXAMINED", "SQL");
+        for (Item item : ranked) {
+            String sql = StringUtils.abbreviate(item.sql.replaceAll("\\s+", " "), 100);
+            if (item.error != null) {
+                System.out.printf("%-5s %-24s %12s %14s  %s%n", "ERR", StringUtils.abbreviate(item.source, 24), "-", "-", sql);
+                System.out.printf("      %s%n", item.error);
+                continue;
+            }
+            System.out.printf("%-5d %-24s %12.2f %14d  %s%n", item.score, StringUtils.abbreviate(item.source, 24),
+                    item.plan.cost, item.plan.rowsExaminedEstimate(), sql);
+            for (String[] f : item.flags) {
+                System.out.printf("      %-20s %s%n", f[0], f[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.dyrnq.dbops.command;
+
+import cn.hutool.core.util.ObjUtil;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "index-advisor", aliases = {"ia"}, description = "find unused, redundant and duplicate indexes")
+@Slf4j
+public class IndexAdvisor extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"--schema"}, split = ",", description = "schemas to inspect, defaults to all user schemas")
+    List<String> schemas;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+    @CommandLine.Option(names = {"--skip-unused"}, description = "do not report indexes without reads")
+    boolean skipUnused;
+
+    static final String SYSTEM_SCHEMAS = "'mysql', 'sys', 'performance_schema', 'information_schema'";
+
+    @Override
+    public Integer call() throws Exception {
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        String schemaFilter = schemaFilter();
+
+        Map<String, Index> indexes;
+        try {
+            indexes = getIndexes(sqlUtils, schemaFilter);
+        } catch (Exception e) {
+            System.err.println("reading information_schema.STATISTICS failed: " + e.getMessage());
+            log.error(e.getMessage(), e);
+            return 1;
+        }
+        Map<String, Long> sizes = getIndexSizes(sqlUtils, schemaFilter);
+        Map<String, long[]> usage = skipUnused ? null : getIndexUsage(sqlUtils, schemaFilter);
+        Set<String> foreignKeyColumns = getForeignKeyColumns(sqlUtils, schemaFilter);
+        Object uptime = null;
+        try {
+            uptime = sqlUtils.sql("SELECT VARIABLE_VALUE FROM performance_schema.global_status WHERE VARIABLE_NAME = 'Uptime'").queryValue();
+        } catch (Exception e) {
+            log.debug("uptime unavailable: {}", e.getMessage());
+        }
+
+        List<Map<String, Object>> findings = new ArrayList<>();
+        Map<String, List<Index>> byTable = indexes.values().stream()
+                .collect(Collectors.groupingBy(i -> i.schema + "." + i.table, LinkedHashMap::new, Collectors.toList()));
+        for (List<Index> tableIndexes : byTable.values()) {
+            Set<Index> reported = new HashSet<>();
+            for (Index a : tableIndexes) {
+                if (!a.isBtree() || a.primary) {
+                    continue;
+                }
+                for (Index b : tableIndexes) {
+                    if (a == b || !b.isBtree() || reported.contains(b)) {
+                        continue;
+                    }
+                    if (a.columns.equals(b.columns)) {
+                        // of two identical indexes drop the non-unique one, or the later name
+                        if (a.unique && !b.unique || a.unique == b.unique && a.name.compareTo(b.name) < 0 && !b.primary) {
+                            continue;
+                        }
+                        findings.add(finding("duplicate", a, "same columns as " + b.name, sizes, foreignKeyColumns));
+                        reported.add(a);
+                        break;
+                    }
+                    if (!a.unique && b.columns.size() > a.columns.size() && b.columns.subList(0, a.columns.size()).equals(a.columns)) {
+                        findings.add(finding("redundant", a, "left prefix of " + b.name + " (" + String.join(", ", b.columns) + ")", sizes, foreignKeyColumns));
+                        reported.add(a);
+                        break;
+                    }
+                }
+            }
+            if (usage == null || usage.isEmpty()) {
+                continue;
+            }
+            for (Index a : tableIndexes) {
+                if (a.primary || a.unique || reported.contains(a)) {
+                    continue;
+                }
+                long[] counts = usage.get(a.key());
+                if (counts != null && counts[0] == 0) {
+                    Map<String, Object> f = finding("unused", a, "no reads since server start, " + counts[1] + " writes", sizes, foreignKeyColumns);
+                    f.put("count_write", counts[1]);
+                    findings.add(f);
+                }
+            }
+        }
+        if (usage != null && usage.isEmpty()) {
+            System.err.println("performance_schema index usage is unavailable, unused indexes are not reported");
+        }
+
+        if ("json".equals(format)) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("uptime_seconds", uptime);
+            out.put("findings", findings);
+            Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+            System.out.println(gson.toJson(out));
+        } else {
+            printText(findings, uptime);
+        }
+        return 0;
+    }
+
+    private String schemaFilter() {
+        if (schemas == null || schemas.isEmpty()) {
+            return " NOT IN (" + SYSTEM_SCHEMAS + ")";
+        }
+        return " IN (" + schemas.stream().map(s -> "'" + s.replace("'", "''") + "'").collect(Collectors.joining(", ")) + ")";
+    }
+
+    private Map<String, Object> finding(String kind, Index index, String reason, Map<String, Long> sizes, Set<String> foreignKeyColumns) {
+        Map<String, Object> f = new LinkedHashMap<>();
+        f.put("kind", kind);
+        f.put("schema", index.schema);
+        f.put("table", index.table);
+        f.put("index", index.name);
+        f.put("columns", String.join(", ", index.columns));
+        f.put("reason", reason);
+        f.put("size_bytes", sizes.get(index.key()));
+        String table = "`" + index.schema + "`.`" + index.table + "`";
+        f.put("drop", "ALTER TABLE " + table + " DROP INDEX `" + index.name + "`;");
+        f.put("invisible", "ALTER TABLE " + table + " ALTER INDEX `" + index.name + "` INVISIBLE;");
+        if (foreignKeyColumns.contains(index.schema + "." + index.table + "." + StringUtils.substringBefore(index.columns.get(0), "("))) {
+            f.put("warning", "leading column is part of a foreign key; MySQL refuses to drop the only index backing it");
+        }
+        return f;
+    }
+
+    private static void printText(List<Map<String, Object>> findings, Object uptime) {
+        if (uptime != null) {
+            System.out.println("-- usage counters cover " + uptime + " seconds of uptime");
+        }
+        if (findings.isEmpty()) {
+            System.out.println("-- no findings");
+            return;
+        }
+        for (Map<String, Object> f : findings) {
+            Object size = f.get("size_bytes");
+            System.out.printf("-- [%s] %s.%s %s (%s): %s%s%n", f.get("kind"), f.get("schema"), f.get("table"), f.get("index"),
+                    f.get("columns"), f.get("reason"), size == null ? "" : ", ~" + size + " bytes");
+            if (f.containsKey("warning")) {
+                System.out.println("-- warning: " + f.get("warning"));
+            }
+            System.out.println("-- " + f.get("invisible"));
+            System.out.println(f.get("drop"));
+            System.out.println();
+        }
+    }
+
+    private Map<String, Index> getIndexes(SqlUtils sqlUtils, String schemaFilter) throws Exception {
+        String sql = "SELECT TABLE_SCHEMA, TABLE_NAME, INDEX_NAME, NON_UNIQUE, COLUMN_NAME, SUB_PART, INDEX_TYPE " +
+                "FROM information_schema.STATISTICS WHERE TABLE_SCHEMA" + schemaFilter +
+                " ORDER BY TABLE_SCHEMA, TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX";
+        Map<String, Index> indexes = new LinkedHashMap<>();
+        for (Map row : sqlUtils.sql(sql).queryRowList(Map.class)) {
+            String key = row.get("TABLE_SCHEMA") + "." + row.get("TABLE_NAME") + "." + row.get("INDEX_NAME");
+            Index index = indexes.computeIfAbsent(key, k -> newIndex(row));
+            String column = ObjUtil.toString(row.get("COLUMN_NAME"));
+            if (column == null) {
+                // functional key part (8.0.13+), never comparable by name
+                column = "<expression " + index.columns.size() + ">@" + index.name;
+            }
+            Object subPart = row.get("SUB_PART");
+            index.columns.add(subPart == null ? column : column + "(" + subPart + ")");
+        }
+        return indexes;
+    }
+
+    private static Index newIndex(Map row) {
+        Index index = new Index();
+        index.schema = ObjUtil.toString(row.get("TABLE_SCHEMA"));
+        index.table = ObjUtil.toString(row.get("TABLE_NAME"));
+        index.name = ObjUtil.toString(row.get("INDEX_NAME"));
+        index.unique = "0".equals(ObjUtil.toString(row.get("NON_UNIQUE")));
+        index.primary = "PRIMARY".equals(index.name);
+        index.type = ObjUtil.toString(row.get("INDEX_TYPE"));
+        return index;
+    }
+
+    /**
+     * Estimated index size from persistent statistics; empty when mysql.innodb_index_stats is not readable.
+     */
+    private Map<String, Long> getIndexSizes(SqlUtils sqlUtils, String schemaFilter) {
+        Map<String, Long> sizes = new HashMap<>();
+        String sql = "SELECT database_name, table_name, index_name, stat_value * @@innodb_page_size AS size_bytes " +
+                "FROM mysql.innodb_index_stats WHERE stat_name = 'size' AND database_name" + schemaFilter;
+        try {
+            for (Map row : sqlUtils.sql(sql).queryRowList(Map.class)) {
+                // partitioned tables report one row per partition: t#p#p0
+                String table = StringUtils.substringBefore(ObjUtil.toString(row.get("table_name")), "#");
+                String key = row.get("database_name") + "." + table + "." + row.get("index_name");
+                sizes.merge(key, ((Number) row.get("size_bytes")).longValue(), Long::sum);
+            }
+        } catch (Exception e) {
+            log.warn("index sizes unavailable: {}", e.getMessage());
+        }
+        return sizes;
+    }
+
+    /**
+     * COUNT_READ and COUNT_WRITE per index since server start; empty when performance_schema is off.
+     */
+    private Map<String, long[]> getIndexUsage(SqlUtils sqlUtils, String schemaFilter) {
+        Map<String, long[]> usage = new HashMap<>();
+        String sql = "SELECT OBJECT_SCHEMA, OBJECT_NAME, INDEX_NAME, COUNT_READ, COUNT_WRITE " +
+                "FROM performance_schema.table_io_waits_summary_by_index_usage " +
+                "WHERE INDEX_NAME IS NOT NULL AND OBJECT_SCHEMA" + schemaFilter;
+        try {
+            for (Map row : sqlUtils.sql(sql).queryRowList(Map.class)) {
+                String key = row.get("OBJECT_SCHEMA") + "." + row.get("OBJECT_NAME") + "." + row.get("INDEX_NAME");
+                usage.put(key, new long[]{((Number) row.get("COUNT_READ")).longValue(), ((Number) row.get("COUNT_WRITE")).longValue()});
+            }
+        } catch (Exception e) {
+            log.warn("index usage unavailable: {}", e.getMessage());
+        }
+        return usage;
+    }
+
+    private Set<String> getForeignKeyColumns(SqlUtils sqlUtils, String schemaFilter) {
+        Set<String> columns = new HashSet<>();
+        String sql = "SELECT TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+                "WHERE REFERENCED_TABLE_NAME IS NOT NULL AND TABLE_SCHEMA" + schemaFilter;
+        try {
+            for (Map row : sqlUtils.sql(sql).queryRowList(Map.class)) {
+                columns.add(row.get("TABLE_SCHEMA") + "." + row.get("TABLE_NAME") + "." + row.get("COLUMN_NAME"));
+            }
+        } catch (Exception e) {
+            log.warn("foreign keys unavailable: {}", e.getMessage());
+        }
+        return columns;
+    }
+
+    static class Index {
+        String schema;
+        String table;
+        String name;
+        String type;
+        boolean unique;
+        boolean primary;
+        final List<String> columns = new ArrayList<>();
+
+        String key() {
+            return schema + "." + table + "." + name;
+        }
+
+        boolean isBtree() {
+            return type == null || "BTREE".equalsIgnoreCase(type);
+        }
+    }
+}
@@ -1,59 +1,144 @@
 package com.dyrnq.dbops.command;
 
 import cn.hutool.json.JSONUtil;
+import com.dyrnq.dbops.Bootstrap;
 import com.dyrnq.dbops.Constants;
-import org.noear.snack4.ONode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.Strings;
 import org.noear.solon.data.sql.SqlUtils;
 import picocli.CommandLine;
 
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Callable;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
 
 @CommandLine.Command(
         mixinStandardHelpOptions = true,
         showDefaultValues = true,
         name = "info", aliases = {"i"}, description = "Return low-level information")
+@Slf4j
 public class Info extends CommonOptions implements Callable<Integer> {
     @CommandLine.Option(names = {"--vars"})
     boolean vars;
+    @CommandLine.Option(names = {"--timeout"}, description = "seconds to wait for each datasource in multi datasource mode", defaultValue = "30")
+    int timeout;
+
+    // every scalar in one round trip; the SCHEMATA subqueries resolve against the session's default schema
+    static final String SCALARS_SQL = "SELECT version(), now(), @@time_zone, user(), database(), " +
+            "(SELECT DEFAULT_CHARACTER_SET_NAME FROM information_schema.SCHEMATA WHERE SCHEMA_NAME = DATABASE()), " +
+            "(SELECT DEFAULT_COLLATION_NAME FROM information_schema.SCHEMATA WHERE SCHEMA_NAME = DATABASE())";
 
     @Override
     public Integer call() throws Exception {
-        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            if (!Strings.CS.containsAny(ds, ",", "*", "?")) {
+                System.out.println(JSONUtil.toJsonPrettyStr(collect(ds, executor)));
+                return 0;
+            }
+
+            // several datasources (a list and/or glob patterns over the configured names), each collected in parallel
+            List<String> names = resolve(ds);
+            Map<String, Future<Map<String, Object>>> futures = new LinkedHashMap<>();
+            for (String name : names) {
+                futures.put(name, executor.submit(() -> collect(name, executor)));
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            int failed = 0;
+            for (Map.Entry<String, Future<Map<String, Object>>> entry : futures.entrySet()) {
+                try {
+                    result.put(entry.getKey(), entry.getValue().get(timeout, TimeUnit.SECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    failed++;
+                    entry.getValue().cancel(true);
+                    String message = e instanceof TimeoutException ? "timed out" : e.getCause().getMessage();
+                    result.put(entry.getKey(), Map.of("error", String.valueOf(message)));
+                    log.error("info {} failed: {}", entry.getKey(), message);
+                }
+            }
+            System.out.println(JSONUtil.toJsonPrettyStr(result));
+            return failed > 0 ? 1 : 0;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static List<String> resolve(String spec) {
+        List<String> configured = Bootstrap.configuredDatasources();
+        Set<String> names = new LinkedHashSet<>();
+        for (String part : spec.split(",")) {
+            String p = part.trim();
+            if (p.isEmpty()) {
+                continue;
+            }
+            if (Strings.CS.containsAny(p, "*", "?")) {
+                configured.stream().filter(n -> FilenameUtils.wildcardMatch(n, p)).forEach(names::add);
+            } else {
+                names.add(p);
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Scalars in a single SELECT; SHOW DATABASES and SHOW VARIABLES run concurrently on other pooled
+     * connections, so the whole collection costs about one round trip.
+     */
+    private Map<String, Object> collect(String name, ExecutorService executor) throws Exception {
+        SqlUtils sqlUtils = SqlUtils.ofName(name);
+        DataSource dataSource = sqlUtils.getDataSource();
+        Future<List<Object>> databases = executor.submit(() -> {
+            List<Object> list = new ArrayList<>();
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW DATABASES")) {
+                while (rs.next()) {
+                    list.add(rs.getString(1));
+                }
+            }
+            return list;
+        });
+        Future<Map<String, String>> variables = vars ? executor.submit(() -> VarDiff.fetchVariables(sqlUtils, "show variables")) : null;
+
         Map<String, Object> objectMap = new LinkedHashMap<>();
         objectMap.put("java_version", System.getProperty("java.version"));
         objectMap.put("jvm_version", System.getProperty("java.version"));
-        objectMap.put("version", sqlUtils.sql("select version();").queryValue());
-        objectMap.put("client", Constants.VERSION);
-        objectMap.put("dataSource", sqlUtils.getDataSource());
-        objectMap.put("now", sqlUtils.sql("select now()").queryValue());
-        objectMap.put("time_zone", sqlUtils.sql("SELECT @@time_zone;").queryValue());
-        objectMap.put("user", sqlUtils.sql("select user()").queryValue());
-        objectMap.put("database", sqlUtils.sql("select database()").queryValue());
-        //objectMap.put("processlist",sqlUtils.sql("SHOW FULL PROCESSLIST;").queryRowList(Map.class));
-        objectMap.put("DEFAULT_CHARACTER_SET_NAME", sqlUtils.sql("SELECT DEFAULT_CHARACTER_SET_NAME FROM information_schema.SCHEMATA WHERE SCHEMA_NAME = DATABASE();").queryValue());
-        objectMap.put("DEFAULT_COLLATION_NAME", sqlUtils.sql("SELECT DEFAULT_COLLATION_NAME FROM information_schema.SCHEMATA WHERE SCHEMA_NAME = DATABASE();").queryValue());
-        objectMap.put("databases", sqlUtils.sql("SHOW DATABASES;").queryValueList());
-
-        if (vars) {
-            List<String> listS = sqlUtils.sql("show variables").queryRowList(String.class);
-            Map<String, String> mapS = new LinkedHashMap<>();
-            listS.forEach(c -> {
-                ONode o = ONode.ofJson(c);
-                mapS.put(
-                        o.get("Variable_name").getString(),
-                        o.get("Value").getString()
-                );
-
-            });
-
-            objectMap.put("vars", mapS);
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SCALARS_SQL)) {
+            rs.next();
+            objectMap.put("version", rs.getObject(1));
+            objectMap.put("client", Constants.VERSION);
+            objectMap.put("dataSource", dataSource);
+            objectMap.put("now", rs.getObject(2));
+            objectMap.put("time_zone", rs.getObject(3));
+            objectMap.put("user", rs.getObject(4));
+            objectMap.put("database", rs.getObject(5));
+            objectMap.put("DEFAULT_CHARACTER_SET_NAME", rs.getObject(6));
+            objectMap.put("DEFAULT_COLLATION_NAME", rs.getObject(7));
+        } catch (Exception e) {
+            if (variables != null) {
+                variables.cancel(true);
+            }
+            databases.cancel(true);
+            throw e;
+        }
+        objectMap.put("databases", get(databases));
+        if (variables != null) {
+            objectMap.put("vars", get(variables));
         }
-        System.out.println(JSONUtil.toJsonPrettyStr(objectMap));
-        return 0;
+        return objectMap;
     }
 
-
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
 }
@@ -0,0 +1,177 @@
+package com.dyrnq.dbops.command;
+
+import com.dyrnq.dbops.lock.LockSampler;
+import com.dyrnq.dbops.lock.WaitForGraph;
+import com.dyrnq.dbops.utils.SqlNormalizer;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "locks", description = "row and metadata lock wait chains with their root blockers")
+@Slf4j
+public class Locks extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"-w", "--watch"}, description = "sample repeatedly")
+    boolean watch;
+    @CommandLine.Option(names = {"-i", "--interval"}, description = "watch interval in seconds", defaultValue = "2")
+    int interval;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+    @CommandLine.Option(names = {"--kill-after"}, description = "KILL root blockers whose transaction (or statement) is older than this many seconds, 0 disables", defaultValue = "0")
+    long killAfter;
+    @CommandLine.Option(names = {"--kill-min-blocked"}, description = "only kill root blockers that block at least this many threads", defaultValue = "1")
+    int killMinBlocked;
+    @CommandLine.Option(names = {"--dry-run"}, description = "print the blockers the kill policy would kill without killing them")
+    boolean dryRun;
+
+    @Override
+    public Integer call() throws Exception {
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        LockSampler sampler = new LockSampler();
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().serializeNulls().create();
+        try (Connection conn = sqlUtils.getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            do {
+                WaitForGraph graph = sampler.sample(conn);
+                List<Map<String, Object>> report = report(graph);
+                if ("json".equals(format)) {
+                    Map<String, Object> out = new LinkedHashMap<>();
+                    out.put("ts", System.currentTimeMillis());
+                    out.put("root_blockers", report);
+                    out.put("cycles", graph.cycles().stream()
+                            .map(c -> c.stream().map(n -> processlistId(n)).collect(Collectors.toList()))
+                            .collect(Collectors.toList()));
+                    System.out.println(watch ? new Gson().toJson(out) : gson.toJson(out));
+                } else {
+                    printText(graph, report);
+                }
+                if (killAfter > 0) {
+                    applyKillPolicy(stmt, graph);
+                }
+                if (watch) {
+                    TimeUnit.SECONDS.sleep(Math.max(interval, 1));
+                }
+            } while (watch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.err.println("sampling locks failed: " + e.getMessage());
+            log.error(e.getMessage(), e);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static List<Map<String, Object>> report(WaitForGraph graph) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (WaitForGraph.Node root : graph.rootBlockers()) {
+            Map<String, Object> item = session(root);
+            item.put("blocked", root.blockedCount());
+            item.put("chain_depth", root.chainDepth());
+            List<Map<String, Object>> waiters = new ArrayList<>();
+            for (WaitForGraph.Node waiter : root.waiters()) {
+                Map<String, Object> w = session(waiter);
+                w.put("waits_for", waiter.getWaitsFor().stream()
+                        .map(e -> e.getKind() + " " + e.getLockMode() + " " + e.getObject() + " held by " + processlistId(e.getBlocker()))
+                        .collect(Collectors.toList()));
+                waiters.add(w);
+            }
+            item.put("waiters", waiters);
+            list.add(item);
+        }
+        return list;
+    }
+
+    private static Map<String, Object> session(WaitForGraph.Node node) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("thread_id", node.getThreadId());
+        WaitForGraph.Session s = node.getSession();
+        if (s == null) {
+            return item;
+        }
+        item.put("id", s.getProcesslistId());
+        item.put("user", s.getUser());
+        item.put("host", s.getHost());
+        item.put("db", s.getDb());
+        item.put("command", s.getCommand());
+        item.put("time", s.getTime());
+        item.put("state", s.getState());
+        item.put("trx_id", s.getTrxId());
+        item.put("trx_age", s.getTrxAgeSeconds() < 0 ? null : s.getTrxAgeSeconds());
+        item.put("trx_rows_locked", s.getTrxRowsLocked());
+        item.put("trx_rows_modified", s.getTrxRowsModified());
+        // an idle blocker has no current statement; the last one it ran is usually the culprit
+        item.put("statement", s.getInfo() != null ? s.getInfo() : s.getLastStatement());
+        return item;
+    }
+
+    private static Object processlistId(WaitForGraph.Node node) {
+        return node.getSession() == null ? "thread " + node.getThreadId() : node.getSession().getProcesslistId();
+    }
+
+    private static void printText(WaitForGraph graph, List<Map<String, Object>> report) {
+        System.out.println("-- " + new Date());
+        if (report.isEmpty() && graph.cycles().isEmpty()) {
+            System.out.println("no lock waits");
+            return;
+        }
+        for (Map<String, Object> root : report) {
+            System.out.printf("ROOT id=%s user=%s host=%s db=%s command=%s time=%ss trx_age=%ss rows_locked=%s blocked=%s depth=%s%n",
+                    root.get("id"), root.get("user"), root.get("host"), root.get("db"), root.get("command"), root.get("time"),
+                    root.get("trx_age"), root.get("trx_rows_locked"), root.get("blocked"), root.get("chain_depth"));
+            System.out.println("     " + SqlNormalizer.normalize((String) root.get("statement"), 200));
+            List<?> waiters = (List<?>) root.get("waiters");
+            for (Object o : waiters) {
+                Map<?, ?> w = (Map<?, ?>) o;
+                System.out.printf("  <- id=%s user=%s time=%ss %s%n", w.get("id"), w.get("user"), w.get("time"),
+                        StringUtils.abbreviate(StringUtils.defaultString((String) w.get("statement")).replaceAll("\\s+", " "), 120));
+                for (Object wait : (List<?>) w.get("waits_for")) {
+                    System.out.println("       " + wait);
+                }
+            }
+        }
+        for (List<WaitForGraph.Node> cycle : graph.cycles()) {
+            System.out.println("CYCLE " + cycle.stream().map(n -> String.valueOf(processlistId(n))).collect(Collectors.joining(" -> ")));
+        }
+    }
+
+    private void applyKillPolicy(Statement stmt, WaitForGraph graph) {
+        for (WaitForGraph.Node root : graph.rootBlockers()) {
+            WaitForGraph.Session s = root.getSession();
+            if (s == null || root.blockedCount() < killMinBlocked) {
+                continue;
+            }
+            long age = s.getTrxAgeSeconds() >= 0 ? s.getTrxAgeSeconds() : s.getTime();
+            if (age < killAfter) {
+                continue;
+            }
+            String summary = "id=" + s.getProcesslistId() + " user=" + s.getUser() + " age=" + age + "s blocked=" + root.blockedCount();
+            if (dryRun) {
+                System.out.println("[dry-run] KILL " + summary);
+                continue;
+            }
+            try {
+                // the blocker is usually idle inside an open transaction, so KILL QUERY would not release its locks
+                stmt.execute("KILL " + s.getProcesslistId());
+                System.out.println("KILL " + summary);
+                log.info("killed root blocker {}", summary);
+            } catch (SQLException e) {
+                System.err.println("KILL " + s.getProcesslistId() + " failed: " + e.getMessage());
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.dyrnq.dbops.command;
+
+import cn.hutool.core.io.FileUtil;
+import com.dyrnq.dbops.explain.Plan;
+import com.dyrnq.dbops.utils.SqlClassifier;
+import com.dyrnq.dbops.utils.SqlSplitter;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "plan-diff", description = "EXPLAIN a query set on two datasources and report plan regressions")
+@Slf4j
+public class PlanDiff implements Callable<Integer> {
+    @DatasourceOption
+    @CommandLine.Option(names = {"-source-ds", "--source-ds", "-S"}, description = "source datasource name", defaultValue = "default")
+    String sourceDatasource;
+    @DatasourceOption
+    @CommandLine.Option(names = {"-target-ds", "--target-ds", "-T"}, description = "target datasource name", defaultValue = "default")
+    String targetDatasource;
+    @CommandLine.Option(names = {"-source", "--source", "--source-schema"}, description = "source schema, defaults to the statement's or the datasource's")
+    String sourceSchema;
+    @CommandLine.Option(names = {"-target", "--target", "--target-schema"}, description = "target schema, defaults to the statement's or the datasource's")
+    String targetSchema;
+    @CommandLine.Option(names = {"-f", "--file"}, split = ",", description = "SQL files, statements separated by ;")
+    List<String> files;
+    @CommandLine.Option(names = {"--digests"}, description = "also compare the sample statements of the source's top N digests by latency", defaultValue = "0")
+    int digests;
+    @CommandLine.Option(names = {"-t", "--threads"}, description = "concurrent connections per datasource", defaultValue = "4")
+    int threads;
+    @CommandLine.Option(names = {"--rows-factor"}, description = "a rows-examined estimate this many times higher is a regression", defaultValue = "10")
+    double rowsFactor;
+    @CommandLine.Option(names = {"--min-rows"}, description = "ignore rows blow-ups whose new estimate stays below this", defaultValue = "1000")
+    long minRows;
+    @CommandLine.Option(names = {"--execute"}, description = "time regressed queries on both datasources; writes and locking reads are never run")
+    boolean execute;
+    @CommandLine.Option(names = {"--runs"}, description = "timed executions per statement and datasource, the median is reported", defaultValue = "3")
+    int runs;
+    @CommandLine.Option(names = {"--latency-factor"}, description = "a median this many times slower confirms a regression", defaultValue = "1.5")
+    double latencyFactor;
+    @CommandLine.Option(names = {"--timeout"}, description = "seconds per EXPLAIN or execution", defaultValue = "30")
+    int timeout;
+    @CommandLine.Option(names = {"--all"}, description = "also print statements whose plan did not regress")
+    boolean all;
+    @CommandLine.Option(names = {"--fail-on-regression"}, description = "exit with 1 when any plan regressed")
+    boolean failOnRegression;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    static class Item {
+        String source;
+        String schema;
+        String sql;
+        Plan sourcePlan;
+        Plan targetPlan;
+        String error;
+        List<String[]> diffs = List.of();
+        boolean regressed;
+        double sourceMs = -1;
+        double targetMs = -1;
+    }
+
+    interface Task {
+        void run(Connection conn, Item item, boolean target) throws Exception;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        DataSource source = SqlUtils.ofName(sourceDatasource).getDataSource();
+        DataSource target = SqlUtils.ofName(targetDatasource).getDataSource();
+        List<Item> items = new ArrayList<>();
+        if (files != null) {
+            for (String file : files) {
+                List<String> statements = SqlSplitter.split(FileUtil.readString(FileUtil.file(file), StandardCharsets.UTF_8));
+                for (int i = 0; i < statements.size(); i++) {
+                    add(items, file + "#" + (i + 1), null, statements.get(i));
+                }
+            }
+        }
+        if (digests > 0) {
+            try (Connection conn = source.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(Explain.DIGEST_SQL + digests)) {
+                int rank = 0;
+                while (rs.next()) {
+                    add(items, "digest#" + (++rank), rs.getString(1), rs.getString(2));
+                }
+            } catch (SQLException e) {
+                System.err.println("cannot read statement digests: " + e.getMessage());
+                log.error("digest samples on {} failed", sourceDatasource, e);
+                return 1;
+            }
+        }
+        if (items.isEmpty()) {
+            System.err.println("no statements to compare, use --file and/or --digests");
+            return 1;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2 * Math.max(1, threads));
+        try {
+            // both datasources are explained at the same time, each by its own set of connections
+            List<Future<?>> futures = new ArrayList<>();
+            futures.addAll(submit(executor, source, sourceSchema, false, threads, items, this::explain));
+            futures.addAll(submit(executor, target, targetSchema, true, threads, items, this::explain));
+            await(futures);
+            for (Item item : items) {
+                if (item.error == null) {
+                    item.diffs = Plan.compare(item.sourcePlan, item.targetPlan, rowsFactor, minRows);
+                    item.regressed = item.diffs.stream().anyMatch(d -> Plan.isRegression(d[0]));
+                }
+            }
+
+            if (execute) {
+                List<Item> timed = new ArrayList<>();
+                for (Item item : items) {
+                    // only queries that neither write nor lock rows, whatever follows a WITH
+                    if (item.regressed && SqlClassifier.isPlainQuery(item.sql)) {
+                        timed.add(item);
+                    }
+                }
+                // one session per datasource so the timings of a server do not compete with each other
+                futures.clear();
+                futures.addAll(submit(executor, source, sourceSchema, false, 1, timed, this::time));
+                futures.addAll(submit(executor, target, targetSchema, true, 1, timed, this::time));
+                await(futures);
+            }
+        } catch (ExecutionException e) {
+            System.err.println(e.getCause().getMessage());
+            log.error("plan-diff {} -> {} failed", sourceDatasource, targetDatasource, e.getCause());
+            return 1;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Item> ranked = new ArrayList<>(items);
+        ranked.sort(Comparator.comparingInt((Item i) -> i.regressed ? 0 : i.error != null ? 1 : 2)
+                .thenComparing(Comparator.comparingDouble(PlanDiff::slowdown).reversed())
+                .thenComparing(Comparator.comparingInt((Item i) -> i.diffs.size()).reversed()));
+        if (!all) {
+            ranked.removeIf(i -> !i.regressed && i.error == null);
+        }
+        print(ranked, items.size());
+
+        boolean errors = items.stream().anyMatch(i -> i.error != null);
+        boolean regressed = items.stream().anyMatch(i -> i.regressed);
+        return errors || failOnRegression && regressed ? 1 : 0;
+    }
+
+    private static void add(List<Item> items, String source, String schema, String sql) {
+        if (!Explain.EXPLAINABLE.contains(Explain.keyword(sql))) {
+            return;
+        }
+        Item item = new Item();
+        item.source = source;
+        item.schema = schema;
+        item.sql = sql.trim();
+        items.add(item);
+    }
+
+    private static double slowdown(Item item) {
+        if (item.sourceMs > 0 && item.targetMs >= 0) {
+            return item.targetMs / item.sourceMs;
+        }
+        return 0;
+    }
+
+    /**
+     * Workers that share {@code items} through a counter, each on one connection of {@code dataSource}.
+     */
+    private List<Future<?>> submit(ExecutorService executor, DataSource dataSource, String schema, boolean target,
+                                   int workers, List<Item> items, Task task) {
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < Math.max(1, Math.min(workers, items.size())); w++) {
+            futures.add(executor.submit(() -> {
+                try (Connection conn = dataSource.getConnection()) {
+                    String initial = conn.getCatalog();
+                    String current = initial;
+                    for (int i = next.getAndIncrement(); i < items.size(); i = next.getAndIncrement()) {
+                        Item item = items.get(i);
+                        // statements without a schema run in the datasource's default, not the last digest's
+                        String wanted = StringUtils.defaultIfBlank(schema, StringUtils.defaultIfBlank(item.schema, initial));
+                        try {
+                            if (StringUtils.isNotBlank(wanted) && !wanted.equals(current)) {
+                                conn.setCatalog(wanted);
+                                current = wanted;
+                            }
+                            task.run(conn, item, target);
+                        } catch (Exception e) {
+                            synchronized (item) {
+                                item.error = (target ? targetDatasource : sourceDatasource) + ": " + e.getMessage();
+                            }
+                            log.debug("{} on {} failed: {}", item.source, target ? targetDatasource : sourceDatasource, e.getMessage());
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        return futures;
+    }
+
+    private static void await(List<Future<?>> futures) throws ExecutionException, InterruptedException {
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private void explain(Connection conn, Item item, boolean target) throws Exception {
+        Plan plan = Explain.explain(conn, item.sql, timeout);
+        if (target) {
+            item.targetPlan = plan;
+        } else {
+            item.sourcePlan = plan;
+        }
+    }
+
+    private void time(Connection conn, Item item, boolean target) throws Exception {
+        double[] samples = new double[Math.max(1, runs)];
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(timeout);
+            for (int r = 0; r < samples.length; r++) {
+                long started = System.nanoTime();
+                try (ResultSet rs = stmt.executeQuery(item.sql)) {
+                    while (rs.next()) {
+                        // fetch every row, the transfer is part of the latency
+                    }
+                }
+                samples[r] = (System.nanoTime() - started) / 1_000_000d;
+            }
+        }
+        Arrays.sort(samples);
+        if (target) {
+            item.targetMs = samples[samples.length / 2];
+        } else {
+            item.sourceMs = samples[samples.length / 2];
+        }
+    }
+
+    private String verdict(Item item) {
+        if (item.error != null) {
+            return "ERROR";
+        }
+        if (!item.regressed) {
+            return item.diffs.isEmpty() ? "SAME" : "CHANGED";
+        }
+        if (item.sourceMs < 0 || item.targetMs < 0) {
+            return "REGRESSED";
+        }
+        return slowdown(item) >= latencyFactor ? "CONFIRMED" : "NOT_SLOWER";
+    }
+
+    private void print(List<Item> ranked, int total) {
+        if ("json".equals(format)) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Item item : ranked) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("source", item.source);
+                row.put("schema", item.schema);
+                row.put("sql", item.sql);
+                row.put("verdict", verdict(item));
+                if (item.error != null) {
+                    row.put("error", item.error);
+                } else {
+                    row.put("source_cost", item.sourcePlan.cost);
+                    row.put("target_cost", item.targetPlan.cost);
+                    row.put("source_rows", item.sourcePlan.rowsExaminedEstimate());
+                    row.put("target_rows", item.targetPlan.rowsExaminedEstimate());
+                    row.put("source_join_order", item.sourcePlan.joinOrder());
+                    row.put("target_join_order", item.targetPlan.joinOrder());
+                    Map<String, List<String>> diffs = new LinkedHashMap<>();
+                    for (String[] d : item.diffs) {
+                        diffs.computeIfAbsent(d[0], k -> new ArrayList<>()).add(d[1]);
+                    }
+                    row.put("diffs", diffs);
+                }
+                if (item.sourceMs >= 0 && item.targetMs >= 0) {
+                    row.put("source_ms", item.sourceMs);
+                    row.put("target_ms", item.targetMs);
+                }
+                rows.add(row);
+            }
+            System.out.println(new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(rows));
+            return;
+        }
+        long regressed = ranked.stream().filter(i -> i.regressed).count();
+        System.out.printf("%s -> %s: %d statements, %d regressed%n%n", sourceDatasource, targetDatasource, total, regressed);
+        System.out.printf("%-10s %-24s %14s %14s %10s %10s  %s%n", "VERDICT", "SOURCE", "ROWS_BEFORE", "ROWS_AFTER", "MS_BEFORE", "MS_AFTER", "SQL");
+        for (Item item : ranked) {
+            String sql = StringUtils.abbreviate(item.sql.replaceAll("\\s+", " "), 100);
+            boolean timed = item.sourceMs >= 0 && item.targetMs >= 0;
+            System.out.printf("%-10s %-24s %14s %14s %10s %10s  %s%n", verdict(item), StringUtils.abbreviate(item.source, 24),
+                    item.sourcePlan == null ? "-" : item.sourcePlan.rowsExaminedEstimate(),
+                    item.targetPlan == null ? "-" : item.targetPlan.rowsExaminedEstimate(),
+                    timed ? String.format("%.1f", item.sourceMs) : "-", timed ? String.format("%.1f", item.targetMs) : "-", sql);
+            if (item.error != null) {
+                System.out.printf("           %s%n", item.error);
+            }
+            for (String[] d : item.diffs) {
+                System.out.printf("           %-20s %s%n", d[0], d[1]);
+            }
+        }
+    }
+}
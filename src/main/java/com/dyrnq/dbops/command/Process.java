@@ -1,28 +1,270 @@
 package com.dyrnq.dbops.command;
 
 import cn.hutool.json.JSONUtil;
+import com.dyrnq.dbops.utils.SqlNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.noear.solon.data.sql.SqlUtils;
 import picocli.CommandLine;
 
-import java.util.Map;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @CommandLine.Command(
         mixinStandardHelpOptions = true,
         showDefaultValues = true,
         name = "process", aliases = {"ps"}, description = "process list")
+@Slf4j
 public class Process extends CommonOptions implements Callable<Integer> {
     @CommandLine.Option(names = {"--full"})
     boolean full;
+    @CommandLine.Option(names = {"-w", "--watch"}, description = "sample the process list continuously and aggregate")
+    boolean watch;
+    @CommandLine.Option(names = {"--interval-ms"}, description = "watch sample interval in milliseconds", defaultValue = "500")
+    long intervalMillis;
+    @CommandLine.Option(names = {"--report-interval"}, description = "seconds between aggregate reports", defaultValue = "10")
+    int reportInterval;
+    @CommandLine.Option(names = {"--duration"}, description = "stop watching after this many seconds, 0 runs until interrupted", defaultValue = "0")
+    int duration;
+    @CommandLine.Option(names = {"--group-by"}, split = ",", description = "aggregate by (user,host,db,state,statement)", defaultValue = "user,host,db,state,statement")
+    List<String> groupBy;
+    @CommandLine.Option(names = {"--kill-after"}, description = "KILL QUERY statements running longer than this many seconds, 0 disables", defaultValue = "0")
+    long killAfter;
+    @CommandLine.Option(names = {"--kill-user"}, split = ",", description = "only kill statements of these users")
+    List<String> killUsers;
+    @CommandLine.Option(names = {"--kill-db"}, split = ",", description = "only kill statements on these databases")
+    List<String> killDbs;
+    @CommandLine.Option(names = {"--kill-match"}, description = "only kill statements whose text matches this regex")
+    String killMatch;
+    @CommandLine.Option(names = {"--dry-run"}, description = "print the statements the kill policy would kill without killing them")
+    boolean dryRun;
+
+    // upper bounds (seconds) of the running-time histogram buckets; the last bucket is open
+    static final long[] TIME_BUCKETS = {1, 5, 30, 120};
+    static final String[] TIME_BUCKET_NAMES = {"<1s", "1-5s", "5-30s", "30-120s", ">=120s"};
+
+    static final String PS_THREADS_SQL = "SELECT PROCESSLIST_ID, PROCESSLIST_USER, PROCESSLIST_HOST, PROCESSLIST_DB, " +
+            "PROCESSLIST_COMMAND, PROCESSLIST_TIME, PROCESSLIST_STATE, PROCESSLIST_INFO FROM performance_schema.threads " +
+            "WHERE TYPE = 'FOREGROUND' AND PROCESSLIST_ID IS NOT NULL AND PROCESSLIST_ID <> CONNECTION_ID() " +
+            "AND PROCESSLIST_COMMAND NOT IN ('Sleep', 'Daemon', 'Binlog Dump', 'Binlog Dump GTID')";
+    static final String IS_PROCESSLIST_SQL = "SELECT ID, USER, HOST, DB, COMMAND, TIME, STATE, INFO FROM information_schema.PROCESSLIST " +
+            "WHERE ID <> CONNECTION_ID() AND COMMAND NOT IN ('Sleep', 'Daemon', 'Binlog Dump', 'Binlog Dump GTID')";
 
     @Override
     public Integer call() throws Exception {
-        String sql = "SHOW PROCESSLIST;";
-        if (full) {
-            sql = "SHOW FULL PROCESSLIST;";
-        }
         SqlUtils sqlUtils = SqlUtils.ofName(ds);
-        System.out.println(JSONUtil.toJsonPrettyStr(sqlUtils.sql(sql).queryRowList(Map.class)));
+        if (!watch) {
+            String sql = "SHOW PROCESSLIST;";
+            if (full) {
+                sql = "SHOW FULL PROCESSLIST;";
+            }
+            System.out.println(JSONUtil.toJsonPrettyStr(sqlUtils.sql(sql).queryRowList(Map.class)));
+            return 0;
+        }
+
+        Pattern killPattern = StringUtils.isBlank(killMatch) ? null : Pattern.compile(killMatch, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+        Map<String, Group> groups = new LinkedHashMap<>();
+        // processlist id -> start of the statement already killed, pooled connections run many statements
+        Map<Long, Long> killed = new HashMap<>();
+        long sampleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalMillis, 50));
+        long reportNanos = TimeUnit.SECONDS.toNanos(Math.max(reportInterval, 1));
+        long start = System.nanoTime();
+        long deadline = duration > 0 ? start + TimeUnit.SECONDS.toNanos(duration) : Long.MAX_VALUE;
+        long nextReport = start + reportNanos;
+        int samples = 0;
+
+        try (Connection conn = sqlUtils.getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            String sampleSql = PS_THREADS_SQL;
+            try {
+                stmt.executeQuery(sampleSql).close();
+            } catch (SQLException e) {
+                log.info("performance_schema.threads unavailable ({}), sampling information_schema.PROCESSLIST", e.getMessage());
+                sampleSql = IS_PROCESSLIST_SQL;
+            }
+
+            while (true) {
+                long tick = System.nanoTime();
+                List<Row> rows = sample(stmt, sampleSql);
+                samples++;
+                for (Row row : rows) {
+                    groups.computeIfAbsent(groupKey(row), k -> new Group(row, groupBy)).add(row);
+                }
+                if (killAfter > 0) {
+                    applyKillPolicy(stmt, rows, killPattern, killed);
+                }
+
+                long now = System.nanoTime();
+                if (now >= nextReport || now >= deadline) {
+                    report(groups, samples, (now - start) / 1_000_000_000d);
+                    nextReport = now + reportNanos;
+                }
+                if (now >= deadline) {
+                    break;
+                }
+                long sleep = sampleNanos - (System.nanoTime() - tick);
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("watching process list failed: " + e.getMessage());
+            log.error(e.getMessage(), e);
+            return 1;
+        }
         return 0;
     }
+
+    private static List<Row> sample(Statement stmt, String sql) throws SQLException {
+        List<Row> rows = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                Row row = new Row();
+                row.id = rs.getLong(1);
+                row.user = StringUtils.defaultString(rs.getString(2));
+                // drop the client port so connections from one host group together
+                row.host = StringUtils.substringBefore(StringUtils.defaultString(rs.getString(3)), ":");
+                row.db = StringUtils.defaultString(rs.getString(4));
+                row.command = StringUtils.defaultString(rs.getString(5));
+                row.time = rs.getLong(6);
+                row.state = StringUtils.defaultString(rs.getString(7));
+                row.info = rs.getString(8);
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private String groupKey(Row row) {
+        StringBuilder key = new StringBuilder();
+        for (String g : groupBy) {
+            key.append(row.field(g)).append('\u0001');
+        }
+        return key.toString();
+    }
+
+    private void applyKillPolicy(Statement stmt, List<Row> rows, Pattern killPattern, Map<Long, Long> killed) {
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        Set<Long> present = new HashSet<>();
+        for (Row row : rows) {
+            present.add(row.id);
+        }
+        killed.keySet().retainAll(present);
+        for (Row row : rows) {
+            if (!"Query".equals(row.command) || row.time < killAfter || row.info == null) {
+                continue;
+            }
+            long startedAt = nowSeconds - row.time;
+            Long killedAt = killed.get(row.id);
+            // TIME has second resolution; a later start is a new statement on the same connection
+            if (killedAt != null && Math.abs(killedAt - startedAt) <= 1) {
+                continue;
+            }
+            if (killUsers != null && !killUsers.contains(row.user)) {
+                continue;
+            }
+            if (killDbs != null && !killDbs.contains(row.db)) {
+                continue;
+            }
+            if (killPattern != null && !killPattern.matcher(row.info).find()) {
+                continue;
+            }
+            killed.put(row.id, startedAt);
+            String summary = "id=" + row.id + " user=" + row.user + " host=" + row.host + " db=" + row.db
+                    + " time=" + row.time + "s sql=" + SqlNormalizer.normalize(row.info, 200);
+            if (dryRun) {
+                System.out.println("[dry-run] KILL QUERY " + summary);
+                continue;
+            }
+            try {
+                stmt.execute("KILL QUERY " + row.id);
+                System.out.println("KILL QUERY " + summary);
+                log.info("killed query {}", summary);
+            } catch (SQLException e) {
+                // the statement may have finished between sampling and killing
+                System.err.println("KILL QUERY " + row.id + " failed: " + e.getMessage());
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void report(Map<String, Group> groups, int samples, double elapsedSeconds) {
+        List<Group> sorted = new ArrayList<>(groups.values());
+        sorted.sort(Comparator.comparingLong((Group g) -> g.observations).reversed());
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("elapsed_seconds", Math.round(elapsedSeconds));
+        out.put("samples", samples);
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Group g : sorted) {
+            Map<String, Object> item = new LinkedHashMap<>(g.labels);
+            item.put("observations", g.observations);
+            item.put("avg_concurrency", samples == 0 ? 0 : Math.round(100d * g.observations / samples) / 100d);
+            item.put("distinct_threads", g.threads.size());
+            item.put("max_time", g.maxTime);
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < TIME_BUCKET_NAMES.length; i++) {
+                histogram.put(TIME_BUCKET_NAMES[i], g.histogram[i]);
+            }
+            item.put("time_histogram", histogram);
+            list.add(item);
+        }
+        out.put("groups", list);
+        System.out.println(JSONUtil.toJsonPrettyStr(out));
+    }
+
+    static class Row {
+        long id;
+        String user;
+        String host;
+        String db;
+        String command;
+        long time;
+        String state;
+        String info;
+
+        String field(String name) {
+            return switch (name) {
+                case "user" -> user;
+                case "host" -> host;
+                case "db" -> db;
+                case "state" -> state;
+                case "command" -> command;
+                case "statement", "sql" -> SqlNormalizer.normalize(info, 200);
+                default -> "";
+            };
+        }
+    }
+
+    static class Group {
+        final Map<String, Object> labels = new LinkedHashMap<>();
+        final Set<Long> threads = new HashSet<>();
+        final long[] histogram = new long[TIME_BUCKET_NAMES.length];
+        long observations;
+        long maxTime;
+
+        Group(Row row, List<String> groupBy) {
+            for (String g : groupBy) {
+                labels.put(g, row.field(g));
+            }
+        }
+
+        void add(Row row) {
+            observations++;
+            threads.add(row.id);
+            maxTime = Math.max(maxTime, row.time);
+            int bucket = 0;
+            while (bucket < TIME_BUCKETS.length && row.time >= TIME_BUCKETS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+        }
+    }
 }
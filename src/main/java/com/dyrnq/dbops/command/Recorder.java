@@ -0,0 +1,213 @@
+package com.dyrnq.dbops.command;
+
+import com.dyrnq.dbops.Main;
+import com.dyrnq.dbops.store.MetricStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.Solon;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "record", description = "record status, processlist and digest samples into a local SQLite store")
+@Slf4j
+public class Recorder implements Callable<Integer> {
+    @DatasourceOption
+    @CommandLine.Option(names = {"--ds", "-ds"}, split = ",", description = "datasource names", defaultValue = "default")
+    List<String> datasources;
+    @CommandLine.Option(names = {"-i", "--interval"}, description = "sample interval in seconds", defaultValue = "10")
+    int interval;
+    @CommandLine.Option(names = {"--store"}, description = "SQLite file, defaults to ~/.dbops/metrics.db")
+    String store;
+    @CommandLine.Option(names = {"--flush-every"}, description = "write to the store every N sample rounds", defaultValue = "6")
+    int flushEvery;
+    @CommandLine.Option(names = {"--digests"}, description = "record the top N statement digests by latency per round, 0 disables", defaultValue = "20")
+    int digests;
+    @CommandLine.Option(names = {"--no-processlist"}, description = "do not record processlist summaries")
+    boolean noProcesslist;
+    @CommandLine.Option(names = {"--raw-hours"}, description = "keep raw samples this long before folding them into 5 minute buckets", defaultValue = "24")
+    int rawHours;
+    @CommandLine.Option(names = {"--retention-days"}, description = "drop 5 minute buckets older than this", defaultValue = "30")
+    int retentionDays;
+    @CommandLine.Option(names = {"--duration"}, description = "stop after this many seconds, 0 runs until interrupted", defaultValue = "0")
+    long duration;
+
+    // SHOW GLOBAL STATUS values that are levels rather than monotonically increasing counters
+    static final Set<String> STATUS_GAUGES = Set.of("Threads_running", "Threads_connected", "Threads_cached",
+            "Open_tables", "Open_files", "Open_table_definitions", "Innodb_buffer_pool_pages_data",
+            "Innodb_buffer_pool_pages_dirty", "Innodb_buffer_pool_pages_free", "Innodb_buffer_pool_pages_total",
+            "Innodb_buffer_pool_bytes_data", "Innodb_buffer_pool_bytes_dirty", "Innodb_row_lock_current_waits",
+            "Innodb_history_list_length", "Max_used_connections", "Uptime", "Uptime_since_flush_status",
+            "Prepared_stmt_count", "Innodb_num_open_files");
+
+    static final String DIGEST_SQL = "SELECT SCHEMA_NAME, DIGEST, DIGEST_TEXT, COUNT_STAR, SUM_TIMER_WAIT " +
+            "FROM performance_schema.events_statements_summary_by_digest WHERE DIGEST IS NOT NULL";
+
+    static class Sample {
+        final Map<String, Long> status = new LinkedHashMap<>();
+        final Map<String, Long> processlist = new TreeMap<>();
+        final List<Object[]> digests = new ArrayList<>();
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        String path = StringUtils.defaultIfBlank(store,
+                Main.homeAbsolutePath("", "." + Solon.cfg().appName()) + File.separator + "metrics.db");
+        // previous raw counter value and its time per datasource and metric, for delta encoding
+        Map<String, long[]> lastCounters = new HashMap<>();
+        Map<String, long[]> lastDigests = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(datasources.size());
+        long deadline = duration > 0 ? System.currentTimeMillis() + duration * 1000 : Long.MAX_VALUE;
+        long nextMaintenance = 0;
+        int rounds = 0;
+
+        // on Ctrl-C interrupt the loop and give it time to flush buffered samples before the JVM exits
+        Thread recorder = Thread.currentThread();
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread hook = new Thread(() -> {
+            recorder.interrupt();
+            try {
+                finished.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        try (MetricStore metricStore = new MetricStore(path)) {
+            log.info("recording {} into {}", datasources, path);
+            while (System.currentTimeMillis() < deadline) {
+                long started = System.currentTimeMillis();
+                long ts = started / 1000;
+                Map<String, Future<Sample>> futures = new LinkedHashMap<>();
+                for (String name : datasources) {
+                    futures.put(name, executor.submit(() -> sample(name)));
+                }
+                for (Map.Entry<String, Future<Sample>> entry : futures.entrySet()) {
+                    try {
+                        Sample sample = entry.getValue().get(Math.max(interval, 1), TimeUnit.SECONDS);
+                        write(metricStore, entry.getKey(), ts, sample, lastCounters, lastDigests);
+                    } catch (ExecutionException | TimeoutException e) {
+                        entry.getValue().cancel(true);
+                        String message = e instanceof TimeoutException ? "timed out" : e.getCause().getMessage();
+                        System.err.printf("sample %s failed: %s%n", entry.getKey(), message);
+                        log.error("sample {} failed: {}", entry.getKey(), message);
+                    }
+                }
+                if (++rounds % Math.max(flushEvery, 1) == 0) {
+                    metricStore.flush();
+                }
+                if (started >= nextMaintenance) {
+                    metricStore.flush();
+                    metricStore.maintain(ts, rawHours * 3600L, retentionDays * 86400L);
+                    nextMaintenance = started + 3_600_000;
+                }
+                long sleep = interval * 1000L - (System.currentTimeMillis() - started);
+                if (sleep > 0) {
+                    Thread.sleep(Math.min(sleep, Math.max(0, deadline - System.currentTimeMillis())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            finished.countDown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException ignored) {
+                // the JVM is already shutting down
+            }
+        }
+        return 0;
+    }
+
+    private Sample sample(String name) throws SQLException {
+        Sample sample = new Sample();
+        try (Connection conn = SqlUtils.ofName(name).getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SHOW GLOBAL STATUS")) {
+                while (rs.next()) {
+                    String value = rs.getString(2);
+                    if (value != null && !value.isEmpty() && StringUtils.isNumeric(value)) {
+                        sample.status.put(rs.getString(1), Long.parseLong(value));
+                    }
+                }
+            }
+            if (!noProcesslist) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COMMAND, COUNT(*) FROM information_schema.PROCESSLIST GROUP BY COMMAND")) {
+                    while (rs.next()) {
+                        sample.processlist.put(rs.getString(1), rs.getLong(2));
+                    }
+                }
+            }
+            if (digests > 0) {
+                try (ResultSet rs = stmt.executeQuery(DIGEST_SQL)) {
+                    while (rs.next()) {
+                        sample.digests.add(new Object[]{rs.getString(1), rs.getString(2), rs.getString(3), rs.getLong(4), rs.getLong(5)});
+                    }
+                } catch (SQLException e) {
+                    log.debug("digest summary unavailable on {}: {}", name, e.getMessage());
+                }
+            }
+        }
+        return sample;
+    }
+
+    private void write(MetricStore store, String ds, long ts, Sample sample,
+                       Map<String, long[]> lastCounters, Map<String, long[]> lastDigests) throws SQLException {
+        // a gauge stands for one sampling interval; a delta covers the time since its previous sample
+        long gaugeWidth = Math.max(interval, 1);
+        for (Map.Entry<String, Long> entry : sample.status.entrySet()) {
+            String name = "status." + entry.getKey();
+            if (STATUS_GAUGES.contains(entry.getKey())) {
+                store.add(store.seriesId(ds, MetricStore.GAUGE, name), ts, entry.getValue(), gaugeWidth);
+                continue;
+            }
+            long[] previous = lastCounters.put(ds + '\u0001' + name, new long[]{entry.getValue(), ts});
+            if (previous != null && ts > previous[1]) {
+                long delta = entry.getValue() - previous[0];
+                // a negative delta means FLUSH STATUS or a restart; the counter restarted from zero
+                store.add(store.seriesId(ds, MetricStore.COUNTER, name), ts, delta < 0 ? entry.getValue() : delta, ts - previous[1]);
+            }
+        }
+        for (Map.Entry<String, Long> entry : sample.processlist.entrySet()) {
+            store.add(store.seriesId(ds, MetricStore.GAUGE, "processlist." + entry.getKey()), ts, entry.getValue(), gaugeWidth);
+        }
+
+        // delta of every digest, then only the top N by latency are stored to bound the number of series
+        List<long[]> deltas = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (Object[] row : sample.digests) {
+            String key = ds + '\u0001' + row[0] + '\u0001' + row[1];
+            long count = (Long) row[3];
+            long latency = (Long) row[4];
+            long[] previous = lastDigests.put(key, new long[]{count, latency, ts});
+            if (previous == null || count < previous[0] || ts <= previous[2]) {
+                continue;
+            }
+            if (count > previous[0]) {
+                deltas.add(new long[]{count - previous[0], latency - previous[1], rows.size(), ts - previous[2]});
+                rows.add(row);
+            }
+        }
+        deltas.sort((a, b) -> Long.compare(b[1], a[1]));
+        for (int i = 0; i < Math.min(digests, deltas.size()); i++) {
+            long[] d = deltas.get(i);
+            Object[] row = rows.get((int) d[2]);
+            String digest = StringUtils.defaultString((String) row[0]) + "." + row[1];
+            store.digestText(digest, (String) row[0], (String) row[2]);
+            store.add(store.seriesId(ds, MetricStore.COUNTER, "digest." + digest + ".count"), ts, d[0], d[3]);
+            // picoseconds to microseconds
+            store.add(store.seriesId(ds, MetricStore.COUNTER, "digest." + digest + ".latency_us"), ts, d[1] / 1_000_000, d[3]);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.dyrnq.dbops.command;
+
+import com.dyrnq.dbops.replay.LatencyHistogram;
+import com.dyrnq.dbops.replay.Workload;
+import com.dyrnq.dbops.utils.SqlClassifier;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "replay", description = "replay a captured workload with its sessions and timing, comparing latencies")
+@Slf4j
+public class Replay extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"-f", "--file"}, required = true, description = "slow log, general log or NDJSON capture")
+    String file;
+    @CommandLine.Option(names = {"--input-format"}, description = "auto, slow, general, ndjson", defaultValue = "auto")
+    String inputFormat;
+    @CommandLine.Option(names = {"--speed"}, description = "time multiplier, 2 replays twice as fast, 0 ignores the recorded timing", defaultValue = "1")
+    double speed;
+    @CommandLine.Option(names = {"--allow-writes"}, description = "also replay statements that modify data or schema")
+    boolean allowWrites;
+    @CommandLine.Option(names = {"--limit"}, description = "replay at most this many statements, 0 replays all", defaultValue = "0")
+    long limit;
+    @CommandLine.Option(names = {"--timeout"}, description = "seconds per statement", defaultValue = "60")
+    int timeout;
+    @CommandLine.Option(names = {"--top"}, description = "fingerprints to print", defaultValue = "30")
+    int top;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    // one thread per recorded connection; a small stack keeps thousands of mostly sleeping sessions cheap
+    static final long SESSION_STACK_SIZE = 256 * 1024;
+
+    static class Stats {
+        final String sample;
+        final LatencyHistogram recorded = new LatencyHistogram();
+        final LatencyHistogram replayed = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        volatile String lastError;
+
+        Stats(String sample) {
+            this.sample = sample;
+        }
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        Path path = Path.of(file);
+        String captureFormat = "auto".equals(inputFormat) ? Workload.detect(path) : inputFormat;
+        // WITH ... UPDATE, SET PASSWORD, START REPLICA and the like count as writes
+        Predicate<String> accept = allowWrites ? sql -> true : SqlClassifier::isReadOnly;
+        Workload workload = Workload.read(path, captureFormat, accept, limit);
+        log.info("{} {} statements in {} sessions over {} s, {} skipped", captureFormat, workload.events(),
+                workload.sessions().size(), workload.spanMicros() / 1_000_000, workload.skipped());
+        if (workload.events() == 0) {
+            System.err.println("no statements to replay in " + file + (workload.skipped() > 0 ? ", " + workload.skipped() + " writes skipped, see --allow-writes" : ""));
+            return 1;
+        }
+
+        DataSource dataSource = SqlUtils.ofName(ds).getDataSource();
+        Map<String, Stats> stats = new ConcurrentHashMap<>();
+        LatencyHistogram lag = new LatencyHistogram();
+        LongAdder failedSessions = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        long startNanos = System.nanoTime() + 100_000_000;
+        for (Map.Entry<Long, List<Workload.Event>> session : workload.sessions().entrySet()) {
+            Runnable r = () -> replaySession(dataSource, session.getValue(), startNanos, stats, lag, failedSessions);
+            Thread t = new Thread(null, r, "replay-" + session.getKey(), SESSION_STACK_SIZE);
+            t.setDaemon(true);
+            threads.add(t);
+        }
+        threads.forEach(Thread::start);
+        try {
+            for (Thread t : threads) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+        }
+        double wallSeconds = (System.nanoTime() - startNanos) / 1_000_000_000d;
+        print(workload, stats, lag, wallSeconds, failedSessions.sum());
+        return failedSessions.sum() > 0 ? 1 : 0;
+    }
+
+    private void replaySession(DataSource dataSource, List<Workload.Event> events, long startNanos,
+                               Map<String, Stats> stats, LatencyHistogram lag, LongAdder failedSessions) {
+        // the connection is taken at the session's first statement, as the original client would have
+        Connection conn = null;
+        try {
+            String current = null;
+            for (Workload.Event e : events) {
+                if (speed > 0) {
+                    long due = startNanos + (long) (e.micros * 1000 / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    } else {
+                        lag.record(-wait / 1000);
+                    }
+                }
+                if (conn == null) {
+                    conn = dataSource.getConnection();
+                    current = conn.getCatalog();
+                }
+                Stats s = stats.computeIfAbsent(e.fingerprint, k -> new Stats(e.sql));
+                if (e.recordedMs >= 0) {
+                    s.recorded.recordMillis(e.recordedMs);
+                }
+                try {
+                    if (StringUtils.isNotBlank(e.schema) && !e.schema.equals(current)) {
+                        conn.setCatalog(e.schema);
+                        current = e.schema;
+                    }
+                    long started = System.nanoTime();
+                    execute(conn, e.sql);
+                    s.replayed.record((System.nanoTime() - started) / 1000);
+                } catch (Exception ex) {
+                    s.errors.increment();
+                    s.lastError = ex.getMessage();
+                    log.debug("replay failed: {}: {}", ex.getMessage(), e.sql);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failedSessions.increment();
+            log.error("replay session on {} failed: {}", ds, e.getMessage());
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    private void execute(Connection conn, String sql) throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(timeout);
+            boolean hasResult = stmt.execute(sql);
+            // drain every result so the transfer is part of the latency, as it was for the client
+            while (true) {
+                if (hasResult) {
+                    try (ResultSet rs = stmt.getResultSet()) {
+                        while (rs.next()) {
+                            // discard
+                        }
+                    }
+                } else if (stmt.getUpdateCount() == -1) {
+                    break;
+                }
+                hasResult = stmt.getMoreResults();
+            }
+        }
+    }
+
+    private void print(Workload workload, Map<String, Stats> stats, LatencyHistogram lag, double wallSeconds, long failedSessions) {
+        List<Map.Entry<String, Stats>> ranked = new ArrayList<>(stats.entrySet());
+        // total replay time first: a fingerprint that runs often and got a little slower matters most
+        ranked.sort(Comparator.comparingDouble((Map.Entry<String, Stats> e) ->
+                e.getValue().replayed.meanMs() * e.getValue().replayed.count()).reversed());
+        if (ranked.size() > top) {
+            ranked = ranked.subList(0, top);
+        }
+        if ("json".equals(format)) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("datasource", ds);
+            out.put("statements", workload.events());
+            out.put("sessions", workload.sessions().size());
+            out.put("skipped", workload.skipped());
+            out.put("failed_sessions", failedSessions);
+            out.put("recorded_seconds", workload.spanMicros() / 1_000_000d);
+            out.put("replay_seconds", wallSeconds);
+            out.put("late_statements", lag.count());
+            out.put("lag_p95_ms", lag.percentileMs(0.95));
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Map.Entry<String, Stats> entry : ranked) {
+                Stats s = entry.getValue();
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("fingerprint", entry.getKey());
+                row.put("sample", s.sample);
+                row.put("count", s.replayed.count());
+                row.put("errors", s.errors.sum());
+                row.put("last_error", s.lastError);
+                row.put("recorded", summary(s.recorded));
+                row.put("replayed", summary(s.replayed));
+                row.put("p95_ratio", ratio(s));
+                rows.add(row);
+            }
+            out.put("fingerprints", rows);
+            System.out.println(new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(out));
+            return;
+        }
+        System.out.printf("%s: %d statements in %d sessions, %d skipped, %d sessions failed%n", ds, workload.events(),
+                workload.sessions().size(), workload.skipped(), failedSessions);
+        System.out.printf("recorded span %.1f s, replayed in %.1f s, %d statements started late (p95 %.1f ms)%n%n",
+                workload.spanMicros() / 1_000_000d, wallSeconds, lag.count(), lag.percentileMs(0.95));
+        StringBuilder header = new StringBuilder();
+        for (double d : LatencyHistogram.DECADES_MS) {
+            header.append(String.format(" %7s", "<" + (d >= 1000 ? (long) (d / 1000) + "s" : (long) d + "ms")));
+        }
+        header.append(String.format(" %7s", ">=10s"));
+        System.out.printf("%8s %6s %10s %10s %10s %10s %7s %-4s%s  %s%n", "COUNT", "ERRORS", "REC_P50", "REC_P95",
+                "P50_MS", "P95_MS", "RATIO", "", header, "FINGERPRINT");
+        for (Map.Entry<String, Stats> entry : ranked) {
+            Stats s = entry.getValue();
+            Double ratio = ratio(s);
+            boolean hasRecorded = s.recorded.count() > 0;
+            System.out.printf("%8d %6d %10s %10s %10.2f %10.2f %7s %-4s%s  %s%n", s.replayed.count(), s.errors.sum(),
+                    hasRecorded ? String.format("%.2f", s.recorded.percentileMs(0.5)) : "-",
+                    hasRecorded ? String.format("%.2f", s.recorded.percentileMs(0.95)) : "-",
+                    s.replayed.percentileMs(0.5), s.replayed.percentileMs(0.95),
+                    ratio == null ? "-" : String.format("%.2f", ratio), "rep", row(s.replayed.decades()),
+                    StringUtils.abbreviate(entry.getKey(), 100));
+            if (hasRecorded) {
+                System.out.printf("%8s %6s %10s %10s %10s %10s %7s %-4s%s%n", "", "", "", "", "", "", "", "rec", row(s.recorded.decades()));
+            }
+            if (s.lastError != null) {
+                System.out.printf("%8s last error: %s%n", "", s.lastError);
+            }
+        }
+    }
+
+    private static String row(long[] counts) {
+        StringBuilder sb = new StringBuilder();
+        for (long c : counts) {
+            sb.append(String.format(" %7d", c));
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Object> summary(LatencyHistogram h) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("count", h.count());
+        m.put("mean_ms", h.meanMs());
+        m.put("p50_ms", h.percentileMs(0.5));
+        m.put("p95_ms", h.percentileMs(0.95));
+        m.put("p99_ms", h.percentileMs(0.99));
+        m.put("histogram", h.decades());
+        return m;
+    }
+
+    /**
+     * Replayed p95 over recorded p95, above 1 where staging is slower; null without a recorded baseline.
+     */
+    private static Double ratio(Stats s) {
+        if (s.recorded.count() == 0 || s.replayed.count() == 0) {
+            return null;
+        }
+        return s.replayed.percentileMs(0.95) / Math.max(s.recorded.percentileMs(0.95), 0.001);
+    }
+}
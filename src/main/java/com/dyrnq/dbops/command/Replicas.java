@@ -0,0 +1,295 @@
+package com.dyrnq.dbops.command;
+
+import com.dyrnq.dbops.utils.GtidSet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "replicas", description = "replication lag and health of several replicas")
+@Slf4j
+public class Replicas implements Callable<Integer> {
+    @DatasourceOption
+    @CommandLine.Option(names = {"-R", "--replica"}, split = ",", required = true, description = "replica datasource names")
+    List<String> replicas;
+    @DatasourceOption
+    @CommandLine.Option(names = {"-S", "--source-ds"}, description = "source datasource; GTID gaps are computed against its gtid_executed")
+    String sourceDatasource;
+    @CommandLine.Option(names = {"-w", "--watch"}, description = "poll repeatedly")
+    boolean watch;
+    @CommandLine.Option(names = {"-i", "--interval"}, description = "poll interval in seconds", defaultValue = "5")
+    int interval;
+    @CommandLine.Option(names = {"--timeout"}, description = "seconds to wait for one server before reporting it unreachable", defaultValue = "5")
+    int timeout;
+    @CommandLine.Option(names = {"--max-lag"}, description = "alert when seconds behind source exceeds this", defaultValue = "60")
+    long maxLag;
+    @CommandLine.Option(names = {"--max-gtid-gap"}, description = "alert when the replica misses more transactions than this", defaultValue = "10000")
+    long maxGtidGap;
+    @CommandLine.Option(names = {"--max-relay-mb"}, description = "alert when relay log space exceeds this", defaultValue = "10240")
+    long maxRelayMb;
+    @CommandLine.Option(names = {"--fail-on-alert"}, description = "exit with 1 when an alert fired (single poll only)")
+    boolean failOnAlert;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    @Override
+    public Integer call() throws Exception {
+        List<String> servers = new ArrayList<>(replicas);
+        if (StringUtils.isNotBlank(sourceDatasource)) {
+            servers.add(sourceDatasource);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(servers.size(), r -> {
+            Thread t = new Thread(r, "replicas-poll");
+            t.setDaemon(true);
+            return t;
+        });
+        boolean alerted = false;
+        try {
+            do {
+                long started = System.nanoTime();
+                Map<String, Future<List<Map<String, Object>>>> futures = new LinkedHashMap<>();
+                Future<String> sourceGtids = StringUtils.isBlank(sourceDatasource) ? null : executor.submit(() -> sourceGtidExecuted(sourceDatasource));
+                for (String replica : replicas) {
+                    futures.put(replica, executor.submit(() -> poll(replica)));
+                }
+
+                GtidSet sourceSet = null;
+                if (sourceGtids != null) {
+                    try {
+                        sourceSet = GtidSet.parse(sourceGtids.get(timeout, TimeUnit.SECONDS));
+                    } catch (Exception e) {
+                        sourceGtids.cancel(true);
+                        System.err.println("ALERT source " + sourceDatasource + " unreachable: " + message(e));
+                        alerted = true;
+                    }
+                }
+
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (Map.Entry<String, Future<List<Map<String, Object>>>> entry : futures.entrySet()) {
+                    try {
+                        rows.addAll(entry.getValue().get(timeout, TimeUnit.SECONDS));
+                    } catch (Exception e) {
+                        entry.getValue().cancel(true);
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        row.put("replica", entry.getKey());
+                        row.put("error", message(e));
+                        rows.add(row);
+                    }
+                }
+                for (Map<String, Object> row : rows) {
+                    List<String> alerts = evaluate(row, sourceSet);
+                    row.put("alerts", alerts);
+                    for (String alert : alerts) {
+                        alerted = true;
+                        System.err.println("ALERT " + row.get("replica") + (row.get("channel") == null ? "" : " [" + row.get("channel") + "]") + ": " + alert);
+                        log.warn("replica {} alert: {}", row.get("replica"), alert);
+                    }
+                    // raw sets can be huge, only the computed differences are printed
+                    row.remove("executed_gtid_set");
+                    row.remove("retrieved_gtid_set");
+                }
+                print(rows);
+                if (watch) {
+                    long sleep = TimeUnit.SECONDS.toNanos(Math.max(interval, 1)) - (System.nanoTime() - started);
+                    if (sleep > 0) {
+                        TimeUnit.NANOSECONDS.sleep(sleep);
+                    }
+                }
+            } while (watch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return failOnAlert && alerted ? 1 : 0;
+    }
+
+    private static String message(Exception e) {
+        if (e instanceof ExecutionException && e.getCause() != null) {
+            return e.getCause().getMessage();
+        }
+        if (e instanceof TimeoutException) {
+            return "timed out";
+        }
+        return e.getMessage();
+    }
+
+    private static String sourceGtidExecuted(String name) throws SQLException {
+        try (Connection conn = SqlUtils.ofName(name).getDataSource().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT @@GLOBAL.gtid_executed")) {
+            return rs.next() ? rs.getString(1) : "";
+        }
+    }
+
+    /**
+     * One row per replication channel of the replica.
+     */
+    private List<Map<String, Object>> poll(String name) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (Connection conn = SqlUtils.ofName(name).getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            List<Map<String, Object>> status;
+            try {
+                status = readRows(stmt, "SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                // before 8.0.22
+                status = readRows(stmt, "SHOW SLAVE STATUS");
+            }
+            Map<String, int[]> workers = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT CHANNEL_NAME, SERVICE_STATE, LAST_ERROR_NUMBER " +
+                    "FROM performance_schema.replication_applier_status_by_worker")) {
+                while (rs.next()) {
+                    int[] counts = workers.computeIfAbsent(StringUtils.defaultString(rs.getString(1)), k -> new int[3]);
+                    counts[0]++;
+                    if ("ON".equals(rs.getString(2))) {
+                        counts[1]++;
+                    }
+                    if (rs.getInt(3) != 0) {
+                        counts[2]++;
+                    }
+                }
+            } catch (SQLException e) {
+                log.debug("applier workers unavailable on {}: {}", name, e.getMessage());
+            }
+
+            if (status.isEmpty()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("replica", name);
+                row.put("error", "not a replica");
+                rows.add(row);
+            }
+            for (Map<String, Object> s : status) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                String channel = StringUtils.defaultString((String) first(s, "Channel_Name"));
+                row.put("replica", name);
+                row.put("channel", channel.isEmpty() ? null : channel);
+                row.put("source", first(s, "Source_Host", "Master_Host") + ":" + first(s, "Source_Port", "Master_Port"));
+                row.put("io_running", first(s, "Replica_IO_Running", "Slave_IO_Running"));
+                row.put("sql_running", first(s, "Replica_SQL_Running", "Slave_SQL_Running"));
+                Object lag = first(s, "Seconds_Behind_Source", "Seconds_Behind_Master");
+                row.put("seconds_behind", lag == null ? null : Long.parseLong(lag.toString()));
+                Object relay = first(s, "Relay_Log_Space");
+                row.put("relay_log_space", relay == null ? 0L : Long.parseLong(relay.toString()));
+                row.put("io_state", first(s, "Replica_IO_State", "Slave_IO_State"));
+                row.put("sql_state", first(s, "Replica_SQL_Running_State", "Slave_SQL_Running_State"));
+                row.put("last_io_error", StringUtils.trimToNull((String) first(s, "Last_IO_Error")));
+                row.put("last_sql_error", StringUtils.trimToNull((String) first(s, "Last_SQL_Error")));
+                int[] w = workers.get(channel);
+                if (w != null) {
+                    row.put("workers", w[0]);
+                    row.put("workers_running", w[1]);
+                    row.put("workers_failed", w[2]);
+                }
+                row.put("retrieved_gtid_set", first(s, "Retrieved_Gtid_Set"));
+                row.put("executed_gtid_set", first(s, "Executed_Gtid_Set"));
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static List<Map<String, Object>> readRows(Statement stmt, String sql) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            ResultSetMetaData md = rs.getMetaData();
+            while (rs.next()) {
+                Map<String, Object> row = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 1; i <= md.getColumnCount(); i++) {
+                    row.put(md.getColumnLabel(i), rs.getObject(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static Object first(Map<String, Object> row, String... names) {
+        for (String name : names) {
+            if (row.containsKey(name)) {
+                return row.get(name);
+            }
+        }
+        return null;
+    }
+
+    private List<String> evaluate(Map<String, Object> row, GtidSet sourceSet) {
+        List<String> alerts = new ArrayList<>();
+        if (row.get("error") != null) {
+            alerts.add("unreachable: " + row.get("error"));
+            return alerts;
+        }
+        if (!"Yes".equals(row.get("io_running"))) {
+            alerts.add("IO thread " + row.get("io_running") + (row.get("last_io_error") == null ? "" : ": " + row.get("last_io_error")));
+        }
+        if (!"Yes".equals(row.get("sql_running"))) {
+            alerts.add("SQL thread " + row.get("sql_running") + (row.get("last_sql_error") == null ? "" : ": " + row.get("last_sql_error")));
+        }
+        Long lag = (Long) row.get("seconds_behind");
+        if (lag != null && lag > maxLag) {
+            alerts.add("lag " + lag + "s > " + maxLag + "s");
+        }
+        long relay = (Long) row.get("relay_log_space");
+        if (relay > maxRelayMb * 1024 * 1024) {
+            alerts.add("relay log space " + relay / 1048576 + "MB > " + maxRelayMb + "MB");
+        }
+        if (row.get("workers_failed") != null && (Integer) row.get("workers_failed") > 0) {
+            alerts.add(row.get("workers_failed") + " applier workers in error");
+        }
+
+        GtidSet executed = GtidSet.parse((String) row.get("executed_gtid_set"));
+        GtidSet retrieved = GtidSet.parse((String) row.get("retrieved_gtid_set"));
+        // received but not yet applied
+        row.put("relay_backlog", retrieved.subtract(executed).count());
+        if (sourceSet != null) {
+            GtidSet missing = sourceSet.subtract(executed);
+            GtidSet errant = executed.subtract(sourceSet);
+            row.put("gtid_gap", missing.count());
+            row.put("errant_transactions", errant.count());
+            if (missing.count() > maxGtidGap) {
+                alerts.add("missing " + missing.count() + " transactions > " + maxGtidGap);
+            }
+            if (!errant.isEmpty()) {
+                alerts.add("errant transactions " + StringUtils.abbreviate(errant.toString(), 200));
+            }
+        }
+        return alerts;
+    }
+
+    private void print(List<Map<String, Object>> rows) {
+        if ("json".equals(format)) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("ts", System.currentTimeMillis());
+            out.put("replicas", rows);
+            Gson gson = watch ? new GsonBuilder().serializeNulls().create()
+                    : new GsonBuilder().setPrettyPrinting().serializeNulls().disableHtmlEscaping().create();
+            System.out.println(gson.toJson(out));
+            return;
+        }
+        System.out.println("-- " + new java.util.Date());
+        System.out.printf("%-20s %-10s %-24s %-4s %-4s %8s %10s %10s %10s %8s  %s%n",
+                "REPLICA", "CHANNEL", "SOURCE", "IO", "SQL", "LAG", "RELAY_MB", "BACKLOG", "GTID_GAP", "WORKERS", "ALERTS");
+        for (Map<String, Object> r : rows) {
+            Object relay = r.get("relay_log_space");
+            System.out.printf("%-20s %-10s %-24s %-4s %-4s %8s %10s %10s %10s %8s  %s%n",
+                    StringUtils.abbreviate(String.valueOf(r.get("replica")), 20),
+                    Objects.toString(r.get("channel"), "-"),
+                    StringUtils.abbreviate(String.valueOf(r.getOrDefault("source", "-")), 24),
+                    r.getOrDefault("io_running", "-"), r.getOrDefault("sql_running", "-"),
+                    r.get("seconds_behind") == null ? "NULL" : r.get("seconds_behind"),
+                    relay == null ? "-" : String.valueOf((Long) relay / 1048576),
+                    r.getOrDefault("relay_backlog", "-"), r.getOrDefault("gtid_gap", "-"),
+                    r.get("workers") == null ? "-" : r.get("workers_running") + "/" + r.get("workers"),
+                    StringUtils.join((Collection<?>) r.get("alerts"), "; "));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.dyrnq.dbops.command;
+
+import com.dyrnq.dbops.Main;
+import com.dyrnq.dbops.store.MetricStore;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.noear.solon.Solon;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "report", description = "rates and percentiles over a window of the store written by record")
+public class Report implements Callable<Integer> {
+    @CommandLine.Option(names = {"--store"}, description = "SQLite file, defaults to ~/.dbops/metrics.db")
+    String store;
+    @CommandLine.Option(names = {"--ds", "-ds"}, description = "datasource name", defaultValue = "default")
+    String ds;
+    @CommandLine.Option(names = {"-m", "--metric"}, split = ",", description = "metric names, SQL LIKE patterns allowed",
+            defaultValue = "status.Queries,status.Com_select,status.Com_insert,status.Com_update,status.Com_delete,status.Threads_running,status.Innodb_rows_read,status.Slow_queries")
+    List<String> metrics;
+    @CommandLine.Option(names = {"--since"}, description = "window length, e.g. 30m, 6h, 7d", defaultValue = "1h")
+    String since;
+    @CommandLine.Option(names = {"--step"}, description = "bucket width in seconds for --series", defaultValue = "300")
+    long step;
+    @CommandLine.Option(names = {"--series"}, description = "also print per-bucket values")
+    boolean series;
+    @CommandLine.Option(names = {"--top-digests"}, description = "statement digests ranked by total latency in the window", defaultValue = "10")
+    int topDigests;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    @Override
+    public Integer call() throws Exception {
+        String path = StringUtils.defaultIfBlank(store,
+                Main.homeAbsolutePath("", "." + Solon.cfg().appName()) + File.separator + "metrics.db");
+        if (!new File(path).isFile()) {
+            System.err.println("store " + path + " does not exist, run record first");
+            return 1;
+        }
+        long window = parseDuration(since);
+        long from = System.currentTimeMillis() / 1000 - window;
+
+        List<Map<String, Object>> summaries = new ArrayList<>();
+        List<Map<String, Object>> digestRows = new ArrayList<>();
+        try (MetricStore metricStore = new MetricStore(path)) {
+            for (String pattern : metrics) {
+                for (Map.Entry<String, long[]> s : metricStore.series(ds, pattern).entrySet()) {
+                    boolean counter = s.getValue()[1] == 1;
+                    summaries.add(summarize(s.getKey(), counter, metricStore.read(s.getValue()[0], from)));
+                }
+            }
+            if (topDigests > 0) {
+                digestRows = digests(metricStore, from);
+            }
+        }
+
+        if ("json".equals(format)) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("datasource", ds);
+            out.put("since", new Date(from * 1000).toString());
+            out.put("metrics", summaries);
+            out.put("digests", digestRows);
+            System.out.println(new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(out));
+            return 0;
+        }
+        System.out.printf("%s since %s (rates per second for counters)%n%n", ds, new Date(from * 1000));
+        System.out.printf("%-44s %-7s %8s %12s %12s %12s %12s %12s%n", "METRIC", "KIND", "SAMPLES", "AVG", "P50", "P95", "P99", "MAX");
+        for (Map<String, Object> m : summaries) {
+            System.out.printf("%-44s %-7s %8s %12.2f %12.2f %12.2f %12.2f %12.2f%n", StringUtils.abbreviate((String) m.get("metric"), 44),
+                    m.get("kind"), m.get("samples"), m.get("avg"), m.get("p50"), m.get("p95"), m.get("p99"), m.get("max"));
+            if (series) {
+                for (Object point : (List<?>) m.get("series")) {
+                    double[] p = (double[]) point;
+                    System.out.printf("    %s %12.2f%n", new Date((long) p[0] * 1000), p[1]);
+                }
+            }
+        }
+        if (!digestRows.isEmpty()) {
+            System.out.println();
+            System.out.printf("%12s %12s %10s  %s%n", "TOTAL_MS", "COUNT", "AVG_MS", "DIGEST_TEXT");
+            for (Map<String, Object> d : digestRows) {
+                System.out.printf("%12.1f %12d %10.3f  %s%n", d.get("total_ms"), d.get("count"), d.get("avg_ms"),
+                        StringUtils.abbreviate(StringUtils.defaultString((String) d.get("digest_text")), 120));
+            }
+        }
+        return 0;
+    }
+
+    static long parseDuration(String text) {
+        String t = text.trim().toLowerCase(Locale.ROOT);
+        char unit = t.charAt(t.length() - 1);
+        long multiplier = switch (unit) {
+            case 's' -> 1;
+            case 'm' -> 60;
+            case 'h' -> 3600;
+            case 'd' -> 86400;
+            default -> 0;
+        };
+        return multiplier == 0 ? Long.parseLong(t) : Long.parseLong(t.substring(0, t.length() - 1)) * multiplier;
+    }
+
+    private Map<String, Object> summarize(String name, boolean counter, long[][] rows) {
+        // per sample value (a rate for counters, the level for gauges) weighted by the seconds it covers, so
+        // 5-minute buckets and raw samples in one window count by time rather than by row
+        double[][] weighted = new double[rows.length][];
+        int n = 0;
+        double sum = 0;
+        double covered = 0;
+        TreeMap<Long, double[]> buckets = new TreeMap<>();
+        for (long[] row : rows) {
+            double width = row[2];
+            double v = counter ? row[1] / width : row[1];
+            weighted[n++] = new double[]{v, width};
+            sum += v * width;
+            covered += width;
+            double[] bucket = buckets.computeIfAbsent(row[0] / step * step, k -> new double[2]);
+            bucket[0] += v * width;
+            bucket[1] += width;
+        }
+        double[][] sorted = Arrays.copyOf(weighted, n);
+        Arrays.sort(sorted, Comparator.comparingDouble(v -> v[0]));
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("metric", name);
+        m.put("kind", counter ? MetricStore.COUNTER : MetricStore.GAUGE);
+        m.put("samples", n);
+        m.put("avg", covered == 0 ? 0d : sum / covered);
+        m.put("p50", percentile(sorted, covered, 0.50));
+        m.put("p95", percentile(sorted, covered, 0.95));
+        m.put("p99", percentile(sorted, covered, 0.99));
+        m.put("max", n == 0 ? 0d : sorted[n - 1][0]);
+        List<double[]> points = new ArrayList<>();
+        buckets.forEach((ts, b) -> points.add(new double[]{ts, b[1] == 0 ? 0 : b[0] / b[1]}));
+        m.put("series", points);
+        return m;
+    }
+
+    /**
+     * Weighted percentile of {value, weight} pairs sorted by value: the first value whose cumulative weight
+     * reaches {@code q} of the total.
+     */
+    static double percentile(double[][] sorted, double total, double q) {
+        if (sorted.length == 0) {
+            return 0d;
+        }
+        double rank = q * total;
+        double seen = 0;
+        for (double[] v : sorted) {
+            seen += v[1];
+            if (seen >= rank) {
+                return v[0];
+            }
+        }
+        return sorted[sorted.length - 1][0];
+    }
+
+    private List<Map<String, Object>> digests(MetricStore metricStore, long from) throws Exception {
+        Map<String, String[]> texts = metricStore.digests();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<String, long[]> s : metricStore.series(ds, "digest.%.latency_us").entrySet()) {
+            String digest = Strings.CS.removeEnd(Strings.CS.removeStart(s.getKey(), "digest."), ".latency_us");
+            long latency = 0;
+            for (long[] row : metricStore.read(s.getValue()[0], from)) {
+                latency += row[1];
+            }
+            if (latency == 0) {
+                continue;
+            }
+            long count = 0;
+            long[] countSeries = metricStore.series(ds, "digest." + digest + ".count").get("digest." + digest + ".count");
+            if (countSeries != null) {
+                for (long[] row : metricStore.read(countSeries[0], from)) {
+                    count += row[1];
+                }
+            }
+            Map<String, Object> d = new LinkedHashMap<>();
+            d.put("digest", digest);
+            d.put("total_ms", latency / 1000d);
+            d.put("count", count);
+            d.put("avg_ms", count == 0 ? 0d : latency / 1000d / count);
+            String[] text = texts.get(digest);
+            d.put("schema", text == null ? null : text[0]);
+            d.put("digest_text", text == null ? null : text[1]);
+            rows.add(d);
+        }
+        rows.sort((a, b) -> Double.compare((Double) b.get("total_ms"), (Double) a.get("total_ms")));
+        return rows.subList(0, Math.min(topDigests, rows.size()));
+    }
+}
@@ -17,8 +17,10 @@ import java.util.stream.Collectors;
         name = "schema-diff", aliases = {"sd"}, description = "SchemaDiff")
 @Slf4j
 public class SchemaDiff implements Callable<Integer> {
+    @DatasourceOption
     @CommandLine.Option(names = {"-source-ds", "--source-ds", "-S"}, description = "source datasource name", defaultValue = "default")
     String sourceDatasource;
+    @DatasourceOption
     @CommandLine.Option(names = {"-target-ds", "--target-ds", "-T"}, description = "target datasource name", defaultValue = "default")
     String targetDatasource;
 
@@ -1,6 +1,8 @@
 package com.dyrnq.dbops.command;
 
 import cn.hutool.db.dialect.DriverUtil;
+import com.dyrnq.dbops.ddl.DdlApplier;
+import com.dyrnq.dbops.ddl.TargetDialect;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.zaxxer.hikari.HikariDataSource;
@@ -12,12 +14,14 @@ import org.noear.solon.data.sql.SqlUtils;
 import picocli.CommandLine;
 
 import javax.sql.DataSource;
+import java.io.PrintStream;
 import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @CommandLine.Command(
@@ -26,9 +30,13 @@ import java.util.regex.Pattern;
         name = "schema-to-doris", aliases = {"std"}, description = "SchemaToDoris")
 @Slf4j
 public class SchemaToDoris implements Callable<Integer> {
+    private static final Pattern VARCHAR_PATTERN = Pattern.compile("varchar\\((\\d+)\\)");
+
+    @DatasourceOption
     @CommandLine.Option(names = {"-source-ds", "--source-ds", "-S"}, description = "source datasource name", defaultValue = "default")
     String sourceDatasource;
 
+    @DatasourceOption
     @CommandLine.Option(names = {"-target-ds", "--target-ds", "-T"}, description = "target datasource name", defaultValue = "default")
     String targetDatasource;
 
@@ -38,7 +46,7 @@ public class SchemaToDoris implements Callable<Integer> {
     @CommandLine.Option(names = {"-target", "--target", "--target-schema"}, description = "target schema", defaultValue = "")
     String targetSchema;
 
-    @CommandLine.Option(names = {"-t", "--type"}, description = "object type to convert (olap, odbc, jdbc, jdbc_catalog)", defaultValue = "olap")
+    @CommandLine.Option(names = {"-t", "--type"}, description = "object type to convert (olap, odbc, jdbc, jdbc_catalog, sync)", defaultValue = "olap")
     String type;
 
     @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
@@ -65,6 +73,48 @@ public class SchemaToDoris implements Callable<Integer> {
     @CommandLine.Option(names = {"--jdbc-resource-name", "--jdbc-resource", "-jr"}, defaultValue = "jdbc_resource_$sourceSchema")
     String jdbcResourceName;
 
+    @CommandLine.Option(names = {"--target-dialect", "--dialect"}, description = "analytical target dialect for olap tables (doris, starrocks, clickhouse)", defaultValue = "doris")
+    String targetDialect;
+
+    @CommandLine.Option(names = {"--partition-column", "--partition-by"}, description = "olap: partition tables by month on this date/datetime column when present (must be NOT NULL)")
+    String partitionColumn;
+
+    @CommandLine.Option(names = {"--skip-indexes"}, description = "olap: do not translate MySQL secondary indexes", defaultValue = "false")
+    boolean skipIndexes;
+
+    @CommandLine.Option(names = {"--index-include"}, arity = "1..*", description = "olap: only translate secondary index columns in this list (column or table.column)")
+    String[] indexInclude;
+
+    @CommandLine.Option(names = {"--index-exclude"}, arity = "1..*", description = "olap: never translate secondary index columns in this list (column or table.column)")
+    String[] indexExclude;
+
+    @CommandLine.Option(names = {"--index-type"}, description = "olap: force the index of a column, e.g. hello.name=inverted (bloom_filter, inverted, bitmap, set, none)")
+    Map<String, String> indexTypeOverrides;
+
+    @CommandLine.Option(names = {"--low-cardinality-threshold"}, description = "olap: index columns with at most this many distinct values get a bitmap/set index", defaultValue = "1000")
+    long lowCardinalityThreshold;
+
+    @CommandLine.Option(names = {"-d", "--drop"}, description = "sync: include drop column statements for columns only in target", defaultValue = "false")
+    boolean includeDrop;
+
+    @CommandLine.Option(names = {"--apply"}, description = "execute the generated statements on the target datasource", defaultValue = "false")
+    boolean apply;
+
+    @CommandLine.Option(names = {"--apply-threads", "--parallel"}, description = "concurrent sessions used by --apply", defaultValue = "8")
+    int applyThreads;
+
+    @CommandLine.Option(names = {"--statement-timeout"}, description = "per statement timeout in seconds used by --apply", defaultValue = "60")
+    int statementTimeout;
+
+    @CommandLine.Option(names = {"--retries"}, description = "retries on transient FE errors used by --apply", defaultValue = "3")
+    int retries;
+
+    @CommandLine.Option(names = {"--retry-backoff"}, description = "backoff in milliseconds between retries, multiplied by the attempt number", defaultValue = "500")
+    long retryBackoff;
+
+    final List<String> heavyChanges = new ArrayList<>();
+    TargetDialect dialect;
+
     private String getJc() {
         return replaceTemplate(jdbcCatalogName);
     }
@@ -98,6 +148,13 @@ public class SchemaToDoris implements Callable<Integer> {
     @Override
     public Integer call() throws Exception {
         try {
+            // per-run state, the shell runs every line on the same instance
+            dialect = TargetDialect.of(targetDialect);
+            heavyChanges.clear();
+            if (!"olap".equalsIgnoreCase(type) && !"doris".equals(dialect.name())) {
+                throw new IllegalArgumentException("Type '" + type + "' is only supported for the doris dialect");
+            }
+
             SqlUtils sourceSqlUtils = SqlUtils.ofName(sourceDatasource);
 
             // If sourceSchema is empty, get the default schema from the datasource
@@ -137,11 +194,19 @@ public class SchemaToDoris implements Callable<Integer> {
                 case "jdbc_catalog":
                     sqlStatements = generateJdbcCatalogStatements(sourceSqlUtils, sourceSchema, filteredTables);
                     break;
+                case "sync":
+                    sqlStatements = generateSyncStatements(sourceSqlUtils, sourceSchema, filteredTables);
+                    break;
                 default:
                     System.err.println("Unsupported type: " + type);
                     return 1;
             }
 
+            if (apply) {
+                printHeavyChanges(System.err);
+                return applyResult(sqlStatements);
+            }
+
             outputResult(sqlStatements);
             return 0;
         } catch (Exception e) {
@@ -187,15 +252,20 @@ public class SchemaToDoris implements Callable<Integer> {
     private List<String> generateOlapTables(SqlUtils sourceSqlUtils, String sourceSchema, List<Map<String, String>> tables) throws Exception {
         List<String> statements = new ArrayList<>();
 
+        // Secondary index metadata for the whole schema in two queries
+        Map<String, List<Map<String, String>>> schemaIndexes = skipIndexes ? Collections.emptyMap() : getSchemaIndexes(sourceSqlUtils, sourceSchema);
+        Map<String, List<Map<String, String>>> schemaColumns = skipIndexes ? Collections.emptyMap() : getSchemaColumns(sourceSqlUtils, sourceSchema);
+
         for (Map<String, String> table : tables) {
             String tableName = table.get("TABLE_NAME");
-            log.info("Converting table {} to Doris OLAP table", tableName);
+            log.info("Converting table {} to {} OLAP table", tableName, dialect.name());
 
             // Apply table prefix and suffix if specified
             String targetTableName = targetTableName(tableName);
 
             String createStatement = getCreateTableStatement(sourceSqlUtils, sourceSchema, tableName);
-            String dorisStatement = convertToDorisOlapTable(createStatement, tableName, targetSchema, targetTableName);
+            Map<String, TargetDialect.IndexType> indexes = chooseIndexes(tableName, schemaIndexes.get(tableName), schemaColumns.get(tableName));
+            String dorisStatement = convertToDorisOlapTable(createStatement, tableName, targetSchema, targetTableName, indexes);
             statements.add(dorisStatement);
         }
 
@@ -274,23 +344,265 @@ public class SchemaToDoris implements Callable<Integer> {
         return statements;
     }
 
-    private String convertToDorisOlapTable(String mysqlCreateStatement, String mysqlTableName, String dorisSchema, String targetTableName) throws Exception {
+    private List<String> generateSyncStatements(SqlUtils sourceSqlUtils, String sourceSchema, List<Map<String, String>> tables) throws Exception {
+        List<String> statements = new ArrayList<>();
+
+        SqlUtils targetSqlUtils = SqlUtils.ofName(targetDatasource);
+        String targetSchema = StringUtils.isBlank(this.targetSchema) ? getDatabaseName(targetSqlUtils) : this.targetSchema;
+        if (StringUtils.isBlank(targetSchema)) {
+            throw new IllegalArgumentException("Target schema is not specified and cannot be determined from the datasource");
+        }
+
+        // One information_schema round trip per side instead of one per table
+        Map<String, List<Map<String, String>>> sourceColumns = getSchemaColumns(sourceSqlUtils, sourceSchema);
+        Map<String, List<Map<String, String>>> targetColumns = getSchemaColumns(targetSqlUtils, targetSchema);
+        Map<String, List<Map<String, String>>> sourceIndexes = skipIndexes ? Collections.emptyMap() : getSchemaIndexes(sourceSqlUtils, sourceSchema);
+
+        for (Map<String, String> table : tables) {
+            String tableName = table.get("TABLE_NAME");
+            String targetTableName = targetTableName(tableName);
+            String dorisTableName = "`" + targetSchema + "`.`" + targetTableName + "`";
+
+            List<Map<String, String>> targetCols = targetColumns.get(targetTableName);
+            if (targetCols == null) {
+                log.info("Table {} does not exist in target, generating CREATE TABLE", targetTableName);
+                String createStatement = getCreateTableStatement(sourceSqlUtils, sourceSchema, tableName);
+                Map<String, TargetDialect.IndexType> indexes = chooseIndexes(tableName, sourceIndexes.get(tableName), sourceColumns.get(tableName));
+                statements.add(convertToDorisOlapTable(createStatement, tableName, targetSchema, targetTableName, indexes));
+                continue;
+            }
+
+            syncColumns(dorisTableName, targetTableName, sourceColumns.getOrDefault(tableName, Collections.emptyList()), targetCols, statements);
+        }
+
+        log.info("Sync generated {} light schema change statements, {} heavy changes flagged", statements.size(), heavyChanges.size());
+        return statements;
+    }
+
+    /**
+     * Compare one existing target table with its source columns, adding light schema changes to the statements
+     * and flagging the rest as heavy changes.
+     */
+    void syncColumns(String dorisTableName, String targetTableName, List<Map<String, String>> sourceCols,
+                     List<Map<String, String>> targetCols, List<String> statements) {
+        Map<String, Map<String, String>> targetColumnMap = new LinkedHashMap<>();
+        for (Map<String, String> col : targetCols) {
+            targetColumnMap.put(col.get("COLUMN_NAME").toLowerCase(), col);
+        }
+        Set<String> sourceColumnNames = new HashSet<>();
+
+        for (Map<String, String> sourceCol : sourceCols) {
+            String columnName = sourceCol.get("COLUMN_NAME");
+            sourceColumnNames.add(columnName.toLowerCase());
+            String sourceType = dialect.tableColumnType(sourceCol.get("COLUMN_TYPE"));
+            Map<String, String> targetCol = targetColumnMap.get(columnName.toLowerCase());
+
+            if (targetCol == null) {
+                // Appending a value column is a light schema change
+                statements.add("ALTER TABLE " + dorisTableName + " ADD COLUMN " + dorisColumnDefinition(sourceCol, sourceType) + ";");
+                continue;
+            }
+
+            String from = normalizeDorisType(targetCol.get("COLUMN_TYPE"));
+            String to = normalizeDorisType(sourceType);
+            boolean nullabilityChanged = !Objects.equals(sourceCol.get("IS_NULLABLE"), targetCol.get("IS_NULLABLE"));
+            if (from.equals(to) && !nullabilityChanged) {
+                continue;
+            }
+
+            String statement = "ALTER TABLE " + dorisTableName + " MODIFY COLUMN " + dorisColumnDefinition(sourceCol, sourceType) + ";";
+            if (!nullabilityChanged && isVarcharWidening(from, to) && !isKeyColumn(targetCol)) {
+                statements.add(statement);
+            } else {
+                heavyChanges.add(statement + " -- " + targetTableName + "." + columnName + ": "
+                        + from + (nullabilityChanged ? " " + nullability(targetCol) : "")
+                        + " -> " + to + (nullabilityChanged ? " " + nullability(sourceCol) : ""));
+            }
+        }
+
+        if (includeDrop) {
+            for (Map.Entry<String, Map<String, String>> entry : targetColumnMap.entrySet()) {
+                if (sourceColumnNames.contains(entry.getKey())) {
+                    continue;
+                }
+                String statement = "ALTER TABLE " + dorisTableName + " DROP COLUMN `" + entry.getValue().get("COLUMN_NAME") + "`;";
+                if (isKeyColumn(entry.getValue())) {
+                    heavyChanges.add(statement + " -- key column");
+                } else {
+                    statements.add(statement);
+                }
+            }
+        }
+    }
+
+    private String dorisColumnDefinition(Map<String, String> column, String dorisType) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("`").append(column.get("COLUMN_NAME")).append("` ").append(dorisType);
+        sb.append("NO".equals(column.get("IS_NULLABLE")) ? " NOT NULL" : " NULL");
+
+        String defaultValue = column.get("COLUMN_DEFAULT");
+        if (defaultValue != null && !defaultValue.isEmpty() && !"NULL".equals(defaultValue)) {
+            if (defaultValue.toUpperCase().startsWith("CURRENT_TIMESTAMP")) {
+                sb.append(" DEFAULT CURRENT_TIMESTAMP");
+            } else if (defaultValue.startsWith("'") && defaultValue.endsWith("'")) {
+                sb.append(" DEFAULT ").append(defaultValue);
+            } else {
+                sb.append(" DEFAULT '").append(defaultValue.replace("'", "''")).append("'");
+            }
+        }
+
+        String comment = column.get("COLUMN_COMMENT");
+        if (comment != null && !comment.isEmpty()) {
+            sb.append(" COMMENT '").append(comment.replace("'", "''")).append("'");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Normalize a column type as reported by Doris or produced by the converter,
+     * e.g. {@code int(11)} -> {@code int}, {@code decimalv3(10, 2)} -> {@code decimal(10,2)}.
+     */
+    private String normalizeDorisType(String type) {
+        if (type == null) {
+            return "";
+        }
+        String t = type.toLowerCase().replaceAll("\\s+", "");
+        t = t.replace("decimalv3", "decimal").replace("datetimev2", "datetime").replace("datev2", "date");
+        t = t.replaceAll("^(tinyint|smallint|int|bigint|largeint)\\(\\d+\\)", "$1");
+        if (t.equals("text") || t.equals("string")) {
+            t = "varchar(65533)";
+        }
+        if (t.equals("datetime(0)")) {
+            t = "datetime";
+        }
+        return t;
+    }
+
+    private boolean isVarcharWidening(String from, String to) {
+        Matcher f = VARCHAR_PATTERN.matcher(from);
+        Matcher t = VARCHAR_PATTERN.matcher(to);
+        return f.matches() && t.matches() && Integer.parseInt(t.group(1)) > Integer.parseInt(f.group(1));
+    }
+
+    private boolean isKeyColumn(Map<String, String> dorisColumn) {
+        return StringUtils.isNotBlank(dorisColumn.get("COLUMN_KEY"));
+    }
+
+    private String nullability(Map<String, String> column) {
+        return "NO".equals(column.get("IS_NULLABLE")) ? "NOT NULL" : "NULL";
+    }
+
+    private void printHeavyChanges(PrintStream out) {
+        if (heavyChanges.isEmpty()) {
+            return;
+        }
+        out.println("-- The following changes require a heavy schema change (table rewrite) and are not emitted:");
+        for (String change : heavyChanges) {
+            out.println("-- " + change);
+        }
+    }
+
+    /**
+     * Map the columns of MySQL secondary indexes to target index structures, based on the column type
+     * and the cardinality MySQL estimated for the leading index column.
+     */
+    private Map<String, TargetDialect.IndexType> chooseIndexes(String tableName, List<Map<String, String>> indexRows, List<Map<String, String>> columnRows) {
+        Map<String, TargetDialect.IndexType> indexes = new LinkedHashMap<>();
+        if (skipIndexes || indexRows == null || indexRows.isEmpty()) {
+            return indexes;
+        }
+
+        Map<String, String> dataTypes = new HashMap<>();
+        if (columnRows != null) {
+            columnRows.forEach(c -> dataTypes.put(c.get("COLUMN_NAME"), c.get("DATA_TYPE")));
+        }
+
+        // Only the cardinality of a leading index column describes that column alone
+        Map<String, Long> cardinality = new LinkedHashMap<>();
+        for (Map<String, String> row : indexRows) {
+            String column = row.get("COLUMN_NAME");
+            if (column == null) {
+                continue; // functional index
+            }
+            Long value = "1".equals(row.get("SEQ_IN_INDEX")) && StringUtils.isNumeric(row.get("CARDINALITY"))
+                    ? Long.valueOf(row.get("CARDINALITY")) : null;
+            if (!cardinality.containsKey(column) || (cardinality.get(column) == null && value != null)) {
+                cardinality.put(column, value);
+            }
+        }
+
+        for (Map.Entry<String, Long> entry : cardinality.entrySet()) {
+            String column = entry.getKey();
+            if (indexInclude != null && !inColumnList(indexInclude, tableName, column)) {
+                continue;
+            }
+            if (indexExclude != null && inColumnList(indexExclude, tableName, column)) {
+                continue;
+            }
+
+            TargetDialect.IndexType indexType;
+            String override = columnOverride(tableName, column);
+            if (override != null) {
+                if ("none".equalsIgnoreCase(override)) {
+                    continue;
+                }
+                indexType = TargetDialect.IndexType.valueOf(override.toUpperCase());
+            } else {
+                boolean lowCardinality = entry.getValue() != null && entry.getValue() <= lowCardinalityThreshold;
+                indexType = dialect.indexType(dataTypes.getOrDefault(column, "varchar"), lowCardinality);
+            }
+            if (indexType != null) {
+                indexes.put(column, indexType);
+            }
+        }
+        return indexes;
+    }
+
+    private boolean inColumnList(String[] list, String tableName, String column) {
+        for (String item : list) {
+            if (item.equalsIgnoreCase(column) || item.equalsIgnoreCase(tableName + "." + column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String columnOverride(String tableName, String column) {
+        if (indexTypeOverrides == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : indexTypeOverrides.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(tableName + "." + column)) {
+                return entry.getValue();
+            }
+        }
+        for (Map.Entry<String, String> entry : indexTypeOverrides.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(column)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    String convertToDorisOlapTable(String mysqlCreateStatement, String mysqlTableName, String dorisSchema, String targetTableName,
+                                           Map<String, TargetDialect.IndexType> indexes) throws Exception {
         try {
             // Process the MySQL statement to extract CREATE TABLE part
             String createTableStatement = extractCreateTableStatement(mysqlCreateStatement);
+            List<String> primaryKeys = extractPrimaryKeys(createTableStatement);
 
             // Clean up unwanted parts
             createTableStatement = cleanCreateTableStatement(createTableStatement);
 
-            // Transform table structure for Doris OLAP
-            createTableStatement = transformToDorisOlap(createTableStatement);
+            // Transform table structure for the target dialect
+            createTableStatement = transformToDorisOlap(createTableStatement, primaryKeys, indexes);
 
             // Replace identifiers and add IF NOT EXISTS
             String dorisTableName = StringUtils.isBlank(dorisSchema) ? targetTableName : dorisSchema + "." + targetTableName;
             createTableStatement = replaceTableNames(createTableStatement, mysqlTableName, dorisTableName);
 
             // Apply type conversions
-            createTableStatement = convertMysqlTypes(createTableStatement);
+            createTableStatement = dialect.convertColumnTypes(createTableStatement);
 
             // Final cleanup
             createTableStatement = finalCleanup(createTableStatement);
@@ -357,9 +669,42 @@ public class SchemaToDoris implements Callable<Integer> {
         return String.join("\n", cleanedLines);
     }
 
-    private String transformToDorisOlap(String createTableStatement) {
+    private List<String> extractPrimaryKeys(String createTableStatement) {
+        List<String> primaryKeys = new ArrayList<>();
+        for (String line : createTableStatement.split("\n")) {
+            line = line.trim();
+            if (line.startsWith("PRIMARY KEY")) {
+                Matcher m = Pattern.compile("`([^`]+)`").matcher(line);
+                while (m.find()) {
+                    primaryKeys.add(m.group(1));
+                }
+            }
+        }
+        return primaryKeys;
+    }
+
+    private String transformToDorisOlap(String createTableStatement, List<String> primaryKeys, Map<String, TargetDialect.IndexType> indexes) {
         // Split the statement into lines
-        String[] lines = createTableStatement.split("\n");
+        List<String> lines = new ArrayList<>(Arrays.asList(createTableStatement.split("\n")));
+
+        List<String> columns = new ArrayList<>();
+        for (String line : lines) {
+            String name = getColumnName(line);
+            if (name != null) {
+                columns.add(name);
+            }
+        }
+
+        List<String> keyColumns = dialect.keyColumns(columns, primaryKeys);
+        String partition = StringUtils.isNotBlank(partitionColumn) && columns.contains(partitionColumn) ? partitionColumn : null;
+        if (partition != null && dialect.keyColumnsFirst() && !keyColumns.contains(partition)) {
+            // Doris and StarRocks require the partition column to be part of the key
+            keyColumns.add(partition);
+        }
+        if (dialect.keyColumnsFirst()) {
+            lines = moveKeyColumnsFirst(lines, keyColumns);
+        }
+
         List<String> transformedLines = new ArrayList<>();
         boolean engineLineFound = false;
 
@@ -367,21 +712,15 @@ public class SchemaToDoris implements Callable<Integer> {
         for (String line : lines) {
             if (line.contains("ENGINE=") && !engineLineFound) {
                 // Add all lines up to but not including the ENGINE line
-                // Then add the Doris OLAP structure
-                transformedLines.add(") ENGINE=OLAP");
-
-                // Get the first column for DUPLICATE KEY and DISTRIBUTED BY
-                String firstColumn = getFirstColumn(Arrays.asList(lines));
-                transformedLines.add("DUPLICATE KEY(" + firstColumn + ")");
-
-                transformedLines.add(" COMMENT \"OLAP\"");
-                transformedLines.add("DISTRIBUTED BY HASH(" + firstColumn + ") BUCKETS 10");
-                transformedLines.add("PROPERTIES (");
-                transformedLines.add("\"replication_allocation\" = \"tag.location.default: 3\"");
-                transformedLines.add(");");
+                // Then add the index definitions and the target table structure
+                List<String> indexDefinitions = dialect.indexDefinitions(indexes);
+                if (!indexDefinitions.isEmpty() && !transformedLines.isEmpty()) {
+                    int last = transformedLines.size() - 1;
+                    transformedLines.set(last, transformedLines.get(last) + ",");
+                    transformedLines.add(String.join(",\n", indexDefinitions));
+                }
+                transformedLines.addAll(dialect.tableClauses(keyColumns, !primaryKeys.isEmpty(), partition, dialect.indexProperties(indexes)));
                 engineLineFound = true;
-//                // Don't add the ENGINE line or anything after it
-//                break;
             } else if (!engineLineFound) {
                 transformedLines.add(line);
             }
@@ -390,20 +729,44 @@ public class SchemaToDoris implements Callable<Integer> {
         return String.join("\n", transformedLines);
     }
 
-    private String getFirstColumn(List<String> lines) {
-        for (String line : lines) {
-            line = line.trim();
-            // Skip lines that are not column definitions
-            if (line.startsWith("`") && !line.startsWith(")`")) {
-                // Extract column name between backticks
-                int start = line.indexOf('`');
-                int end = line.indexOf('`', start + 1);
-                if (start >= 0 && end > start) {
-                    return line.substring(start, end + 1); // Include the backticks
-                }
+    private List<String> moveKeyColumnsFirst(List<String> lines, List<String> keyColumns) {
+        List<Integer> columnIndexes = new ArrayList<>();
+        Map<String, String> columnLines = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String name = getColumnName(lines.get(i));
+            if (name != null) {
+                columnIndexes.add(i);
+                String line = lines.get(i).replaceAll(",\\s*$", "");
+                columnLines.put(name, line);
+            }
+        }
+        List<String> ordered = new ArrayList<>();
+        for (String key : keyColumns) {
+            if (columnLines.containsKey(key)) {
+                ordered.add(columnLines.remove(key));
             }
         }
-        return "`id`"; // Default fallback
+        if (ordered.isEmpty()) {
+            return lines;
+        }
+        ordered.addAll(columnLines.values());
+
+        List<String> result = new ArrayList<>(lines);
+        for (int i = 0; i < columnIndexes.size(); i++) {
+            result.set(columnIndexes.get(i), ordered.get(i) + (i < columnIndexes.size() - 1 ? "," : ""));
+        }
+        return result;
+    }
+
+    private String getColumnName(String line) {
+        line = line.trim();
+        if (line.startsWith("`")) {
+            int end = line.indexOf('`', 1);
+            if (end > 1) {
+                return line.substring(1, end);
+            }
+        }
+        return null;
     }
 
     private String replaceTableNames(String createTableStatement, String mysqlTableName, String dorisTableName) {
@@ -412,97 +775,6 @@ public class SchemaToDoris implements Callable<Integer> {
         return createTableStatement.replaceAll("TABLE `" + mysqlTableName + "`", "TABLE IF NOT EXISTS `" + dorisTableFormatted + "`");
     }
 
-    private String convertMysqlTypes(String content) {
-        // Apply all the conversions
-        content = content.replaceAll("AUTO_INCREMENT", "");
-        content = content.replaceAll("CHARACTER SET utf8 COLLATE utf8_bin", "");
-        content = content.replaceAll("CHARACTER SET utf8mb3 COLLATE utf8mb3_bin", "");
-        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci", "");
-        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_bin", "");
-        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci", "");
-        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8_general_ci", "");
-        content = content.replaceAll("CHARACTER SET utf8 COLLATE utf8_general_ci", "");
-
-        // 更彻底地处理 TIMESTAMP updates - 移除 ON UPDATE CURRENT_TIMESTAMP 及其变体
-        // 移除所有形式的 ON UPDATE CURRENT_TIMESTAMP，包括带参数和不带参数的
-        content = content.replaceAll("(?i)\\s+ON UPDATE CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "");
-        // 特别处理 DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP 组合
-        content = content.replaceAll("(?i)(datetime\\(\\d+\\)|datetime)\\s+DEFAULT\\s+CURRENT_TIMESTAMP(?:\\([^)]*\\))?\\s+ON UPDATE CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "$1 DEFAULT CURRENT_TIMESTAMP");
-        // 特别处理 DEFAULT NULL ON UPDATE CURRENT_TIMESTAMP 组合
-        content = content.replaceAll("(?i)(datetime\\(\\d+\\)|datetime)\\s+DEFAULT\\s+NULL\\s+ON UPDATE CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "$1 DEFAULT NULL");
-
-        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_bin", "");
-        content = content.replaceAll("DEFAULT '0000-00-00 00:00:00'", "DEFAULT '2000-01-01 00:00:00'");
-
-        // Handle DEFAULT CURRENT_TIMESTAMP - only for datetime columns
-        content = content.replaceAll("(?i)(datetime\\(\\d+\\)|datetime)\\s+DEFAULT\\s+CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "$1 DEFAULT CURRENT_TIMESTAMP");
-
-        content = content.replaceAll("DEFAULT b", "DEFAULT");
-        content = content.replaceAll("DEFAULT (\\-?[0-9]+(\\.[0-9]+)?)", "DEFAULT '$1'");
-        content = content.replaceAll("CHARACTER SET utf8mb4", "");
-        content = content.replaceAll("CHARACTER SET utf8", "");
-        content = content.replaceAll("COLLATE utf8mb4_general_ci", "");
-        content = content.replaceAll("COLLATE utf8_general_ci", "");
-        content = content.replaceAll("COLLATE utf8mb4_unicode_ci", "");
-        content = content.replaceAll("COLLATE utf8_unicode_ci", "");
-        content = content.replaceAll("COLLATE utf8_bin", "");
-        // 添加对单独 COLLATE 子句的处理
-        content = content.replaceAll("(?i)\\s+COLLATE\\s+[^\\s,)]+", "");
-
-        content = content.replaceAll("\\btinytext\\b", "varchar(65533)");
-        content = content.replaceAll("text\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("\\btext\\b", "varchar(65533)");
-        content = content.replaceAll("\\bmediumtext\\b", "varchar(65533)");
-        content = content.replaceAll("\\blongtext\\b", "varchar(65533)");
-        content = content.replaceAll("\\btinyblob\\b", "varchar(65533)");
-        content = content.replaceAll("blob\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("\\bblob\\b", "varchar(65533)");
-        content = content.replaceAll("\\bmediumblob\\b", "varchar(65533)");
-        content = content.replaceAll("\\blongblob\\b", "varchar(65533)");
-        content = content.replaceAll("\\btinystring\\b", "varchar(65533)");
-        content = content.replaceAll("\\bmediumstring\\b", "varchar(65533)");
-        content = content.replaceAll("\\blongstring\\b", "varchar(65533)");
-        content = content.replaceAll("\\btimestamp\\b", "datetime");
-        content = content.replaceAll("\\bunsigned\\b", "");
-        content = content.replaceAll("\\bzerofill\\b", "");
-        content = content.replaceAll("\\bjson\\b", "varchar(65533)");
-        content = content.replaceAll("enum\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("set\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("\\bset\\b", "varchar(65533)");
-        content = content.replaceAll("bit\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("bit\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("\\bbit\\b", "varchar(65533)");
-        content = content.replaceAll("varbinary\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("binary\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("string\\([^)]*\\)", "varchar(65533)");
-        content = content.replaceAll("\\bstring\\b", "varchar(65533)");
-        content = content.replaceAll("\\bbinary\\b", "varchar(65533)");
-        content = content.replaceAll("\\bvarbinary\\b", "varchar(65533)");
-        content = content.replaceAll("\\bmediumint", "int");
-        content = content.replaceAll("float\\([^)]*\\)", "float");
-        content = content.replaceAll("double\\([^)]*\\)", "double");
-        content = content.replaceAll("\\btime\\([^)]*\\)", "varchar(64)");
-        content = content.replaceAll("\\btime\\b", "varchar(64)");
-        content = content.replaceAll("year\\([^)]*\\)", "varchar(64)");
-        content = content.replaceAll("\\byear\\b", "varchar(64)");
-
-        // Fix the NULL (3) issue and datetime(n) syntax
-        content = content.replaceAll("NULL \\(\\d+\\)", "NULL");
-        content = content.replaceAll("datetime\\((\\d+)\\)\\s+NULL\\s*\\(\\d+\\)", "datetime($1) NULL");
-        content = content.replaceAll("datetime\\((\\d+)\\)\\s+NOT NULL\\s*\\(\\d+\\)", "datetime($1) NOT NULL");
-
-        // Fix datetime(6) (6) syntax
-        content = content.replaceAll("datetime\\((\\d+)\\)\\s*\\(\\d+\\)", "datetime($1)");
-        content = content.replaceAll("CURRENT_TIMESTAMP\\((\\d+)\\)\\s*\\(\\d+\\)", "CURRENT_TIMESTAMP($1)");
-
-        // Additional cleanup for common patterns
-        content = content.replaceAll(" {2,}", " "); // Replace multiple spaces with single space
-        content = content.replaceAll(" DEFAULT NULL DEFAULT", " DEFAULT"); // Fix double DEFAULT
-        content = content.replaceAll("  ", " "); // Fix double spaces again after replacements
-
-        return content;
-    }
-
     private String finalCleanup(String content) {
         // Remove trailing spaces from each line
         String[] lines = content.split("\n");
@@ -546,7 +818,7 @@ public class SchemaToDoris implements Callable<Integer> {
             for (int i = 0; i < columns.size(); i++) {
                 Map<String, String> column = columns.get(i);
                 String columnName = column.get("COLUMN_NAME");
-                String columnType = convertMysqlTypeToDoris(column.get("DATA_TYPE"), column.get("COLUMN_TYPE"));
+                String columnType = dialect.columnType(column.get("DATA_TYPE"), column.get("COLUMN_TYPE"));
 
                 sb.append("  `").append(columnName).append("` ").append(columnType);
 
@@ -712,7 +984,7 @@ public class SchemaToDoris implements Callable<Integer> {
             for (int i = 0; i < columns.size(); i++) {
                 Map<String, String> column = columns.get(i);
                 String columnName = column.get("COLUMN_NAME");
-                String columnType = convertMysqlTypeToDoris(column.get("DATA_TYPE"), column.get("COLUMN_TYPE"));
+                String columnType = dialect.columnType(column.get("DATA_TYPE"), column.get("COLUMN_TYPE"));
 
                 sb.append("  `").append(columnName).append("` ").append(columnType);
 
@@ -784,51 +1056,6 @@ public class SchemaToDoris implements Callable<Integer> {
 
     // This method is not needed for jdbc_catalog type, as we only create the catalog, not the tables
 
-    private String convertMysqlTypeToDoris(String dataType, String columnType) {
-        // Handle specific column types first
-        if (columnType != null && !columnType.isEmpty()) {
-            // Handle VARCHAR with length
-            if (columnType.toLowerCase().startsWith("varchar")) {
-                return columnType.replaceAll("varchar\\((\\d+)\\)", "varchar($1)");
-            }
-            // Handle CHAR with length
-            if (columnType.toLowerCase().startsWith("char")) {
-                return columnType.replaceAll("char\\((\\d+)\\)", "char($1)");
-            }
-            // Handle DATETIME with precision
-            if (columnType.toLowerCase().startsWith("datetime")) {
-                return columnType.replaceAll("datetime\\((\\d+)\\)", "datetime($1)");
-            }
-        }
-
-        // Handle data types
-        return switch (dataType.toLowerCase()) {
-            case "tinyint" -> "tinyint";
-            case "smallint" -> "smallint";
-            case "mediumint", "int" -> "int";
-            case "bigint" -> "bigint";
-            case "float" -> "float";
-            case "double" -> "double";
-            case "decimal" -> {
-                // Extract precision and scale if available
-                if (columnType != null && columnType.matches("decimal\\(\\d+,\\d+\\)")) {
-                    yield columnType.replaceAll("decimal", "decimal");
-                }
-                yield "decimal(10,2)";
-            }
-            case "date" -> "date";
-            case "time", "year" -> "varchar(64)";
-            case "datetime", "timestamp" -> "datetime";
-            case "char" -> "char(1)";
-            case "varchar" -> "varchar(255)";
-//            case "tinytext", "text", "mediumtext", "longtext" -> "varchar(65533)";
-//            case "binary", "varbinary", "tinyblob", "blob", "mediumblob", "longblob" -> "varchar(65533)";
-//            case "enum", "set" -> "varchar(65533)";
-//            case "json" -> "varchar(65533)";
-            default -> "varchar(65533)";
-        };
-    }
-
     private Map<String, String> getConnectionInfo(String datasourceName) throws SQLException {
         Map<String, String> connectionInfo = new HashMap<>();
 
@@ -867,6 +1094,14 @@ public class SchemaToDoris implements Callable<Integer> {
             for (String statement : sqlStatements) {
                 System.out.println(statement);
             }
+            printHeavyChanges(System.out);
+        } else if ("sync".equalsIgnoreCase(type)) {
+            // always the same shape, even when no change is heavy
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("statements", sqlStatements);
+            result.put("heavy", heavyChanges);
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            System.out.println(gson.toJson(result));
         } else {
             // JSON format - return array of SQL statements directly
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
@@ -874,6 +1109,51 @@ public class SchemaToDoris implements Callable<Integer> {
         }
     }
 
+    private int applyResult(List<String> sqlStatements) throws Exception {
+        SqlUtils targetSqlUtils = SqlUtils.ofName(targetDatasource);
+
+        // Tables already on the target are reported as skipped without a round trip per table
+        String schema = StringUtils.isBlank(targetSchema) ? getDatabaseName(targetSqlUtils) : targetSchema;
+        Set<String> existingTables = new HashSet<>();
+        if (StringUtils.isNotBlank(schema)) {
+            existingTables.addAll(targetSqlUtils.sql("SELECT TABLE_NAME FROM information_schema.TABLES WHERE TABLE_SCHEMA = ?", schema).queryValueList());
+        }
+
+        log.info("Applying {} statements to {} with {} sessions", sqlStatements.size(), targetDatasource, applyThreads);
+        long start = System.currentTimeMillis();
+        DdlApplier applier = new DdlApplier(targetSqlUtils.getDataSource(), applyThreads, statementTimeout, retries, retryBackoff);
+        List<DdlApplier.Result> results = applier.apply(sqlStatements, existingTables);
+        long elapsed = System.currentTimeMillis() - start;
+
+        Map<DdlApplier.Status, Integer> counts = new EnumMap<>(DdlApplier.Status.class);
+        for (DdlApplier.Status status : DdlApplier.Status.values()) {
+            counts.put(status, 0);
+        }
+        results.forEach(r -> counts.merge(r.getStatus(), 1, Integer::sum));
+
+        if ("text".equals(format)) {
+            for (DdlApplier.Result r : results) {
+                System.out.printf("%-8s %-8s %-60s %6d ms%s%n", r.getStatus(), r.getKind(), r.getName(), r.getElapsedMillis(),
+                        r.getError() == null ? "" : " (" + r.getAttempts() + " attempts) " + r.getError());
+            }
+            System.out.printf("-- created: %d, applied: %d, skipped: %d, failed: %d, total: %d, elapsed: %d ms%n",
+                    counts.get(DdlApplier.Status.CREATED), counts.get(DdlApplier.Status.APPLIED), counts.get(DdlApplier.Status.SKIPPED),
+                    counts.get(DdlApplier.Status.FAILED), results.size(), elapsed);
+        } else {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("created", counts.get(DdlApplier.Status.CREATED));
+            summary.put("applied", counts.get(DdlApplier.Status.APPLIED));
+            summary.put("skipped", counts.get(DdlApplier.Status.SKIPPED));
+            summary.put("failed", counts.get(DdlApplier.Status.FAILED));
+            summary.put("total", results.size());
+            summary.put("elapsedMillis", elapsed);
+            summary.put("results", results);
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            System.out.println(gson.toJson(summary));
+        }
+        return counts.get(DdlApplier.Status.FAILED) > 0 ? 1 : 0;
+    }
+
     private List<Map<String, String>> getTables(SqlUtils sqlUtils, String schema) throws Exception {
         String sql = "SELECT TABLE_NAME, TABLE_SCHEMA FROM information_schema.TABLES";
         if (schema != null && !schema.isEmpty()) {
@@ -897,6 +1177,32 @@ public class SchemaToDoris implements Callable<Integer> {
         return parseResult(result);
     }
 
+    private Map<String, List<Map<String, String>>> getSchemaColumns(SqlUtils sqlUtils, String schema) throws Exception {
+        String sql = "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, IS_NULLABLE, COLUMN_DEFAULT, COLUMN_KEY, COLUMN_COMMENT " +
+                "FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = '" + schema + "' " +
+                "ORDER BY TABLE_NAME, ORDINAL_POSITION";
+
+        Map<String, List<Map<String, String>>> columns = new HashMap<>();
+        for (Map<String, String> column : parseResult(sqlUtils.sql(sql).queryRowList(String.class))) {
+            columns.computeIfAbsent(column.get("TABLE_NAME"), k -> new ArrayList<>()).add(column);
+        }
+        return columns;
+    }
+
+    private Map<String, List<Map<String, String>>> getSchemaIndexes(SqlUtils sqlUtils, String schema) throws Exception {
+        String sql = "SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME, SEQ_IN_INDEX, CARDINALITY " +
+                "FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = '" + schema + "' AND INDEX_NAME <> 'PRIMARY' " +
+                "ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX";
+
+        Map<String, List<Map<String, String>>> indexes = new HashMap<>();
+        for (Map<String, String> row : parseResult(sqlUtils.sql(sql).queryRowList(String.class))) {
+            indexes.computeIfAbsent(row.get("TABLE_NAME"), k -> new ArrayList<>()).add(row);
+        }
+        return indexes;
+    }
+
     private String getCreateTableStatement(SqlUtils sqlUtils, String schema, String tableName) throws Exception {
         String sql = "SHOW CREATE TABLE `" + schema + "`.`" + tableName + "`";
         List<String> result = sqlUtils.sql(sql).queryRowList(String.class);
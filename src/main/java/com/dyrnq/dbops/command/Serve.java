@@ -0,0 +1,85 @@
+package com.dyrnq.dbops.command;
+
+import com.dyrnq.dbops.Bootstrap;
+import com.dyrnq.dbops.metrics.MetricsCollector;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "serve", description = "run as a long-lived Prometheus exporter")
+@Slf4j
+public class Serve implements Callable<Integer> {
+    @CommandLine.Option(names = {"--metrics"}, description = "expose /metrics in Prometheus text format")
+    boolean metrics;
+    @CommandLine.Option(names = {"--host"}, description = "listen address", defaultValue = "0.0.0.0")
+    String host;
+    @CommandLine.Option(names = {"-p", "--port"}, description = "listen port", defaultValue = "9104")
+    int port;
+    @DatasourceOption
+    @CommandLine.Option(names = {"--ds", "-ds"}, split = ",", description = "datasource names, defaults to every configured datasource")
+    List<String> datasources;
+    @CommandLine.Option(names = {"--timeout"}, description = "per datasource collection timeout in milliseconds", defaultValue = "5000")
+    long timeoutMillis;
+    @CommandLine.Option(names = {"--cache-ttl"}, description = "reuse a datasource's metrics for this many milliseconds", defaultValue = "10000")
+    long cacheTtlMillis;
+
+    @Override
+    public Integer call() throws Exception {
+        if (!metrics) {
+            System.err.println("nothing to serve, use --metrics");
+            return 1;
+        }
+        List<String> names = datasources == null || datasources.isEmpty() ? Bootstrap.configuredDatasources() : datasources;
+        if (names.isEmpty()) {
+            System.err.println("no datasource configured under solon.dataSources");
+            return 1;
+        }
+
+        MetricsCollector collector = new MetricsCollector(names, timeoutMillis, cacheTtlMillis);
+        HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/metrics", exchange -> {
+            try {
+                respond(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", collector.scrape());
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                respond(exchange, 500, "text/plain; charset=utf-8", String.valueOf(e.getMessage()));
+            }
+        });
+        server.createContext("/", exchange -> respond(exchange, "/".equals(exchange.getRequestURI().getPath()) ? 200 : 404,
+                "text/plain; charset=utf-8", "dbops exporter, metrics at /metrics for " + String.join(", ", names) + "\n"));
+        server.start();
+        System.out.printf("serving metrics for %s on http://%s:%d/metrics%n", String.join(", ", names), host, port);
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            collector.close();
+            stopped.countDown();
+        }));
+        stopped.await();
+        return 0;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.dyrnq.dbops.command;
+
+import cn.hutool.core.io.FileUtil;
+import com.dyrnq.dbops.Bootstrap;
+import com.dyrnq.dbops.Main;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.Solon;
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "shell", description = "run subcommands line by line in one process, keeping pools and JIT warm")
+@Slf4j
+public class Shell implements Callable<Integer> {
+    @CommandLine.Option(names = {"--ds", "-ds"}, description = "datasource passed as --ds to commands that do not name one", defaultValue = "default")
+    String ds;
+    @CommandLine.Option(names = {"--no-timing"}, description = "do not print the latency of each command")
+    boolean noTiming;
+    @CommandLine.Option(names = {"--history-size"}, description = "lines kept in ~/.dbops/shell_history", defaultValue = "1000")
+    int historySize;
+
+    static final Set<String> EXIT = Set.of("exit", "quit", "\\q");
+    static final Set<String> DS_OPTIONS = Set.of("--ds", "-ds");
+
+    private final List<String> history = new ArrayList<>();
+    private volatile Thread running;
+    private volatile boolean interruptRequested;
+
+    @Override
+    public Integer call() throws Exception {
+        // one model for the whole session; picocli resets option fields on every parse, so commands keep
+        // any other per-run state in locals
+        CommandLine cmd = new CommandLine(new Main());
+        boolean timing = !noTiming;
+        boolean interactive = System.console() != null;
+        File historyFile = new File(Main.homeAbsolutePath("", "." + Solon.cfg().appName()), "shell_history");
+        loadHistory(historyFile);
+        interruptOnCtrlC();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        int last = 0;
+        while (true) {
+            if (interactive) {
+                System.out.print("dbops(" + ds + ")> ");
+                System.out.flush();
+            }
+            String line = in.readLine();
+            if (line == null) {
+                break;
+            }
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("!")) {
+                String recalled = recall(line);
+                if (recalled == null) {
+                    System.err.println("no history entry " + line);
+                    continue;
+                }
+                line = recalled;
+                System.err.println(line);
+            }
+            if (EXIT.contains(line)) {
+                break;
+            }
+            remember(line, historyFile);
+
+            List<String> args;
+            try {
+                // meta commands keep their backslash
+                args = line.startsWith("\\") ? new ArrayList<>(Arrays.asList(line.split("\\s+"))) : tokenize(line);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                continue;
+            }
+            switch (args.get(0)) {
+                case "\\timing" -> {
+                    timing = args.size() > 1 ? "on".equalsIgnoreCase(args.get(1)) : !timing;
+                    System.err.println("timing is " + (timing ? "on" : "off"));
+                    continue;
+                }
+                case "\\history" -> {
+                    for (int i = 0; i < history.size(); i++) {
+                        System.out.printf("%5d  %s%n", i + 1, history.get(i));
+                    }
+                    continue;
+                }
+                case "\\ds" -> {
+                    System.out.println(String.join(System.lineSeparator(), Bootstrap.configuredDatasources()));
+                    continue;
+                }
+                case "use" -> {
+                    if (args.size() != 2) {
+                        System.err.println("usage: use <datasource>");
+                    } else if (!Bootstrap.configuredDatasources().contains(args.get(1))) {
+                        System.err.println("unknown datasource " + args.get(1) + ", see \\ds");
+                    } else {
+                        ds = args.get(1);
+                    }
+                    continue;
+                }
+                case "help", "\\?" -> {
+                    cmd.usage(System.out);
+                    System.out.println("Shell: use <ds>, \\ds, \\timing [on|off], \\history, !n, !!, exit");
+                    continue;
+                }
+                case "shell" -> {
+                    System.err.println("already in the shell");
+                    continue;
+                }
+                default -> {
+                }
+            }
+
+            withDatasource(cmd, args);
+            long started = System.nanoTime();
+            interruptRequested = false;
+            running = Thread.currentThread();
+            try {
+                last = cmd.execute(args.toArray(new String[0]));
+            } finally {
+                running = null;
+                // a command interrupted by Ctrl-C may leave the flag set
+                Thread.interrupted();
+            }
+            System.out.flush();
+            if (timing) {
+                System.err.printf("Time: %.1f ms (exit %d)%n", (System.nanoTime() - started) / 1_000_000d, last);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Adds {@code --ds} with the current datasource when the command takes one and the line does not name it.
+     */
+    private void withDatasource(CommandLine cmd, List<String> args) {
+        CommandLine sub = cmd.getSubcommands().get(args.get(0));
+        CommandLine.Model.OptionSpec option = sub == null ? null : sub.getCommandSpec().findOption("--ds");
+        // list options (serve, record, var-diff) keep their own defaults
+        if (option == null || option.isMultiValue()) {
+            return;
+        }
+        for (String arg : args) {
+            if (DS_OPTIONS.contains(StringUtils.substringBefore(arg, "="))) {
+                return;
+            }
+        }
+        args.add(1, "--ds");
+        args.add(2, ds);
+    }
+
+    /**
+     * Ctrl-C interrupts the running command instead of ending the shell; at the prompt it is ignored.
+     * <p>
+     * A command blocked in a JDBC call that ignores interrupts does not notice, so a second Ctrl-C while the
+     * same command still runs restores the previous handler and exits with 130, as Ctrl-C normally would.
+     * {@code sun.misc.Signal} is reached through reflection, as it is internal API; where it is missing
+     * Ctrl-C keeps its default behaviour.
+     */
+    private void interruptOnCtrlC() {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object signal = signalClass.getConstructor(String.class).newInstance("INT");
+            Method handle = signalClass.getMethod("handle", signalClass, handlerClass);
+            Object[] previous = new Object[1];
+            Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[]{handlerClass}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "handle" -> {
+                        Thread t = running;
+                        if (t == null) {
+                            return null;
+                        }
+                        if (!interruptRequested) {
+                            interruptRequested = true;
+                            t.interrupt();
+                            System.err.println("interrupting, press Ctrl-C again to quit the shell");
+                            return null;
+                        }
+                        // the JVM's own handler, so a further Ctrl-C during shutdown behaves as usual
+                        handle.invoke(null, signal, previous[0]);
+                        System.exit(130);
+                        return null;
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    default -> {
+                        return "shell SIGINT handler";
+                    }
+                }
+            });
+            previous[0] = handle.invoke(null, signal, handler);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            log.debug("cannot handle SIGINT: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Splits a line like a POSIX shell would for simple cases: whitespace separates, single quotes are
+     * literal, double quotes and backslashes escape.
+     */
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inToken = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '\\' && i + 1 < line.length()) {
+                current.append(line.charAt(++i));
+                inToken = true;
+            } else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                current.append(c);
+                inToken = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("unterminated " + quote + " quote");
+        }
+        if (inToken) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    private String recall(String line) {
+        if (history.isEmpty()) {
+            return null;
+        }
+        if ("!!".equals(line)) {
+            return history.get(history.size() - 1);
+        }
+        String n = line.substring(1);
+        if (StringUtils.isNumeric(n)) {
+            int index = Integer.parseInt(n) - 1;
+            return index >= 0 && index < history.size() ? history.get(index) : null;
+        }
+        // the latest entry starting with the text
+        for (int i = history.size() - 1; i >= 0; i--) {
+            if (history.get(i).startsWith(n)) {
+                return history.get(i);
+            }
+        }
+        return null;
+    }
+
+    private void loadHistory(File file) {
+        if (file.isFile()) {
+            List<String> lines = FileUtil.readLines(file, StandardCharsets.UTF_8);
+            history.addAll(lines.subList(Math.max(0, lines.size() - historySize), lines.size()));
+        }
+    }
+
+    private void remember(String line, File file) {
+        if (!history.isEmpty() && history.get(history.size() - 1).equals(line)) {
+            return;
+        }
+        history.add(line);
+        if (history.size() > historySize) {
+            history.remove(0);
+            FileUtil.writeLines(history, file, StandardCharsets.UTF_8);
+        } else {
+            FileUtil.appendLines(List.of(line), file, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.dyrnq.dbops.command;
+
+import cn.hutool.core.io.FileUtil;
+import com.dyrnq.dbops.Main;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.noear.solon.Solon;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "table-stats", aliases = {"ts"}, description = "table size, fragmentation and growth across schemas")
+@Slf4j
+public class TableStats extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"--schema"}, description = "schema name or LIKE pattern, defaults to all user schemas")
+    String schemaPattern;
+    @CommandLine.Option(names = {"--threads"}, description = "schemas scanned concurrently", defaultValue = "8")
+    int threads;
+    @CommandLine.Option(names = {"--sort"}, description = "size, fragmentation, free, rows, growth", defaultValue = "size")
+    String sort;
+    @CommandLine.Option(names = {"--top"}, description = "number of tables to print, 0 prints all", defaultValue = "50")
+    int top;
+    @CommandLine.Option(names = {"--min-size-mb"}, description = "ignore tables smaller than this", defaultValue = "0")
+    long minSizeMb;
+    @CommandLine.Option(names = {"--fresh"}, description = "set information_schema_stats_expiry = 0 so MySQL 8 refreshes cached statistics")
+    boolean fresh;
+    @CommandLine.Option(names = {"--snapshot"}, description = "snapshot file used for growth, defaults to ~/.dbops/table-stats-<ds>.json")
+    String snapshotFile;
+    @CommandLine.Option(names = {"--no-save"}, description = "do not update the snapshot file")
+    boolean noSave;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    static final String SYSTEM_SCHEMAS = "'mysql', 'sys', 'performance_schema', 'information_schema'";
+    static final String TABLES_SQL = "SELECT TABLE_NAME, ENGINE, TABLE_ROWS, AVG_ROW_LENGTH, DATA_LENGTH, INDEX_LENGTH, DATA_FREE " +
+            "FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE'";
+
+    @Override
+    public Integer call() throws Exception {
+        if (!List.of("size", "fragmentation", "free", "rows", "growth").contains(sort)) {
+            System.err.println("unsupported --sort " + sort);
+            return 1;
+        }
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        String schemaSql = "SELECT SCHEMA_NAME FROM information_schema.SCHEMATA WHERE SCHEMA_NAME NOT IN (" + SYSTEM_SCHEMAS + ")";
+        List<Object> schemaNames = StringUtils.isBlank(schemaPattern)
+                ? sqlUtils.sql(schemaSql).queryValueList()
+                : sqlUtils.sql(schemaSql + " AND SCHEMA_NAME LIKE ?", schemaPattern).queryValueList();
+
+        File snapshot = new File(StringUtils.defaultIfBlank(snapshotFile,
+                Main.homeAbsolutePath("", "." + Solon.cfg().appName()) + File.separator + "table-stats-" + ds + ".json"));
+        Snapshot previous = Snapshot.read(snapshot);
+        long now = System.currentTimeMillis();
+
+        DataSource dataSource = sqlUtils.getDataSource();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, schemaNames.size())));
+        List<Row> rows = new ArrayList<>();
+        int failed = 0;
+        try {
+            Map<String, Future<List<Row>>> futures = new LinkedHashMap<>();
+            for (Object schemaName : schemaNames) {
+                String schema = String.valueOf(schemaName);
+                futures.put(schema, executor.submit(() -> scanSchema(dataSource, schema)));
+            }
+            for (Map.Entry<String, Future<List<Row>>> entry : futures.entrySet()) {
+                try {
+                    rows.addAll(entry.getValue().get());
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.error("scan {} failed: {}", entry.getKey(), e.getCause().getMessage(), e.getCause());
+                    System.err.printf("scan %s failed: %s%n", entry.getKey(), e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // tables of schemas outside --schema keep their previous entry, so their history survives this run
+        Snapshot current = new Snapshot();
+        current.takenAt = now;
+        current.tables.putAll(previous.tables);
+        Set<String> scanned = new HashSet<>();
+        schemaNames.forEach(schema -> scanned.add(String.valueOf(schema)));
+        current.tables.keySet().removeIf(key -> scanned.contains(StringUtils.substringBefore(key, ".")));
+        long since = Long.MAX_VALUE;
+        for (Row row : rows) {
+            String key = row.schema + "." + row.table;
+            current.tables.put(key, new long[]{row.dataLength + row.indexLength, row.rows, now});
+            long[] before = previous.tables.get(key);
+            if (before != null) {
+                long takenAt = before.length > 2 ? before[2] : previous.takenAt;
+                row.growthBytes = row.dataLength + row.indexLength - before[0];
+                row.growthRows = row.rows - before[1];
+                row.growthDays = Math.round((now - takenAt) / 864_000d) / 100d;
+                since = Math.min(since, takenAt);
+            }
+        }
+        if (since == Long.MAX_VALUE) {
+            since = 0;
+        }
+        double days = since > 0 ? (now - since) / 86_400_000d : 0;
+
+        long minSize = minSizeMb * 1024 * 1024;
+        Comparator<Row> comparator = switch (sort) {
+            case "fragmentation" -> Comparator.comparingDouble(Row::fragmentation);
+            case "free" -> Comparator.comparingLong(r -> r.dataFree);
+            case "rows" -> Comparator.comparingLong(r -> r.rows);
+            case "growth" -> Comparator.comparingLong(r -> r.growthBytes == null ? Long.MIN_VALUE : r.growthBytes);
+            default -> Comparator.comparingLong(Row::totalLength);
+        };
+        List<Row> sorted = rows.stream()
+                .filter(r -> r.totalLength() >= minSize)
+                .sorted(comparator.reversed())
+                .limit(top > 0 ? top : Long.MAX_VALUE)
+                .toList();
+
+        if ("json".equals(format)) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("schemas", schemaNames.size());
+            out.put("tables", rows.size());
+            out.put("growth_since", since > 0 ? new Date(since).toString() : null);
+            out.put("rows", sorted);
+            Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+            System.out.println(gson.toJson(out));
+        } else {
+            printText(sorted, schemaNames.size(), rows.size(), since, days);
+        }
+
+        if (!noSave && failed == 0) {
+            FileUtil.mkParentDirs(snapshot);
+            FileUtil.writeString(new Gson().toJson(current), snapshot, StandardCharsets.UTF_8);
+        }
+        return failed > 0 ? 1 : 0;
+    }
+
+    private List<Row> scanSchema(DataSource dataSource, String schema) throws Exception {
+        List<Row> rows = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            if (fresh) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SET SESSION information_schema_stats_expiry = 0");
+                } catch (Exception e) {
+                    log.debug("information_schema_stats_expiry not supported: {}", e.getMessage());
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(TABLES_SQL)) {
+                ps.setString(1, schema);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Row row = new Row();
+                        row.schema = schema;
+                        row.table = rs.getString(1);
+                        row.engine = rs.getString(2);
+                        row.rows = rs.getLong(3);
+                        row.avgRowLength = rs.getLong(4);
+                        row.dataLength = rs.getLong(5);
+                        row.indexLength = rs.getLong(6);
+                        row.dataFree = rs.getLong(7);
+                        rows.add(row);
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void printText(List<Row> rows, int schemas, int tables, long since, double days) {
+        System.out.printf("%d schemas, %d tables%s%n%n", schemas, tables,
+                since > 0 ? String.format(", growth over up to %.1f days since %s", days, new Date(since)) : ", no previous snapshot");
+        System.out.printf("%-48s %-8s %14s %10s %10s %10s %10s %7s %12s %12s%n",
+                "TABLE", "ENGINE", "ROWS", "AVG_ROW", "DATA_MB", "INDEX_MB", "FREE_MB", "FRAG%", "GROWTH_MB", "GROWTH_ROWS");
+        for (Row r : rows) {
+            System.out.printf("%-48s %-8s %14d %10d %10.1f %10.1f %10.1f %7.1f %12s %12s%n",
+                    StringUtils.abbreviate(r.schema + "." + r.table, 48), StringUtils.defaultString(r.engine),
+                    r.rows, r.avgRowLength, mb(r.dataLength), mb(r.indexLength), mb(r.dataFree), 100 * r.fragmentation(),
+                    r.growthBytes == null ? "-" : String.format("%.1f", mb(r.growthBytes)),
+                    r.growthRows == null ? "-" : String.valueOf(r.growthRows));
+        }
+    }
+
+    private static double mb(long bytes) {
+        return bytes / 1048576d;
+    }
+
+    static class Row {
+        String schema;
+        String table;
+        String engine;
+        long rows;
+        long avgRowLength;
+        long dataLength;
+        long indexLength;
+        long dataFree;
+        Long growthBytes;
+        Long growthRows;
+        Double growthDays;
+
+        long totalLength() {
+            return dataLength + indexLength;
+        }
+
+        /**
+         * Share of the tablespace that is allocated but free; OPTIMIZE TABLE reclaims most of it.
+         */
+        double fragmentation() {
+            long allocated = dataLength + indexLength + dataFree;
+            return allocated == 0 ? 0 : (double) dataFree / allocated;
+        }
+    }
+
+    /**
+     * Per-table total size, row count and the time they were taken, keyed by schema.table. Files written
+     * before the time was kept per table have two values and fall back to {@link #takenAt}.
+     */
+    static class Snapshot {
+        long takenAt;
+        Map<String, long[]> tables = new HashMap<>();
+
+        static Snapshot read(File file) {
+            if (!file.isFile()) {
+                return new Snapshot();
+            }
+            try {
+                Snapshot snapshot = new Gson().fromJson(FileUtil.readString(file, StandardCharsets.UTF_8), Snapshot.class);
+                return snapshot == null ? new Snapshot() : snapshot;
+            } catch (Exception e) {
+                log.warn("ignore unreadable snapshot {}: {}", file, e.getMessage());
+                return new Snapshot();
+            }
+        }
+    }
+}
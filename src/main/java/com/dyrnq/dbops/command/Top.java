@@ -0,0 +1,167 @@
+package com.dyrnq.dbops.command;
+
+import lombok.extern.slf4j.Slf4j;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "top", description = "sample SHOW GLOBAL STATUS and print per-second rates")
+@Slf4j
+public class Top extends CommonOptions implements Callable<Integer> {
+    @CommandLine.Option(names = {"-i", "--interval"}, description = "sample interval in seconds", defaultValue = "1")
+    int interval;
+    @CommandLine.Option(names = {"-n", "--count"}, description = "number of samples to print, 0 runs until interrupted", defaultValue = "0")
+    int count;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (table,ndjson)", defaultValue = "table")
+    String format;
+
+    // counters are printed as per-second rates, gauges as the sampled value
+    static final String[] COUNTERS = {
+            "Queries", "Questions", "Slow_queries",
+            "Com_select", "Com_insert", "Com_update", "Com_delete", "Com_replace", "Com_commit", "Com_rollback",
+            "Innodb_rows_read", "Innodb_rows_inserted", "Innodb_rows_updated", "Innodb_rows_deleted",
+            "Innodb_buffer_pool_read_requests", "Innodb_buffer_pool_reads",
+            "Bytes_received", "Bytes_sent"
+    };
+    static final String[] GAUGES = {"Threads_running", "Threads_connected"};
+
+    static final String[] NAMES = new String[COUNTERS.length + GAUGES.length];
+    static final Map<String, Integer> INDEX = new HashMap<>();
+
+    static {
+        System.arraycopy(COUNTERS, 0, NAMES, 0, COUNTERS.length);
+        System.arraycopy(GAUGES, 0, NAMES, COUNTERS.length, GAUGES.length);
+        for (int i = 0; i < NAMES.length; i++) {
+            // SHOW GLOBAL STATUS names are case-insensitive across versions
+            INDEX.put(NAMES[i].toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    static final int BP_READ_REQUESTS = INDEX.get("innodb_buffer_pool_read_requests");
+    static final int BP_READS = INDEX.get("innodb_buffer_pool_reads");
+
+    @Override
+    public Integer call() throws Exception {
+        if (!"table".equals(format) && !"ndjson".equals(format)) {
+            System.err.println("unsupported format " + format + ", expected table or ndjson");
+            return 1;
+        }
+        if (interval < 1) {
+            interval = 1;
+        }
+        long[] previous = new long[NAMES.length];
+        long[] current = new long[NAMES.length];
+        double[] rates = new double[NAMES.length];
+        StringBuilder out = new StringBuilder(1024);
+        PrintStream ps = System.out;
+
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        try (Connection conn = sqlUtils.getDataSource().getConnection();
+             Statement stmt = conn.createStatement()) {
+            sample(stmt, previous);
+            long previousNanos = System.nanoTime();
+            for (int n = 0; count <= 0 || n < count; n++) {
+                TimeUnit.SECONDS.sleep(interval);
+                sample(stmt, current);
+                long nowNanos = System.nanoTime();
+                double seconds = (nowNanos - previousNanos) / 1_000_000_000d;
+
+                for (int i = 0; i < COUNTERS.length; i++) {
+                    // counters reset on FLUSH STATUS or restart; treat a negative delta as a fresh start
+                    long delta = current[i] - previous[i];
+                    rates[i] = (delta < 0 ? current[i] : delta) / seconds;
+                }
+                for (int i = COUNTERS.length; i < NAMES.length; i++) {
+                    rates[i] = current[i];
+                }
+                double requests = rates[BP_READ_REQUESTS];
+                double hitRatio = requests > 0 ? 100d * (1 - rates[BP_READS] / requests) : 100d;
+
+                out.setLength(0);
+                if ("ndjson".equals(format)) {
+                    ndjson(out, rates, hitRatio);
+                } else {
+                    table(out, rates, hitRatio, seconds);
+                }
+                ps.print(out);
+                ps.flush();
+
+                long[] swap = previous;
+                previous = current;
+                current = swap;
+                previousNanos = nowNanos;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("sampling global status failed: " + e.getMessage());
+            log.error(e.getMessage(), e);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Read SHOW GLOBAL STATUS into the preallocated array; variables this server does not report stay 0.
+     */
+    private static void sample(Statement stmt, long[] values) throws Exception {
+        try (ResultSet rs = stmt.executeQuery("SHOW GLOBAL STATUS")) {
+            while (rs.next()) {
+                Integer index = INDEX.get(rs.getString(1).toLowerCase(Locale.ROOT));
+                if (index != null) {
+                    values[index] = rs.getLong(2);
+                }
+            }
+        }
+    }
+
+    private static void ndjson(StringBuilder out, double[] rates, double hitRatio) {
+        out.append("{\"ts\":").append(System.currentTimeMillis());
+        for (int i = 0; i < NAMES.length; i++) {
+            out.append(",\"").append(NAMES[i]).append("\":");
+            appendFixed(out, rates[i]);
+        }
+        out.append(",\"Buffer_pool_hit_ratio\":");
+        appendFixed(out, hitRatio);
+        out.append("}\n");
+    }
+
+    private static void table(StringBuilder out, double[] rates, double hitRatio, double seconds) {
+        // clear screen and move the cursor home so the table refreshes in place
+        out.append("\033[H\033[2J");
+        out.append("dbops top - interval ");
+        appendFixed(out, seconds);
+        out.append("s\n\n");
+        out.append(String.format("%-36s %16s%n", "VARIABLE", "VALUE"));
+        for (int i = 0; i < NAMES.length; i++) {
+            out.append(String.format("%-36s %16.2f%n", i < COUNTERS.length ? NAMES[i] + "/s" : NAMES[i], rates[i]));
+        }
+        out.append(String.format("%-36s %15.2f%%%n", "Buffer_pool_hit_ratio", hitRatio));
+    }
+
+    private static void appendFixed(StringBuilder out, double value) {
+        long scaled = Math.round(value * 100);
+        if (scaled < 0) {
+            out.append('-');
+            scaled = -scaled;
+        }
+        out.append(scaled / 100).append('.');
+        long fraction = scaled % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+}
@@ -0,0 +1,226 @@
+package com.dyrnq.dbops.command;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.noear.solon.data.sql.SqlUtils;
+import picocli.CommandLine;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+@CommandLine.Command(
+        mixinStandardHelpOptions = true,
+        showDefaultValues = true,
+        name = "var-diff", aliases = {"vd"}, description = "compare variables across datasources")
+@Slf4j
+public class VarDiff implements Callable<Integer> {
+    @DatasourceOption
+    @CommandLine.Option(names = {"--ds", "-ds"}, split = ",", required = true, description = "datasource names to compare")
+    List<String> datasources;
+    @CommandLine.Option(names = {"--timeout"}, description = "seconds to wait for each datasource", defaultValue = "10")
+    int timeout;
+    @CommandLine.Option(names = {"--all"}, description = "include variables that are equal everywhere")
+    boolean all;
+    @CommandLine.Option(names = {"--perf-only"}, description = "only variables known to matter for performance")
+    boolean perfOnly;
+    @CommandLine.Option(names = {"--ignore"}, split = ",", description = "additional variables to ignore")
+    List<String> ignore;
+    @CommandLine.Option(names = {"-F", "--format"}, description = "output format (json, text)", defaultValue = "text")
+    String format;
+
+    // differ on every server by design
+    static final Set<String> ALWAYS_DIFFERENT = Set.of("hostname", "server_id", "server_uuid", "report_host", "pid_file",
+            "gtid_executed", "gtid_purged", "gtid_owned", "timestamp", "rand_seed1", "rand_seed2", "pseudo_thread_id",
+            "warning_count", "error_count", "last_insert_id", "identity", "insert_id");
+    static final Set<String> PERFORMANCE = Set.of("innodb_buffer_pool_size", "innodb_buffer_pool_instances",
+            "innodb_buffer_pool_chunk_size", "innodb_log_file_size", "innodb_log_files_in_group", "innodb_redo_log_capacity",
+            "innodb_log_buffer_size", "innodb_flush_log_at_trx_commit", "innodb_flush_method", "innodb_flush_neighbors",
+            "innodb_io_capacity", "innodb_io_capacity_max", "innodb_doublewrite", "innodb_read_io_threads",
+            "innodb_write_io_threads", "innodb_thread_concurrency", "innodb_adaptive_hash_index", "innodb_change_buffering",
+            "innodb_lru_scan_depth", "innodb_max_dirty_pages_pct", "innodb_page_cleaners", "innodb_purge_threads",
+            "innodb_lock_wait_timeout", "sync_binlog", "binlog_format", "binlog_row_image", "binlog_cache_size",
+            "max_connections", "thread_cache_size", "table_open_cache", "table_open_cache_instances", "table_definition_cache",
+            "tmp_table_size", "max_heap_table_size", "sort_buffer_size", "join_buffer_size", "read_buffer_size",
+            "read_rnd_buffer_size", "transaction_isolation", "tx_isolation", "query_cache_type", "query_cache_size",
+            "open_files_limit", "performance_schema", "slave_parallel_workers", "replica_parallel_workers",
+            "slave_parallel_type", "replica_parallel_type", "long_query_time", "log_bin", "innodb_dedicated_server");
+    static final Pattern SIZE_NAME = Pattern.compile(".*(_size|_buffer|_cache_size|_capacity|_max_size|_length)$");
+    static final Pattern PATH_NAME = Pattern.compile(".*(dir|_file|_path|basedir|socket|_log_group_home_dir)$");
+
+    @Override
+    public Integer call() throws Exception {
+        if (datasources.size() < 2) {
+            System.err.println("var-diff needs at least two datasources");
+            return 1;
+        }
+        Set<String> ignored = new HashSet<>(ALWAYS_DIFFERENT);
+        if (ignore != null) {
+            ignored.addAll(ignore);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(datasources.size());
+        Map<String, Map<String, String>> variables = new LinkedHashMap<>();
+        int failed = 0;
+        try {
+            Map<String, Future<Map<String, String>>> futures = new LinkedHashMap<>();
+            for (String name : datasources) {
+                futures.put(name, executor.submit(() -> fetchVariables(SqlUtils.ofName(name))));
+            }
+            for (Map.Entry<String, Future<Map<String, String>>> entry : futures.entrySet()) {
+                try {
+                    variables.put(entry.getKey(), entry.getValue().get(timeout, TimeUnit.SECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    failed++;
+                    entry.getValue().cancel(true);
+                    String message = e instanceof TimeoutException ? "timed out" : e.getCause().getMessage();
+                    System.err.printf("fetch variables from %s failed: %s%n", entry.getKey(), message);
+                    log.error("fetch variables from {} failed: {}", entry.getKey(), message);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (variables.size() < 2) {
+            return 1;
+        }
+
+        SortedSet<String> names = new TreeSet<>();
+        variables.values().forEach(v -> names.addAll(v.keySet()));
+        List<String> servers = new ArrayList<>(variables.keySet());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String name : names) {
+            if (ignored.contains(name) || perfOnly && !PERFORMANCE.contains(name)) {
+                continue;
+            }
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String server : servers) {
+                String raw = variables.get(server).get(name);
+                values.put(server, raw == null ? null : normalize(name, raw));
+            }
+            boolean differs = new HashSet<>(values.values()).size() > 1;
+            if (!differs && !all) {
+                continue;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("variable", name);
+            row.put("performance", PERFORMANCE.contains(name));
+            row.put("differs", differs);
+            row.put("values", values);
+            rows.add(row);
+        }
+
+        if ("json".equals(format)) {
+            Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().disableHtmlEscaping().create();
+            System.out.println(gson.toJson(rows));
+        } else {
+            printMatrix(servers, rows);
+        }
+        return failed > 0 ? 1 : 0;
+    }
+
+    /**
+     * SHOW GLOBAL VARIABLES mapped straight from the result set, in server order.
+     */
+    static Map<String, String> fetchVariables(SqlUtils sqlUtils) throws SQLException {
+        return fetchVariables(sqlUtils, "SHOW GLOBAL VARIABLES");
+    }
+
+    static Map<String, String> fetchVariables(SqlUtils sqlUtils, String sql) throws SQLException {
+        Map<String, String> variables = new LinkedHashMap<>();
+        try (Connection conn = sqlUtils.getDataSource().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                variables.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Comparable form of a value: booleans as ON/OFF, byte sizes with a binary unit, paths without
+     * duplicate or trailing separators, comma lists sorted.
+     */
+    static String normalize(String name, String value) {
+        String v = value.trim();
+        switch (v.toUpperCase(Locale.ROOT)) {
+            case "ON", "TRUE", "YES" -> {
+                return "ON";
+            }
+            case "OFF", "FALSE", "NO" -> {
+                return "OFF";
+            }
+            default -> {
+            }
+        }
+        if (SIZE_NAME.matcher(name).matches() && v.matches("\\d+")) {
+            return humanSize(Long.parseLong(v));
+        }
+        if (PATH_NAME.matcher(name).matches() && v.contains("/")) {
+            v = v.replaceAll("/{2,}", "/");
+            return v.length() > 1 ? Strings.CS.removeEnd(v, "/") : v;
+        }
+        if (v.contains(",") && !v.contains(" ")) {
+            // sql_mode, optimizer_switch: order is irrelevant
+            String[] parts = v.split(",");
+            Arrays.sort(parts);
+            return String.join(",", parts);
+        }
+        return v;
+    }
+
+    static String humanSize(long bytes) {
+        String[] units = {"", "K", "M", "G", "T"};
+        int unit = 0;
+        long value = bytes;
+        while (unit < units.length - 1 && value >= 1024 && value % 1024 == 0) {
+            value /= 1024;
+            unit++;
+        }
+        return value + units[unit];
+    }
+
+    private static void printMatrix(List<String> servers, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            System.out.println("no differences");
+            return;
+        }
+        int nameWidth = "VARIABLE".length();
+        int[] widths = new int[servers.size()];
+        for (int i = 0; i < servers.size(); i++) {
+            widths[i] = Math.min(40, servers.get(i).length());
+        }
+        for (Map<String, Object> row : rows) {
+            nameWidth = Math.max(nameWidth, row.get("variable").toString().length() + 2);
+            Map<?, ?> values = (Map<?, ?>) row.get("values");
+            for (int i = 0; i < servers.size(); i++) {
+                widths[i] = Math.max(widths[i], Math.min(40, String.valueOf(values.get(servers.get(i))).length()));
+            }
+        }
+        StringBuilder header = new StringBuilder(StringUtils.rightPad("VARIABLE", nameWidth));
+        for (int i = 0; i < servers.size(); i++) {
+            header.append("  ").append(StringUtils.rightPad(StringUtils.abbreviate(servers.get(i), Math.max(widths[i], 4)), widths[i]));
+        }
+        System.out.println(header);
+        for (Map<String, Object> row : rows) {
+            String name = ((Boolean) row.get("performance") ? "* " : "  ") + row.get("variable");
+            StringBuilder line = new StringBuilder(StringUtils.rightPad(name, nameWidth));
+            Map<?, ?> values = (Map<?, ?>) row.get("values");
+            for (int i = 0; i < servers.size(); i++) {
+                Object value = values.get(servers.get(i));
+                line.append("  ").append(StringUtils.rightPad(value == null ? "-" : StringUtils.abbreviate(value.toString(), Math.max(widths[i], 4)), widths[i]));
+            }
+            System.out.println(line);
+        }
+        System.out.println();
+        System.out.println("* performance relevant");
+    }
+}
@@ -4,6 +4,13 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import freemarker.cache.ClassTemplateLoader;
+import freemarker.cache.FileTemplateLoader;
+import freemarker.cache.MultiTemplateLoader;
+import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import lombok.extern.slf4j.Slf4j;
@@ -14,13 +21,17 @@ import org.noear.solon.data.sql.SqlUtils;
 import picocli.CommandLine;
 
 import java.io.*;
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.Callable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @CommandLine.Command(
         mixinStandardHelpOptions = true,
@@ -32,6 +43,10 @@ public class WoodGen extends CommonOptions implements Callable<Integer> {
     private static final Pattern LOWER_CASE = Pattern.compile("[a-z]");
     private static final String DEFAULT_DOMAIN_SUBPACKAGE_NAME = "model";
     private static final String DEFAULT_MAPPER_SUBPACKAGE_NAME = "dso";
+    private static final String MANIFEST_FILE_NAME = ".wood-manifest.json";
+    private static final String DEFAULT_TEMPLATE_PATH = "/templates/wood";
+    private Map<String, String> typeMapping = Collections.emptyMap();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
     @CommandLine.Option(names = {"--package-name", "-p"}, description = "package name", defaultValue = "com.example")
     String package_name;
     @CommandLine.Option(names = {"--domain-package-name", "--domain-pkg-name", "-dp"}, description = "domain package name")
@@ -39,7 +54,7 @@ public class WoodGen extends CommonOptions implements Callable<Integer> {
     @CommandLine.Option(names = {"--mapper-package-name", "--mapper-pkg-name", "-mp"}, description = "mapper package name")
     String mapper_package_name;
 
-    @CommandLine.Option(names = {"--template-dir", "-T"}, description = "templateDir", defaultValue = "src/main/resources/templates")
+    @CommandLine.Option(names = {"--template-dir", "-T"}, description = "templateDir, falls back to the built-in templates", defaultValue = "src/main/resources/templates")
     String templateDir;
 
     @CommandLine.Option(names = {"--dist-dir", "-D"}, description = "distDir", defaultValue = "src/main/java/")
@@ -59,6 +74,14 @@ public class WoodGen extends CommonOptions implements Callable<Integer> {
     private String[] skipTables;
     @CommandLine.Option(names = {"--extra-imports", "-i"}, arity = "1..*", description = "extra imports")
     private String[] extraImports;
+    @CommandLine.Option(names = {"--force", "-f"}, description = "regenerate every table, ignoring the manifest", defaultValue = "false")
+    boolean force;
+    @CommandLine.Option(names = {"--primitive"}, description = "use primitive types for NOT NULL columns", defaultValue = "false")
+    boolean primitive;
+    @CommandLine.Option(names = {"--type-mapping"}, description = "properties file overriding java types: table.column=, column= or type.<data_type>[ unsigned]=")
+    String typeMappingFile;
+    @CommandLine.Option(names = {"--threads"}, description = "threads used to render and write files, 0 for the number of processors", defaultValue = "0")
+    int threads;
 
 
     public static String toCamelString(String name) {
@@ -105,43 +128,87 @@ public class WoodGen extends CommonOptions implements Callable<Integer> {
         return buffer.toString();
     }
 
-    public static Set<String> getPrimaryKeys(Connection conn, String schema, String tableName) throws SQLException {
-        Set<String> primaryKeys = new HashSet<>();
-        DatabaseMetaData metaData = conn.getMetaData();
+    private static final Map<String, String> PRIMITIVES = Map.of(
+            "Integer", "int", "Long", "long", "Boolean", "boolean", "Double", "double",
+            "Float", "float", "Short", "short", "Byte", "byte");
 
-        try (ResultSet pkRs = metaData.getPrimaryKeys(null, schema, tableName)) {
-            while (pkRs.next()) {
-                String columnName = pkRs.getString("COLUMN_NAME");
-                primaryKeys.add(columnName);
-            }
+    /**
+     * Java type of a column, from DATA_TYPE, COLUMN_TYPE (display width, unsigned) and nullability.
+     * <p>
+     * Lookup order: {@code table.column} and {@code column} entries of the type mapping file,
+     * {@code type.<data_type>[ unsigned]} entries of the file, then the built-in map.
+     */
+    private String dbTypeToJavaType(String tableName, Map column) {
+        String columnName = ObjUtil.toString(column.get("COLUMN_NAME"));
+        String dataType = StringUtils.lowerCase(StringUtils.defaultString(ObjUtil.toString(column.get("DATA_TYPE"))));
+        String columnType = StringUtils.lowerCase(StringUtils.defaultString(ObjUtil.toString(column.get("COLUMN_TYPE"))));
+        boolean unsigned = Strings.CS.contains(columnType, "unsigned");
+
+        String javaType = typeMapping.get(tableName + "." + columnName);
+        if (javaType == null) {
+            javaType = typeMapping.get(columnName);
         }
-        return primaryKeys;
-    }
-
-    private String dbTypeToJavaType(String dbType) {
-
-        String up = dbType.toUpperCase();
-
-        if (Strings.CS.startsWith(up, "INT")) {
-            return "Integer";
-        } else if (Strings.CS.startsWith(up, "TINYINT")) {
-            return "Integer";
-        } else if (Strings.CS.startsWith(up, "SMALLINT")) {
-            return "Integer";
-        } else if (Strings.CS.startsWith(up, "BIGINT")) {
-            return "Long";
-        } else if (Strings.CS.startsWith(up, "TIMESTAMP")) {
-            return "java.time.LocalDateTime";
-        } else if (Strings.CI.equals(up, "DATE")) {
-            return "java.time.LocalDateTime";
-        } else if (Strings.CI.equals(up, "DATETIME")) {
-            return "java.time.LocalDateTime";
+        if (javaType != null) {
+            return javaType;
         }
 
+        javaType = typeMapping.get("type." + dataType + (unsigned ? " unsigned" : ""));
+        if (javaType == null) {
+            javaType = typeMapping.get("type." + dataType);
+        }
+        if (javaType == null) {
+            javaType = switch (dataType) {
+                // tinyint(1) is read as a boolean by the MySQL driver (tinyInt1isBit)
+                case "tinyint" -> Strings.CS.startsWith(columnType, "tinyint(1)") ? "Boolean" : "Integer";
+                case "smallint", "mediumint" -> "Integer";
+                case "int", "integer" -> unsigned ? "Long" : "Integer";
+                // values above Long.MAX_VALUE do not fit a long
+                case "bigint" -> unsigned ? "java.math.BigInteger" : "Long";
+                case "decimal", "numeric" -> "java.math.BigDecimal";
+                case "float" -> unsigned ? "Double" : "Float";
+                case "double", "real" -> "Double";
+                case "bit" -> "bit(1)".equals(columnType) ? "Boolean" : "byte[]";
+                case "bool", "boolean" -> "Boolean";
+                case "date" -> "java.time.LocalDate";
+                case "datetime", "timestamp" -> "java.time.LocalDateTime";
+                case "time" -> "java.time.LocalTime";
+                case "year" -> "Integer";
+                case "binary", "varbinary", "tinyblob", "blob", "mediumblob", "longblob",
+                     "geometry", "point", "linestring", "polygon", "multipoint", "multilinestring",
+                     "multipolygon", "geometrycollection" -> "byte[]";
+                default -> "String"; // char, varchar, text, enum, set, json
+            };
+        }
 
-        return "String";
+        // NOT NULL columns may use primitives; auto increment keys stay boxed so "not assigned yet" is null
+        boolean notNull = "NO".equals(ObjUtil.toString(column.get("IS_NULLABLE")));
+        boolean autoIncrement = Strings.CI.contains(ObjUtil.toString(column.get("EXTRA")), "auto_increment");
+        if (primitive && notNull && !autoIncrement && PRIMITIVES.containsKey(javaType)) {
+            return PRIMITIVES.get(javaType);
+        }
+        return javaType;
+    }
 
+    private static String boxed(String javaType) {
+        for (Map.Entry<String, String> entry : PRIMITIVES.entrySet()) {
+            if (entry.getValue().equals(javaType)) {
+                return entry.getKey();
+            }
+        }
+        return javaType;
+    }
 
+    private Map<String, String> loadTypeMapping() throws IOException {
+        Map<String, String> mapping = new HashMap<>();
+        if (StrUtil.isBlank(typeMappingFile)) {
+            return mapping;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(typeMappingFile), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        properties.forEach((k, v) -> mapping.put(k.toString().trim(), v.toString().trim()));
+        return mapping;
     }
 
 
@@ -165,13 +232,106 @@ public class WoodGen extends CommonOptions implements Callable<Integer> {
     }
 
 
+    /**
+     * Columns of every table in the schema, in ordinal order, fetched with a single query.
+     */
+    public Map<String, List<Map>> getColumnsMap(String database) throws SQLException {
+        String sql = "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, CHARACTER_MAXIMUM_LENGTH, NUMERIC_PRECISION, " +
+                "NUMERIC_SCALE, DATETIME_PRECISION, IS_NULLABLE, EXTRA, COLUMN_COMMENT FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ? " +
+                "ORDER BY TABLE_NAME, ORDINAL_POSITION";
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        List<Map> rows = sqlUtils.sql(sql, database).queryRowList(Map.class);
+        Map<String, List<Map>> map = new HashMap<>();
+        rows.forEach(row -> map.computeIfAbsent(ObjUtil.toString(row.get("TABLE_NAME")), k -> new ArrayList<>()).add(row));
+        return map;
+    }
+
+    /**
+     * Primary key columns of every table in the schema, fetched with a single query.
+     */
+    public Map<String, Set<String>> getPrimaryKeysMap(String database) throws SQLException {
+        String sql = "SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+                "WHERE TABLE_SCHEMA = ? AND CONSTRAINT_NAME = 'PRIMARY' ORDER BY TABLE_NAME, ORDINAL_POSITION";
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        List<Map> rows = sqlUtils.sql(sql, database).queryRowList(Map.class);
+        Map<String, Set<String>> map = new HashMap<>();
+        rows.forEach(row -> map.computeIfAbsent(ObjUtil.toString(row.get("TABLE_NAME")), k -> new LinkedHashSet<>())
+                .add(ObjUtil.toString(row.get("COLUMN_NAME"))));
+        return map;
+    }
+
+    /**
+     * Unique (non primary) indexes of every table in the schema, index name to columns in index order.
+     */
+    public Map<String, Map<String, List<String>>> getUniqueIndexesMap(String database) throws SQLException {
+        String sql = "SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = ? AND NON_UNIQUE = 0 AND INDEX_NAME <> 'PRIMARY' AND COLUMN_NAME IS NOT NULL " +
+                "ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX";
+        SqlUtils sqlUtils = SqlUtils.ofName(ds);
+        List<Map> rows = sqlUtils.sql(sql, database).queryRowList(Map.class);
+        Map<String, Map<String, List<String>>> map = new HashMap<>();
+        rows.forEach(row -> map.computeIfAbsent(ObjUtil.toString(row.get("TABLE_NAME")), k -> new LinkedHashMap<>())
+                .computeIfAbsent(ObjUtil.toString(row.get("INDEX_NAME")), k -> new ArrayList<>())
+                .add(ObjUtil.toString(row.get("COLUMN_NAME"))));
+        return map;
+    }
+
+    /**
+     * Type name as reported by the MySQL driver's {@code DatabaseMetaData.getColumns}, e.g. {@code INT UNSIGNED}.
+     */
+    private static String typeName(Map column) {
+        String typeName = StringUtils.upperCase(ObjUtil.toString(column.get("DATA_TYPE")));
+        if (Strings.CI.contains(ObjUtil.toString(column.get("COLUMN_TYPE")), "unsigned")) {
+            typeName += " UNSIGNED";
+        }
+        return typeName;
+    }
+
+    /**
+     * Column size as reported by the MySQL driver's {@code DatabaseMetaData.getColumns}.
+     */
+    private static int columnSize(Map column) {
+        String dataType = StringUtils.lowerCase(StringUtils.defaultString(ObjUtil.toString(column.get("DATA_TYPE"))));
+        long fsp = toLong(column.get("DATETIME_PRECISION"));
+        switch (dataType) {
+            case "datetime":
+            case "timestamp":
+                return 19 + (fsp > 0 ? (int) fsp + 1 : 0);
+            case "time":
+                return 8 + (fsp > 0 ? (int) fsp + 1 : 0);
+            case "date":
+                return 10;
+            default:
+                long size = toLong(column.get("CHARACTER_MAXIMUM_LENGTH"));
+                if (size == 0) {
+                    size = toLong(column.get("NUMERIC_PRECISION"));
+                }
+                return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return StringUtils.isNumeric(ObjUtil.toString(value)) ? Long.parseLong(value.toString()) : 0;
+    }
+
     @Override
     public Integer call() throws Exception {
 
         String distPath = StrUtil.endWith(distDir, File.separator) ? distDir.substring(0, distDir.length() - 1) : distDir;
+        typeMapping = loadTypeMapping();
 
         Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-        cfg.setDirectoryForTemplateLoading(new File(templateDir));
+        // Templates from --template-dir win, the defaults shipped in the jar fill the gaps
+        List<TemplateLoader> loaders = new ArrayList<>();
+        if (new File(templateDir).isDirectory()) {
+            loaders.add(new FileTemplateLoader(new File(templateDir)));
+        }
+        loaders.add(new ClassTemplateLoader(WoodGen.class, DEFAULT_TEMPLATE_PATH));
+        cfg.setTemplateLoader(new MultiTemplateLoader(loaders.toArray(new TemplateLoader[0])));
+        // Template instances are thread-safe and shared by all workers
         Template modelTpl = cfg.getTemplate("ModelClass.tpl");
         Template mapperTpl = cfg.getTemplate("MapperClass.tpl");
 
@@ -194,141 +354,281 @@ public class WoodGen extends CommonOptions implements Callable<Integer> {
 
         String schema = getCurrentDatabase();
 
+        // 获取表的元数据, 整个库一次查询, 不再逐表调用 DatabaseMetaData
         Map<String, String> tableCommentMap = getTableCommentMap(schema);
-        // 获取表的元数据
-        DatabaseMetaData metaData = sqlUtils.getDataSource().getConnection().getMetaData();
-        for (String tableName : tableNames) {
-            if (skipTablesMap.containsKey(tableName)) {
-                //System.out.printf("skip %s%n", tableName);
-                continue;
+        Map<String, List<Map>> columnsMap = getColumnsMap(schema);
+        Map<String, Set<String>> primaryKeysMap = getPrimaryKeysMap(schema);
+        Map<String, Map<String, List<String>>> uniqueIndexesMap = getUniqueIndexesMap(schema);
+
+        // Unchanged tables are skipped based on the manifest kept in the dist dir
+        File manifestFile = new File(distPath, MANIFEST_FILE_NAME);
+        Manifest previous = force ? new Manifest() : Manifest.read(manifestFile);
+        Manifest current = new Manifest();
+        current.templates.put(modelTpl.getName(), DigestUtil.sha256Hex(modelTpl.toString()));
+        current.templates.put(mapperTpl.getName(), DigestUtil.sha256Hex(mapperTpl.toString()));
+        boolean templatesChanged = !current.templates.equals(previous.templates);
+        Map<String, Manifest.Entry> entries = new ConcurrentHashMap<>();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        try {
+            for (String tableName : tableNames) {
+                if (skipTablesMap.containsKey(tableName)) {
+                    //System.out.printf("skip %s%n", tableName);
+                    continue;
+                }
+                Set<String> primaryKeys = primaryKeysMap.getOrDefault(tableName, Collections.emptySet());
+                List<Map> columns = columnsMap.getOrDefault(tableName, Collections.emptyList());
+                String tableComment = tableCommentMap.get(tableName);
+
+                futures.put(tableName, executor.submit(() -> {
+                    Map<String, Object> data = tableData(domain_pkg, mapper_pkg, schema, tableName, tableComment, primaryKeys, columns,
+                            uniqueIndexesMap.getOrDefault(tableName, Collections.emptyMap()));
+                    String outputPath = StringUtils.joinWith(File.separator, distPath
+                            , Strings.CS.replace(domain_pkg, ".", File.separator), data.get("domain")
+                    ) + ".java";
+                    String mapper_outputPath = StringUtils.joinWith(File.separator, distPath
+                            , Strings.CS.replace(mapper_pkg, ".", File.separator), data.get("mapper")
+                    ) + ".java";
+                    String modelCustomize = customizeContent(outputPath);
+                    String mapperCustomize = customizeContent(mapper_outputPath);
+
+                    Manifest.Entry entry = new Manifest.Entry();
+                    entry.metadata = DigestUtil.sha256Hex(GSON.toJson(new TreeMap<>(data)));
+                    entry.customize = DigestUtil.sha256Hex(StringUtils.defaultString(modelCustomize) + "\u0000" + StringUtils.defaultString(mapperCustomize));
+
+                    if (!templatesChanged && entry.equals(previous.tables.get(tableName))
+                            && new File(outputPath).isFile() && new File(mapper_outputPath).isFile()) {
+                        entries.put(tableName, entry);
+                        skipped.incrementAndGet();
+                        return null;
+                    }
+
+                    data.put("customize_content", modelCustomize);
+                    if (render(modelTpl, data, outputPath)) {
+                        written.incrementAndGet();
+                    }
+                    data.put("customize_content", mapperCustomize);
+                    if (render(mapperTpl, data, mapper_outputPath)) {
+                        written.incrementAndGet();
+                    }
+                    // only recorded once both files are rendered, failed tables are retried next run
+                    entries.put(tableName, entry);
+                    return null;
+                }));
             }
-            Map<String, Object> data = new HashMap<>();
-
 
-            Set<String> primaryKeys = new HashSet<>();
-
-            try (ResultSet pkRs = metaData.getPrimaryKeys(null, schema, tableName)) {
-                while (pkRs.next()) {
-                    String columnName = pkRs.getString("COLUMN_NAME");
-                    primaryKeys.add(columnName);
+            int failed = 0;
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.error("generate {} failed: {}", entry.getKey(), e.getCause().getMessage(), e.getCause());
+                    System.err.printf("generate %s failed: %s%n", entry.getKey(), e.getCause().getMessage());
                 }
             }
-            if (primaryKeys.isEmpty()) {
-                primaryKeys.add("id");
-            }
-            ResultSet columns = metaData.getColumns(schema, schema, tableName, "%");
-            String domainName = toCamelString(tableName, true);
-            String mapperName = domainName + "Mapper";
-            data.put("table", tableName);
-            data.put("domain", domainName);
-            data.put("mapper", mapperName);
-            data.put("schema", schema);
-            data.put("full_domain", domain_pkg + "." + domainName);
-            data.put("package_name", domain_pkg);
-            data.put("mapper_pkg", mapper_pkg);
-            data.put("mapper_package_name", mapper_pkg);
-            data.put("customize_begin", customize_begin);
-            data.put("customize_end", customize_end);
-            data.put("customize_content", "");
-            data.put("openapi", openapi);
-            data.put("solon", solon);
-
-            List<String> imports = new ArrayList<>();
-            if (extraImports != null) {
-                Collections.addAll(imports, extraImports);
-            }
-            if (!solon) {
-                //import org.springframework.beans.factory.annotation.Autowired;
-                //import org.springframework.stereotype.Component;
-                imports.add("org.springframework.beans.factory.annotation.Autowired");
-                imports.add("org.springframework.stereotype.Component");
-                data.put("autowired", "@Autowired");
-            } else {
+            current.tables.putAll(entries);
+            writeIfChanged(manifestFile, GSON.toJson(current).getBytes(StandardCharsets.UTF_8));
+            log.info("wood: {} tables, {} unchanged, {} files written, {} failed", futures.size(), skipped.get(), written.get(), failed);
+            return failed > 0 ? 1 : 0;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Map<String, Object> tableData(String domain_pkg, String mapper_pkg, String schema, String tableName,
+                                          String tableComment, Set<String> primaryKeys, List<Map> columns,
+                                          Map<String, List<String>> uniqueIndexes) {
+        Map<String, Object> data = new HashMap<>();
+        // the pk flag of a table without a primary key marks id, as it always has; pkList, which the key
+        // lookups and keyset pagination are generated from, only holds a real primary key
+        Set<String> pkFlagColumns = primaryKeys.isEmpty() ? Set.of("id") : primaryKeys;
+
+        String domainName = toCamelString(tableName, true);
+        String mapperName = domainName + "Mapper";
+        data.put("table", tableName);
+        data.put("domain", domainName);
+        data.put("mapper", mapperName);
+        data.put("schema", schema);
+        data.put("full_domain", domain_pkg + "." + domainName);
+        data.put("package_name", domain_pkg);
+        data.put("mapper_pkg", mapper_pkg);
+        data.put("mapper_package_name", mapper_pkg);
+        data.put("customize_begin", customize_begin);
+        data.put("customize_end", customize_end);
+        data.put("openapi", openapi);
+        data.put("solon", solon);
+
+        List<String> imports = new ArrayList<>();
+        if (extraImports != null) {
+            Collections.addAll(imports, extraImports);
+        }
+        if (!solon) {
+            //import org.springframework.beans.factory.annotation.Autowired;
+            //import org.springframework.stereotype.Component;
+            imports.add("org.springframework.beans.factory.annotation.Autowired");
+            imports.add("org.springframework.stereotype.Component");
+            data.put("autowired", "@Autowired");
+        } else {
 //                import org.noear.solon.annotation.Component;
 //                import org.noear.solon.annotation.Inject;
-                imports.add("org.noear.solon.annotation.Component");
-                imports.add("org.noear.solon.annotation.Inject");
-                data.put("autowired", "@Inject");
-            }
-            data.put("imports", imports);
+            imports.add("org.noear.solon.annotation.Component");
+            imports.add("org.noear.solon.annotation.Inject");
+            data.put("autowired", "@Inject");
+        }
+        data.put("imports", imports);
 
 
-            String tableComment = "";
-            try {
-                tableComment = tableCommentMap.get(tableName);
-            } catch (Exception exception) {
-                exception.printStackTrace();
-            }
-
-            if (StrUtil.isBlank(tableComment)) {
-                tableComment = tableName;
-            }
+        if (StrUtil.isBlank(tableComment)) {
+            tableComment = tableName;
+        }
 
-            data.put("database", schema);
-            data.put("tableComment", tableComment);
-            List<Map<String, Object>> fieldList = new ArrayList<>();
-            while (columns.next()) {
-                Map<String, Object> item = new LinkedHashMap<>();
-                String columnName = columns.getString("COLUMN_NAME");
-                String columnType = columns.getString("TYPE_NAME");
-                int columnLength = columns.getInt("COLUMN_SIZE");
-                String columnComment = columns.getString("REMARKS");
-
-                item.put("pk", primaryKeys.contains(columnName));
-                item.put("columnName", columnName);
-                item.put("fieldName", toCamelString(columnName));
-                item.put("fieldComment", columnComment);
-                item.put("columnComment", columnComment);
-                item.put("fieldType", dbTypeToJavaType(columnType));
-                item.put("columnType", columnType);
-                item.put("columnLength", columnLength);
-                item.put("finalFieldName", StringUtils.upperCase(columnName));
-                fieldList.add(item);
+        data.put("database", schema);
+        data.put("tableComment", tableComment);
+        List<Map<String, Object>> fieldList = new ArrayList<>();
+        for (Map column : columns) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            String columnName = ObjUtil.toString(column.get("COLUMN_NAME"));
+            String columnType = typeName(column);
+            int columnLength = columnSize(column);
+            String columnComment = ObjUtil.toString(column.get("COLUMN_COMMENT"));
+
+            item.put("pk", pkFlagColumns.contains(columnName));
+            item.put("columnName", columnName);
+            item.put("fieldName", toCamelString(columnName));
+            item.put("fieldComment", columnComment);
+            item.put("columnComment", columnComment);
+            String fieldType = dbTypeToJavaType(tableName, column);
+            item.put("fieldType", fieldType);
+            item.put("boxedFieldType", boxed(fieldType));
+            item.put("nullable", !"NO".equals(ObjUtil.toString(column.get("IS_NULLABLE"))));
+            item.put("columnType", columnType);
+            item.put("columnLength", columnLength);
+            item.put("finalFieldName", StringUtils.upperCase(columnName));
+            item.put("ordinal", fieldList.size() + 1);
+            fieldList.add(item);
+        }
+        data.put("fieldList", fieldList);
+
+        // Column order, key and unique index metadata for batch, upsert and keyset pagination methods
+        Map<String, Map<String, Object>> fieldByColumn = new LinkedHashMap<>();
+        fieldList.forEach(item -> fieldByColumn.put((String) item.get("columnName"), item));
+        List<Map<String, Object>> pkList = new ArrayList<>();
+        for (String pk : primaryKeys) {
+            if (fieldByColumn.containsKey(pk)) {
+                pkList.add(fieldByColumn.get(pk));
             }
-            data.put("fieldList", fieldList);
-            String outputPath = StringUtils.joinWith(File.separator, distPath
-                    , Strings.CS.replace(domain_pkg, ".", File.separator), domainName
-            ) + ".java";
-            FileUtils.forceMkdirParent(new File(outputPath));
-            if (FileUtil.isExistsAndNotDirectory(new File(outputPath).toPath(), false)) {
-                String content = IoUtil.readUtf8(new FileInputStream(new File(outputPath)));
-                String oldC = StringUtils.substringBetween(content, customize_begin, customize_end);
-                oldC = StringUtils.trim(oldC);
-                data.put("customize_content", oldC);
-            } else {
-                data.put("customize_content", "");
+        }
+        List<Map<String, Object>> uniqueIndexList = new ArrayList<>();
+        uniqueIndexes.forEach((indexName, indexColumns) -> {
+            List<Map<String, Object>> indexFields = new ArrayList<>();
+            indexColumns.forEach(c -> {
+                if (fieldByColumn.containsKey(c)) {
+                    indexFields.add(fieldByColumn.get(c));
+                }
+            });
+            if (indexFields.size() == indexColumns.size()) {
+                Map<String, Object> index = new LinkedHashMap<>();
+                index.put("indexName", indexName);
+                index.put("methodSuffix", indexFields.stream().map(f -> toCamelString((String) f.get("columnName"), true)).collect(Collectors.joining("And")));
+                index.put("fieldList", indexFields);
+                uniqueIndexList.add(index);
             }
+        });
+        data.put("pkList", pkList);
+        data.put("nonPkFieldList", fieldList.stream().filter(f -> !pkList.contains(f)).collect(Collectors.toList()));
+        data.put("uniqueIndexList", uniqueIndexList);
+        data.put("columnNames", new ArrayList<>(fieldByColumn.keySet()));
+        return data;
+    }
 
+    /**
+     * The content between customize_begin and customize_end of an existing output file.
+     */
+    private String customizeContent(String outputPath) throws IOException {
+        File file = new File(outputPath);
+        if (!FileUtil.isExistsAndNotDirectory(file.toPath(), false)) {
+            return "";
+        }
+        String content;
+        try (InputStream in = new FileInputStream(file)) {
+            content = IoUtil.readUtf8(in);
+        }
+        return StringUtils.trim(StringUtils.substringBetween(content, customize_begin, customize_end));
+    }
 
-            try (Writer out = new OutputStreamWriter(new FileOutputStream(outputPath))) {
-                modelTpl.process(data, out);
-            }
+    /**
+     * Render a template and write the result only when it differs from the existing file.
+     *
+     * @return whether the file was written
+     */
+    private boolean render(Template template, Map<String, Object> data, String outputPath) throws Exception {
+        StringWriter out = new StringWriter();
+        template.process(data, out);
+        return writeIfChanged(new File(outputPath), out.toString().getBytes(StandardCharsets.UTF_8));
+    }
 
+    /**
+     * Atomically replace the file with the given bytes, unless it already has exactly this content.
+     */
+    private static boolean writeIfChanged(File file, byte[] bytes) throws IOException {
+        Path target = file.toPath();
+        if (Files.isRegularFile(target) && Files.size(target) == bytes.length && Arrays.equals(Files.readAllBytes(target), bytes)) {
+            return false;
+        }
+        FileUtils.forceMkdirParent(file);
+        Path tmp = Files.createTempFile(target.getParent(), "." + file.getName(), ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return true;
+    }
 
-            String mapper_outputPath = StringUtils.joinWith(File.separator, distPath
-                    , Strings.CS.replace(mapper_pkg, ".", File.separator), mapperName
-            ) + ".java";
+    /**
+     * Hashes of the inputs each table was last generated from, kept in the dist dir.
+     */
+    static class Manifest {
+        Map<String, String> templates = new TreeMap<>();
+        Map<String, Entry> tables = new TreeMap<>();
 
+        static class Entry {
+            String metadata;
+            String customize;
 
-            FileUtils.forceMkdirParent(new File(mapper_outputPath));
-            if (FileUtil.isExistsAndNotDirectory(new File(mapper_outputPath).toPath(), false)) {
-                String content = IoUtil.readUtf8(new FileInputStream(new File(mapper_outputPath)));
-                String oldC = StringUtils.substringBetween(content, customize_begin, customize_end);
-                oldC = StringUtils.trim(oldC);
-                data.put("customize_content", oldC);
-            } else {
-                data.put("customize_content", "");
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof Entry e && Objects.equals(metadata, e.metadata) && Objects.equals(customize, e.customize);
             }
 
-            try (Writer out = new OutputStreamWriter(new FileOutputStream(mapper_outputPath))) {
-                mapperTpl.process(data, out);
+            @Override
+            public int hashCode() {
+                return Objects.hash(metadata, customize);
             }
-
-
         }
 
-
-        return 0;
+        static Manifest read(File file) {
+            if (!file.isFile()) {
+                return new Manifest();
+            }
+            try {
+                Manifest manifest = GSON.fromJson(FileUtil.readUtf8String(file), Manifest.class);
+                return manifest == null || manifest.tables == null || manifest.templates == null ? new Manifest() : manifest;
+            } catch (Exception e) {
+                log.warn("ignore unreadable manifest {}: {}", file, e.getMessage());
+                return new Manifest();
+            }
+        }
     }
 
 }
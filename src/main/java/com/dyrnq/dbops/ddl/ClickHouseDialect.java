@@ -0,0 +1,154 @@
+package com.dyrnq.dbops.ddl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ClickHouse MergeTree tables ordered by the MySQL primary key, or unordered ({@code tuple()}) without one.
+ * <p>
+ * Column types use ClickHouse names and nullable columns are wrapped in {@code Nullable(...)}.
+ * MySQL defaults are dropped because ClickHouse default expressions have different semantics.
+ */
+public class ClickHouseDialect implements TargetDialect {
+    private static final Pattern COLUMN_LINE = Pattern.compile(
+            "^(\\s*)`([^`]+)`\\s+([a-zA-Z]+)(?:\\(([^)]*)\\))?(.*?)(,?)\\s*$");
+    private static final Pattern COMMENT = Pattern.compile("COMMENT\\s+'((?:[^']|'')*)'", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public String name() {
+        return "clickhouse";
+    }
+
+    @Override
+    public List<String> keyColumns(List<String> columns, List<String> primaryKeys) {
+        if (primaryKeys != null && !primaryKeys.isEmpty()) {
+            return new ArrayList<>(primaryKeys);
+        }
+        // any other column may be Nullable, which a sorting key cannot contain
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean keyColumnsFirst() {
+        return false;
+    }
+
+    @Override
+    public String engineClause() {
+        return ") ENGINE = MergeTree";
+    }
+
+    @Override
+    public String keyClause(List<String> keyColumns, boolean primaryKey) {
+        return "";
+    }
+
+    @Override
+    public String commentClause() {
+        return "";
+    }
+
+    @Override
+    public String partitionClause(String partitionColumn) {
+        if (partitionColumn == null || partitionColumn.isEmpty()) {
+            return "";
+        }
+        return "PARTITION BY toYYYYMM(`" + partitionColumn + "`)";
+    }
+
+    @Override
+    public String distributionClause(List<String> keyColumns) {
+        if (keyColumns.isEmpty()) {
+            return "ORDER BY tuple()";
+        }
+        return "ORDER BY (" + TargetDialect.quote(keyColumns) + ")";
+    }
+
+    @Override
+    public String propertiesClause(Map<String, String> properties) {
+        StringBuilder sb = new StringBuilder("SETTINGS index_granularity = 8192");
+        if (properties != null) {
+            properties.forEach((k, v) -> sb.append(", ").append(k).append(" = ").append(v));
+        }
+        return sb.append(";").toString();
+    }
+
+    @Override
+    public IndexType indexType(String dataType, boolean lowCardinality) {
+        return lowCardinality ? IndexType.SET : IndexType.BLOOM_FILTER;
+    }
+
+    @Override
+    public List<String> indexDefinitions(Map<String, IndexType> indexes) {
+        List<String> definitions = new ArrayList<>();
+        indexes.forEach((column, indexType) -> {
+            String type = switch (indexType) {
+                case BLOOM_FILTER -> "bloom_filter";
+                case INVERTED -> "tokenbf_v1(32768, 3, 0)";
+                case BITMAP, SET -> "set(0)";
+            };
+            definitions.add("  INDEX `idx_" + column + "` `" + column + "` TYPE " + type + " GRANULARITY 4");
+        });
+        return definitions;
+    }
+
+    @Override
+    public String convertColumnTypes(String content) {
+        String[] lines = content.split("\n");
+        List<String> converted = new ArrayList<>(lines.length);
+        for (String line : lines) {
+            Matcher m = COLUMN_LINE.matcher(line);
+            if (!m.matches()) {
+                converted.add(line);
+                continue;
+            }
+            String rest = m.group(5);
+            boolean unsigned = rest.toLowerCase().contains("unsigned");
+            boolean notNull = rest.toUpperCase().contains("NOT NULL");
+            String type = mapType(m.group(3), m.group(4), unsigned);
+
+            StringBuilder sb = new StringBuilder();
+            sb.append(m.group(1)).append('`').append(m.group(2)).append("` ");
+            sb.append(notNull ? type : "Nullable(" + type + ")");
+            Matcher c = COMMENT.matcher(rest);
+            if (c.find()) {
+                sb.append(" COMMENT '").append(c.group(1)).append("'");
+            }
+            sb.append(m.group(6));
+            converted.add(sb.toString());
+        }
+        return String.join("\n", converted);
+    }
+
+    @Override
+    public String columnType(String dataType, String columnType) {
+        String args = null;
+        if (columnType != null && columnType.contains("(") && columnType.contains(")")) {
+            args = columnType.substring(columnType.indexOf('(') + 1, columnType.indexOf(')'));
+        }
+        boolean unsigned = columnType != null && columnType.toLowerCase().contains("unsigned");
+        return mapType(dataType, args, unsigned);
+    }
+
+    private String mapType(String mysqlType, String args, boolean unsigned) {
+        String u = unsigned ? "U" : "";
+        return switch (mysqlType.toLowerCase()) {
+            case "tinyint" -> u + "Int8";
+            case "smallint" -> u + "Int16";
+            case "mediumint", "int", "integer" -> u + "Int32";
+            case "bigint" -> u + "Int64";
+            case "float" -> "Float32";
+            case "double", "real" -> "Float64";
+            case "decimal", "numeric" -> "Decimal(" + (args == null || args.isEmpty() ? "10,0" : args.replace(" ", "")) + ")";
+            case "bool", "boolean" -> "Bool";
+            case "bit" -> "UInt64";
+            case "year" -> "UInt16";
+            case "date" -> "Date32";
+            case "datetime", "timestamp" -> args == null || args.isEmpty() || "0".equals(args) ? "DateTime" : "DateTime64(" + args + ")";
+            default -> "String";
+        };
+    }
+}
@@ -0,0 +1,224 @@
+package com.dyrnq.dbops.ddl;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes generated DDL statements against a target datasource.
+ * <p>
+ * Statements that do not create a table (resources, catalogs) are executed first and serially,
+ * table statements are then spread over a fixed number of concurrent sessions, and {@code ALTER TABLE}
+ * statements of a schema sync run last and serially, as a table takes one schema change at a time.
+ * Every CREATE is made idempotent with {@code IF NOT EXISTS}, so retrying after a transient FE error is
+ * safe; an ALTER retried after it took effect fails with "already exists" and is reported as skipped.
+ */
+@Slf4j
+public class DdlApplier {
+    private static final Pattern CREATE_PATTERN = Pattern.compile(
+            "^\\s*CREATE\\s+(?:EXTERNAL\\s+)?(TABLE|RESOURCE|CATALOG)\\s+(IF\\s+NOT\\s+EXISTS\\s+)?([`\"\\w.\\-$]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ALTER_PATTERN = Pattern.compile("^\\s*ALTER\\s+TABLE\\s+([`\"\\w.\\-$]+)", Pattern.CASE_INSENSITIVE);
+
+    // MySQL protocol codes: too many connections, max_user_connections, deadlock, server gone away, lost connection
+    private static final int LOCK_WAIT_TIMEOUT = 1205;
+    private static final Set<Integer> TRANSIENT_CODES = Set.of(1040, 1203, 1213, 2006, 2013);
+    // FE leader changes and restarts, which Doris and StarRocks report as the generic 1105
+    private static final String[] TRANSIENT_MESSAGES = {
+            "communications link failure", "connection reset", "read timed out", "failed to get master",
+            "fe is not ready", "is not master", "please try again"
+    };
+
+    private final DataSource dataSource;
+    private final int concurrency;
+    private final int timeoutSeconds;
+    private final int retries;
+    private final long retryBackoffMillis;
+
+    public DdlApplier(DataSource dataSource, int concurrency, int timeoutSeconds, int retries, long retryBackoffMillis) {
+        this.dataSource = dataSource;
+        this.concurrency = Math.max(1, concurrency);
+        this.timeoutSeconds = Math.max(0, timeoutSeconds);
+        this.retries = Math.max(0, retries);
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+    }
+
+    public enum Status {CREATED, APPLIED, SKIPPED, FAILED}
+
+    @Getter
+    public static class Result {
+        private final String kind;
+        private final String name;
+        private final Status status;
+        private final int attempts;
+        private final long elapsedMillis;
+        private final String error;
+
+        Result(String kind, String name, Status status, int attempts, long elapsedMillis, String error) {
+            this.kind = kind;
+            this.name = name;
+            this.status = status;
+            this.attempts = attempts;
+            this.elapsedMillis = elapsedMillis;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Apply the statements in order.
+     *
+     * @param statements     generated DDL statements
+     * @param existingTables tables already present on the target (bare table names), reported as skipped
+     * @return one result per statement, in input order
+     */
+    public List<Result> apply(List<String> statements, Set<String> existingTables) throws InterruptedException {
+        Result[] results = new Result[statements.size()];
+        List<Integer> tableIndexes = new ArrayList<>();
+        List<Integer> alterIndexes = new ArrayList<>();
+
+        for (int i = 0; i < statements.size(); i++) {
+            String statement = statements.get(i);
+            Matcher m = CREATE_PATTERN.matcher(statement);
+            if (m.find() && "TABLE".equalsIgnoreCase(m.group(1))) {
+                tableIndexes.add(i);
+            } else if (ALTER_PATTERN.matcher(statement).find()) {
+                alterIndexes.add(i);
+            } else {
+                // resources and catalogs must exist before the tables that reference them
+                results[i] = execute(statement);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(1, tableIndexes.size())));
+        try {
+            Map<Integer, Future<Result>> futures = new LinkedHashMap<>();
+            String[] names = new String[statements.size()];
+            for (Integer i : tableIndexes) {
+                String statement = statements.get(i);
+                Matcher m = CREATE_PATTERN.matcher(statement);
+                String name = m.find() ? unquote(m.group(3)) : "";
+                names[i] = name;
+                String bareName = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1) : name;
+                if (existingTables != null && existingTables.contains(bareName)) {
+                    results[i] = new Result("TABLE", name, Status.SKIPPED, 0, 0, "already exists");
+                } else {
+                    futures.put(i, executor.submit(() -> execute(statement)));
+                }
+            }
+            for (Map.Entry<Integer, Future<Result>> entry : futures.entrySet()) {
+                try {
+                    results[entry.getKey()] = entry.getValue().get();
+                } catch (ExecutionException e) {
+                    results[entry.getKey()] = new Result("TABLE", names[entry.getKey()], Status.FAILED, 0, 0, String.valueOf(e.getCause()));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Integer i : alterIndexes) {
+            results[i] = execute(statements.get(i));
+        }
+        return Arrays.asList(results);
+    }
+
+    private Result execute(String statement) {
+        String sql = ensureIfNotExists(statement.trim());
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1);
+        }
+        Matcher m = CREATE_PATTERN.matcher(sql);
+        Matcher alter = ALTER_PATTERN.matcher(sql);
+        String kind;
+        String name;
+        Status done;
+        if (m.find()) {
+            kind = m.group(1).toUpperCase();
+            name = unquote(m.group(3));
+            done = Status.CREATED;
+        } else if (alter.find()) {
+            kind = "ALTER";
+            name = unquote(alter.group(1));
+            done = Status.APPLIED;
+        } else {
+            kind = "STATEMENT";
+            name = "";
+            done = Status.APPLIED;
+        }
+
+        long start = System.nanoTime();
+        int attempts = 0;
+        while (true) {
+            attempts++;
+            try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+                if (timeoutSeconds > 0) {
+                    st.setQueryTimeout(timeoutSeconds);
+                }
+                st.execute(sql);
+                log.info("{} {} {} in {} attempt(s)", kind, name, done.name().toLowerCase(), attempts);
+                return new Result(kind, name, done, attempts, elapsedMillis(start), null);
+            } catch (SQLException e) {
+                String message = String.valueOf(e.getMessage());
+                if (message.toLowerCase().contains("already exists")) {
+                    return new Result(kind, name, Status.SKIPPED, attempts, elapsedMillis(start), "already exists");
+                }
+                if (attempts > retries || !isTransient(e)) {
+                    log.error("{} {} failed after {} attempt(s): {}", kind, name, attempts, message);
+                    return new Result(kind, name, Status.FAILED, attempts, elapsedMillis(start), message);
+                }
+                log.warn("{} {} transient error, retrying ({}/{}): {}", kind, name, attempts, retries, message);
+                try {
+                    Thread.sleep(retryBackoffMillis * attempts);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return new Result(kind, name, Status.FAILED, attempts, elapsedMillis(start), "interrupted");
+                }
+            }
+        }
+    }
+
+    static boolean isTransient(SQLException e) {
+        if (e.getErrorCode() == LOCK_WAIT_TIMEOUT) {
+            // drivers may raise it as a rollback exception, but the blocking session outlives any backoff
+            return false;
+        }
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("08")) {
+            return true; // connection exception class
+        }
+        if (TRANSIENT_CODES.contains(e.getErrorCode())) {
+            return true;
+        }
+        String message = String.valueOf(e.getMessage()).toLowerCase();
+        for (String hint : TRANSIENT_MESSAGES) {
+            if (message.contains(hint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String ensureIfNotExists(String sql) {
+        Matcher m = CREATE_PATTERN.matcher(sql);
+        if (m.find() && m.group(2) == null) {
+            return sql.substring(0, m.start(3)) + "IF NOT EXISTS " + sql.substring(m.start(3));
+        }
+        return sql;
+    }
+
+    private static String unquote(String name) {
+        return name.replace("`", "").replace("\"", "");
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,254 @@
+package com.dyrnq.dbops.ddl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Apache Doris OLAP tables: duplicate key model on the first column, hash distribution.
+ */
+public class DorisDialect implements TargetDialect {
+
+    @Override
+    public String name() {
+        return "doris";
+    }
+
+    @Override
+    public String engineClause() {
+        return ") ENGINE=OLAP";
+    }
+
+    @Override
+    public String keyClause(List<String> keyColumns, boolean primaryKey) {
+        return "DUPLICATE KEY(" + TargetDialect.quote(keyColumns) + ")";
+    }
+
+    @Override
+    public String commentClause() {
+        return " COMMENT \"OLAP\"";
+    }
+
+    @Override
+    public String partitionClause(String partitionColumn) {
+        if (partitionColumn == null || partitionColumn.isEmpty()) {
+            return "";
+        }
+        return "AUTO PARTITION BY RANGE (date_trunc(`" + partitionColumn + "`, 'month')) ()";
+    }
+
+    @Override
+    public String distributionClause(List<String> keyColumns) {
+        return "DISTRIBUTED BY HASH(" + TargetDialect.quote(keyColumns.subList(0, 1)) + ") BUCKETS 10";
+    }
+
+    @Override
+    public IndexType indexType(String dataType, boolean lowCardinality) {
+        if (lowCardinality) {
+            // bitmap indexes are deprecated in Doris 2.x and converted to inverted indexes anyway
+            return IndexType.INVERTED;
+        }
+        return switch (dataType.toLowerCase()) {
+            // bloom filters are not supported on these types
+            case "tinyint", "bit", "bool", "boolean", "float", "double" -> IndexType.INVERTED;
+            case "tinytext", "text", "mediumtext", "longtext", "json" -> IndexType.INVERTED;
+            case "tinyblob", "blob", "mediumblob", "longblob", "binary", "varbinary" -> null;
+            default -> IndexType.BLOOM_FILTER;
+        };
+    }
+
+    @Override
+    public List<String> indexDefinitions(Map<String, IndexType> indexes) {
+        List<String> definitions = new ArrayList<>();
+        indexes.forEach((column, indexType) -> {
+            String using = indexUsing(indexType);
+            if (using != null) {
+                definitions.add("  INDEX `idx_" + column + "` (`" + column + "`) USING " + using);
+            }
+        });
+        return definitions;
+    }
+
+    protected String indexUsing(IndexType indexType) {
+        return switch (indexType) {
+            case INVERTED -> "INVERTED";
+            case BITMAP -> "BITMAP";
+            default -> null;
+        };
+    }
+
+    @Override
+    public Map<String, String> indexProperties(Map<String, IndexType> indexes) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        String bloomFilterColumns = indexes.entrySet().stream()
+                .filter(e -> e.getValue() == IndexType.BLOOM_FILTER)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.joining(","));
+        if (!bloomFilterColumns.isEmpty()) {
+            properties.put("bloom_filter_columns", bloomFilterColumns);
+        }
+        return properties;
+    }
+
+    protected Map<String, String> defaultProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("replication_allocation", "tag.location.default: 3");
+        return properties;
+    }
+
+    @Override
+    public String propertiesClause(Map<String, String> properties) {
+        Map<String, String> all = defaultProperties();
+        if (properties != null) {
+            all.putAll(properties);
+        }
+        StringBuilder sb = new StringBuilder("PROPERTIES (\n");
+        int i = 0;
+        for (Map.Entry<String, String> entry : all.entrySet()) {
+            sb.append("\"").append(entry.getKey()).append("\" = \"").append(entry.getValue()).append("\"");
+            sb.append(++i < all.size() ? ",\n" : "\n");
+        }
+        sb.append(");");
+        return sb.toString();
+    }
+
+    @Override
+    public String convertColumnTypes(String content) {
+        // Apply all the conversions
+        content = content.replaceAll("AUTO_INCREMENT", "");
+        content = content.replaceAll("CHARACTER SET utf8 COLLATE utf8_bin", "");
+        content = content.replaceAll("CHARACTER SET utf8mb3 COLLATE utf8mb3_bin", "");
+        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci", "");
+        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_bin", "");
+        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci", "");
+        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8_general_ci", "");
+        content = content.replaceAll("CHARACTER SET utf8 COLLATE utf8_general_ci", "");
+
+        // 更彻底地处理 TIMESTAMP updates - 移除 ON UPDATE CURRENT_TIMESTAMP 及其变体
+        // 移除所有形式的 ON UPDATE CURRENT_TIMESTAMP，包括带参数和不带参数的
+        content = content.replaceAll("(?i)\\s+ON UPDATE CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "");
+        // 特别处理 DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP 组合
+        content = content.replaceAll("(?i)(datetime\\(\\d+\\)|datetime)\\s+DEFAULT\\s+CURRENT_TIMESTAMP(?:\\([^)]*\\))?\\s+ON UPDATE CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "$1 DEFAULT CURRENT_TIMESTAMP");
+        // 特别处理 DEFAULT NULL ON UPDATE CURRENT_TIMESTAMP 组合
+        content = content.replaceAll("(?i)(datetime\\(\\d+\\)|datetime)\\s+DEFAULT\\s+NULL\\s+ON UPDATE CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "$1 DEFAULT NULL");
+
+        content = content.replaceAll("CHARACTER SET utf8mb4 COLLATE utf8mb4_bin", "");
+        content = content.replaceAll("DEFAULT '0000-00-00 00:00:00'", "DEFAULT '2000-01-01 00:00:00'");
+
+        // Handle DEFAULT CURRENT_TIMESTAMP - only for datetime columns
+        content = content.replaceAll("(?i)(datetime\\(\\d+\\)|datetime)\\s+DEFAULT\\s+CURRENT_TIMESTAMP(?:\\([^)]*\\))?", "$1 DEFAULT CURRENT_TIMESTAMP");
+
+        content = content.replaceAll("DEFAULT b", "DEFAULT");
+        content = content.replaceAll("DEFAULT (\\-?[0-9]+(\\.[0-9]+)?)", "DEFAULT '$1'");
+        content = content.replaceAll("CHARACTER SET utf8mb4", "");
+        content = content.replaceAll("CHARACTER SET utf8", "");
+        content = content.replaceAll("COLLATE utf8mb4_general_ci", "");
+        content = content.replaceAll("COLLATE utf8_general_ci", "");
+        content = content.replaceAll("COLLATE utf8mb4_unicode_ci", "");
+        content = content.replaceAll("COLLATE utf8_unicode_ci", "");
+        content = content.replaceAll("COLLATE utf8_bin", "");
+        // 添加对单独 COLLATE 子句的处理
+        content = content.replaceAll("(?i)\\s+COLLATE\\s+[^\\s,)]+", "");
+
+        content = content.replaceAll("\\btinytext\\b", "varchar(65533)");
+        content = content.replaceAll("text\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("\\btext\\b", "varchar(65533)");
+        content = content.replaceAll("\\bmediumtext\\b", "varchar(65533)");
+        content = content.replaceAll("\\blongtext\\b", "varchar(65533)");
+        content = content.replaceAll("\\btinyblob\\b", "varchar(65533)");
+        content = content.replaceAll("blob\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("\\bblob\\b", "varchar(65533)");
+        content = content.replaceAll("\\bmediumblob\\b", "varchar(65533)");
+        content = content.replaceAll("\\blongblob\\b", "varchar(65533)");
+        content = content.replaceAll("\\btinystring\\b", "varchar(65533)");
+        content = content.replaceAll("\\bmediumstring\\b", "varchar(65533)");
+        content = content.replaceAll("\\blongstring\\b", "varchar(65533)");
+        content = content.replaceAll("\\btimestamp\\b", "datetime");
+        content = content.replaceAll("\\bunsigned\\b", "");
+        content = content.replaceAll("\\bzerofill\\b", "");
+        content = content.replaceAll("\\bjson\\b", "varchar(65533)");
+        content = content.replaceAll("enum\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("set\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("\\bset\\b", "varchar(65533)");
+        content = content.replaceAll("bit\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("bit\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("\\bbit\\b", "varchar(65533)");
+        content = content.replaceAll("varbinary\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("binary\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("string\\([^)]*\\)", "varchar(65533)");
+        content = content.replaceAll("\\bstring\\b", "varchar(65533)");
+        content = content.replaceAll("\\bbinary\\b", "varchar(65533)");
+        content = content.replaceAll("\\bvarbinary\\b", "varchar(65533)");
+        content = content.replaceAll("\\bmediumint", "int");
+        content = content.replaceAll("float\\([^)]*\\)", "float");
+        content = content.replaceAll("double\\([^)]*\\)", "double");
+        content = content.replaceAll("\\btime\\([^)]*\\)", "varchar(64)");
+        content = content.replaceAll("\\btime\\b", "varchar(64)");
+        content = content.replaceAll("year\\([^)]*\\)", "varchar(64)");
+        content = content.replaceAll("\\byear\\b", "varchar(64)");
+
+        // Fix the NULL (3) issue and datetime(n) syntax
+        content = content.replaceAll("NULL \\(\\d+\\)", "NULL");
+        content = content.replaceAll("datetime\\((\\d+)\\)\\s+NULL\\s*\\(\\d+\\)", "datetime($1) NULL");
+        content = content.replaceAll("datetime\\((\\d+)\\)\\s+NOT NULL\\s*\\(\\d+\\)", "datetime($1) NOT NULL");
+
+        // Fix datetime(6) (6) syntax
+        content = content.replaceAll("datetime\\((\\d+)\\)\\s*\\(\\d+\\)", "datetime($1)");
+        content = content.replaceAll("CURRENT_TIMESTAMP\\((\\d+)\\)\\s*\\(\\d+\\)", "CURRENT_TIMESTAMP($1)");
+
+        // Additional cleanup for common patterns
+        content = content.replaceAll(" {2,}", " "); // Replace multiple spaces with single space
+        content = content.replaceAll(" DEFAULT NULL DEFAULT", " DEFAULT"); // Fix double DEFAULT
+        content = content.replaceAll("  ", " "); // Fix double spaces again after replacements
+
+        return content;
+    }
+
+    @Override
+    public String columnType(String dataType, String columnType) {
+        // Handle specific column types first
+        if (columnType != null && !columnType.isEmpty()) {
+            // Handle VARCHAR with length
+            if (columnType.toLowerCase().startsWith("varchar")) {
+                return columnType.replaceAll("varchar\\((\\d+)\\)", "varchar($1)");
+            }
+            // Handle CHAR with length
+            if (columnType.toLowerCase().startsWith("char")) {
+                return columnType.replaceAll("char\\((\\d+)\\)", "char($1)");
+            }
+            // Handle DATETIME with precision
+            if (columnType.toLowerCase().startsWith("datetime")) {
+                return columnType.replaceAll("datetime\\((\\d+)\\)", "datetime($1)");
+            }
+        }
+
+        // Handle data types
+        return switch (dataType.toLowerCase()) {
+            case "tinyint" -> "tinyint";
+            case "smallint" -> "smallint";
+            case "mediumint", "int" -> "int";
+            case "bigint" -> "bigint";
+            case "float" -> "float";
+            case "double" -> "double";
+            case "decimal" -> {
+                // Extract precision and scale if available
+                if (columnType != null && columnType.matches("decimal\\(\\d+,\\d+\\)")) {
+                    yield columnType.replaceAll("decimal", "decimal");
+                }
+                yield "decimal(10,2)";
+            }
+            case "date" -> "date";
+            case "time", "year" -> "varchar(64)";
+            case "datetime", "timestamp" -> "datetime";
+            case "char" -> "char(1)";
+            case "varchar" -> "varchar(255)";
+//            case "tinytext", "text", "mediumtext", "longtext" -> "varchar(65533)";
+//            case "binary", "varbinary", "tinyblob", "blob", "mediumblob", "longblob" -> "varchar(65533)";
+//            case "enum", "set" -> "varchar(65533)";
+//            case "json" -> "varchar(65533)";
+            default -> "varchar(65533)";
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.dyrnq.dbops.ddl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StarRocks primary key model. StarRocks shares the Doris column syntax, but keys the table on the
+ * MySQL primary key so updates replace rows, and does not accept a precision on DATETIME. Tables without
+ * a primary key use the duplicate key model, as an invented key would merge distinct rows.
+ */
+public class StarRocksDialect extends DorisDialect {
+
+    @Override
+    public String name() {
+        return "starrocks";
+    }
+
+    @Override
+    public List<String> keyColumns(List<String> columns, List<String> primaryKeys) {
+        if (primaryKeys != null && !primaryKeys.isEmpty()) {
+            return new ArrayList<>(primaryKeys);
+        }
+        return super.keyColumns(columns, primaryKeys);
+    }
+
+    @Override
+    public String keyClause(List<String> keyColumns, boolean primaryKey) {
+        if (!primaryKey) {
+            return super.keyClause(keyColumns, false);
+        }
+        return "PRIMARY KEY(" + TargetDialect.quote(keyColumns) + ")";
+    }
+
+    @Override
+    public String partitionClause(String partitionColumn) {
+        if (partitionColumn == null || partitionColumn.isEmpty()) {
+            return "";
+        }
+        return "PARTITION BY date_trunc('month', `" + partitionColumn + "`)";
+    }
+
+    @Override
+    public String distributionClause(List<String> keyColumns) {
+        return "DISTRIBUTED BY HASH(" + TargetDialect.quote(keyColumns) + ") BUCKETS 10";
+    }
+
+    @Override
+    public IndexType indexType(String dataType, boolean lowCardinality) {
+        String t = dataType.toLowerCase();
+        boolean bitmapSupported = !(t.equals("float") || t.equals("double") || t.equals("decimal") || t.endsWith("text")
+                || t.equals("json") || t.endsWith("blob") || t.endsWith("binary"));
+        if (lowCardinality) {
+            return bitmapSupported ? IndexType.BITMAP : null;
+        }
+        return switch (t) {
+            case "tinyint", "bit", "bool", "boolean", "float", "double", "decimal", "json" -> null;
+            case "tinytext", "text", "mediumtext", "longtext" -> IndexType.INVERTED;
+            case "tinyblob", "blob", "mediumblob", "longblob", "binary", "varbinary" -> null;
+            default -> IndexType.BLOOM_FILTER;
+        };
+    }
+
+    @Override
+    protected String indexUsing(IndexType indexType) {
+        return switch (indexType) {
+            case INVERTED -> "GIN";
+            case BITMAP -> "BITMAP";
+            default -> null;
+        };
+    }
+
+    @Override
+    protected Map<String, String> defaultProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("replication_num", "3");
+        return properties;
+    }
+
+    @Override
+    public String convertColumnTypes(String content) {
+        content = super.convertColumnTypes(content);
+        content = content.replaceAll("datetime\\(\\d+\\)", "datetime");
+        content = content.replaceAll("CURRENT_TIMESTAMP\\(\\d+\\)", "CURRENT_TIMESTAMP");
+        return content;
+    }
+
+    @Override
+    public String columnType(String dataType, String columnType) {
+        return super.columnType(dataType, columnType).replaceAll("datetime\\(\\d+\\)", "datetime");
+    }
+}
@@ -0,0 +1,133 @@
+package com.dyrnq.dbops.ddl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Analytical target dialect used to turn a MySQL table definition into the DDL of the target system.
+ * <p>
+ * The converter keeps the column section of {@code SHOW CREATE TABLE} and asks the dialect to rewrite the
+ * column types, then appends the table clauses (engine, key, partition, distribution / order by, properties).
+ */
+public interface TargetDialect {
+
+    static TargetDialect of(String name) {
+        String n = name == null ? "" : name.trim().toLowerCase();
+        return switch (n) {
+            case "", "doris" -> new DorisDialect();
+            case "starrocks", "sr" -> new StarRocksDialect();
+            case "clickhouse", "ch" -> new ClickHouseDialect();
+            default -> throw new IllegalArgumentException("Unsupported target dialect: " + name);
+        };
+    }
+
+    String name();
+
+    /**
+     * Rewrite the MySQL column definitions of a CREATE TABLE statement into target types.
+     */
+    String convertColumnTypes(String content);
+
+    /**
+     * Map a single information_schema column ({@code DATA_TYPE}, {@code COLUMN_TYPE}) to a target type.
+     */
+    String columnType(String dataType, String columnType);
+
+    /**
+     * The type {@link #convertColumnTypes} gives a MySQL {@code COLUMN_TYPE} in a created table, which may be
+     * more precise than the {@link #columnType} mapping used for external tables.
+     */
+    default String tableColumnType(String columnType) {
+        String line = convertColumnTypes("  `c` " + columnType + " NOT NULL,").trim();
+        line = line.substring(line.indexOf('`', 1) + 1);
+        return line.replaceAll("(?i)\\s*NOT NULL\\s*,?$", "").trim();
+    }
+
+    /**
+     * Choose the key columns of the target table.
+     *
+     * @param columns     column names in table order
+     * @param primaryKeys MySQL primary key columns, may be empty
+     */
+    default List<String> keyColumns(List<String> columns, List<String> primaryKeys) {
+        List<String> keys = new ArrayList<>();
+        keys.add(columns.isEmpty() ? "id" : columns.get(0));
+        return keys;
+    }
+
+    /**
+     * Whether key columns have to be the leading columns of the table.
+     */
+    default boolean keyColumnsFirst() {
+        return true;
+    }
+
+    String engineClause();
+
+    /**
+     * The key model clause.
+     *
+     * @param primaryKey whether the key columns come from the MySQL primary key, so rows sharing them are
+     *                   the same row; otherwise they only order the data and must not deduplicate it
+     */
+    String keyClause(List<String> keyColumns, boolean primaryKey);
+
+    String commentClause();
+
+    String partitionClause(String partitionColumn);
+
+    String distributionClause(List<String> keyColumns);
+
+    String propertiesClause(Map<String, String> properties);
+
+    /**
+     * Index structures a MySQL secondary index column can be translated to.
+     */
+    enum IndexType {BLOOM_FILTER, INVERTED, BITMAP, SET}
+
+    /**
+     * Choose the index for a MySQL secondary index column, {@code null} when the target has no suitable index.
+     *
+     * @param dataType       MySQL {@code DATA_TYPE}
+     * @param lowCardinality whether the column has few distinct values
+     */
+    default IndexType indexType(String dataType, boolean lowCardinality) {
+        return null;
+    }
+
+    /**
+     * Index definitions appended to the column list, e.g. {@code INDEX ... USING INVERTED}.
+     */
+    default List<String> indexDefinitions(Map<String, IndexType> indexes) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Table properties derived from the indexes, e.g. {@code bloom_filter_columns}.
+     */
+    default Map<String, String> indexProperties(Map<String, IndexType> indexes) {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Lines that replace the MySQL {@code ENGINE=...} line, in the order the target expects them.
+     */
+    default List<String> tableClauses(List<String> keyColumns, boolean primaryKey, String partitionColumn, Map<String, String> properties) {
+        List<String> lines = new ArrayList<>();
+        lines.add(engineClause());
+        for (String clause : new String[]{keyClause(keyColumns, primaryKey), commentClause(), partitionClause(partitionColumn),
+                distributionClause(keyColumns), propertiesClause(properties)}) {
+            if (clause != null && !clause.isEmpty()) {
+                lines.add(clause);
+            }
+        }
+        return lines;
+    }
+
+    static String quote(List<String> columns) {
+        return columns.stream().map(c -> "`" + c + "`").collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,272 @@
+package com.dyrnq.dbops.explain;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Compact model of an {@code EXPLAIN FORMAT=JSON} plan: the query cost, whether a filesort or temporary
+ * table is used anywhere, and the access of every table in plan order.
+ * <p>
+ * {@link #parse} reads the plan with a streaming {@link JsonReader} and keeps only these fields, so no
+ * JSON tree is built for the (sometimes very large) plan documents.
+ */
+public class Plan {
+    public static final String FULL_SCAN = "full_scan";
+    public static final String FULL_INDEX_SCAN = "full_index_scan";
+    public static final String FILESORT = "filesort";
+    public static final String TEMPORARY = "temporary";
+    public static final String LARGE_ROWS = "large_rows";
+    public static final String UNUSED_POSSIBLE_KEYS = "unused_possible_keys";
+
+    // differences between two plans of the same statement; the first five are regressions
+    public static final String ACCESS_REGRESSION = "access_regression";
+    public static final String LOST_INDEX = "lost_index";
+    public static final String ROWS_BLOWUP = "rows_blowup";
+    public static final String NEW_FILESORT = "new_filesort";
+    public static final String NEW_TEMPORARY = "new_temporary";
+    public static final String KEY_CHANGED = "key_changed";
+    public static final String JOIN_ORDER_CHANGED = "join_order_changed";
+    public static final String TABLES_CHANGED = "tables_changed";
+
+    // access types from best to worst, in the order of the EXPLAIN join types documentation
+    private static final List<String> ACCESS_ORDER = List.of("system", "const", "eq_ref", "ref", "fulltext", "ref_or_null",
+            "index_merge", "unique_subquery", "index_subquery", "range", "index", "ALL");
+
+    public double cost;
+    public boolean filesort;
+    public boolean temporary;
+    public String message;
+    public final List<TableAccess> tables = new ArrayList<>();
+
+    public static class TableAccess {
+        public String name;
+        public String accessType;
+        public String key;
+        public final List<String> possibleKeys = new ArrayList<>();
+        public long rowsExamined;
+        public long rowsProduced;
+        public double filtered;
+    }
+
+    public static Plan parse(Reader json) throws IOException {
+        Plan plan = new Plan();
+        try (JsonReader reader = new JsonReader(json)) {
+            plan.readValue(reader, null);
+        }
+        return plan;
+    }
+
+    private void readValue(JsonReader reader, String name) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> {
+                if ("table".equals(name)) {
+                    readTable(reader);
+                    return;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    readValue(reader, reader.nextName());
+                }
+                reader.endObject();
+            }
+            case BEGIN_ARRAY -> {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readValue(reader, name);
+                }
+                reader.endArray();
+            }
+            case BOOLEAN -> {
+                boolean value = reader.nextBoolean();
+                if (value && "using_filesort".equals(name)) {
+                    filesort = true;
+                } else if (value && "using_temporary_table".equals(name)) {
+                    temporary = true;
+                }
+            }
+            case NULL -> reader.nextNull();
+            default -> {
+                String value = reader.nextString();
+                // the outermost query block comes first; costs of nested blocks are part of it
+                if ("query_cost".equals(name) && cost == 0) {
+                    cost = parseDouble(value);
+                } else if ("message".equals(name) && message == null) {
+                    message = value;
+                }
+            }
+        }
+    }
+
+    private void readTable(JsonReader reader) throws IOException {
+        TableAccess t = new TableAccess();
+        // added before its nested blocks so tables stay in plan order
+        tables.add(t);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "table_name" -> t.name = reader.nextString();
+                case "access_type" -> t.accessType = reader.nextString();
+                case "key" -> t.key = reader.nextString();
+                case "rows_examined_per_scan" -> t.rowsExamined = (long) parseDouble(reader.nextString());
+                case "rows_produced_per_join" -> t.rowsProduced = (long) parseDouble(reader.nextString());
+                case "filtered" -> t.filtered = parseDouble(reader.nextString());
+                case "possible_keys" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        t.possibleKeys.add(reader.nextString());
+                    }
+                    reader.endArray();
+                }
+                default -> readValue(reader, name);
+            }
+        }
+        reader.endObject();
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Rows examined over the whole join: each table's rows per scan times the rows produced by the tables
+     * before it.
+     */
+    public long rowsExaminedEstimate() {
+        double total = 0;
+        double prefix = 1;
+        for (TableAccess t : tables) {
+            total += prefix * t.rowsExamined;
+            if (t.rowsProduced > 0) {
+                prefix = t.rowsProduced;
+            }
+        }
+        return (long) Math.min(total, Long.MAX_VALUE);
+    }
+
+    /**
+     * Findings as {flag, detail} pairs.
+     */
+    public List<String[]> flags(long rowsThreshold) {
+        List<String[]> flags = new ArrayList<>();
+        for (TableAccess t : tables) {
+            if ("ALL".equals(t.accessType)) {
+                flags.add(new String[]{FULL_SCAN, t.name + " (" + t.rowsExamined + " rows)"});
+            } else if ("index".equals(t.accessType)) {
+                flags.add(new String[]{FULL_INDEX_SCAN, t.name + " via " + t.key + " (" + t.rowsExamined + " rows)"});
+            }
+            if (t.key == null && !t.possibleKeys.isEmpty()) {
+                flags.add(new String[]{UNUSED_POSSIBLE_KEYS, t.name + " " + String.join(",", t.possibleKeys)});
+            }
+        }
+        if (filesort) {
+            flags.add(new String[]{FILESORT, ""});
+        }
+        if (temporary) {
+            flags.add(new String[]{TEMPORARY, ""});
+        }
+        long rows = rowsExaminedEstimate();
+        if (rowsThreshold > 0 && rows >= rowsThreshold) {
+            flags.add(new String[]{LARGE_ROWS, rows + " rows examined"});
+        }
+        return flags;
+    }
+
+    /**
+     * Join order as table names, a name repeated for each occurrence.
+     */
+    public List<String> joinOrder() {
+        List<String> order = new ArrayList<>();
+        for (TableAccess t : tables) {
+            order.add(t.name);
+        }
+        return order;
+    }
+
+    /**
+     * Differences from {@code source} to {@code target} as {flag, detail} pairs. Tables are matched by name
+     * and occurrence, so the same alias in a subquery is compared with its counterpart.
+     *
+     * @param rowsFactor a rows-examined estimate this many times higher is a blow-up
+     * @param minRows    ignore blow-ups whose target estimate stays below this
+     */
+    public static List<String[]> compare(Plan source, Plan target, double rowsFactor, long minRows) {
+        List<String[]> diffs = new ArrayList<>();
+        Map<String, TableAccess> targetTables = byOccurrence(target);
+        Map<String, TableAccess> sourceTables = byOccurrence(source);
+        for (Map.Entry<String, TableAccess> entry : sourceTables.entrySet()) {
+            TableAccess s = entry.getValue();
+            TableAccess t = targetTables.get(entry.getKey());
+            if (t == null) {
+                continue;
+            }
+            int before = ACCESS_ORDER.indexOf(s.accessType);
+            int after = ACCESS_ORDER.indexOf(t.accessType);
+            if (before >= 0 && after > before) {
+                diffs.add(new String[]{ACCESS_REGRESSION, s.name + " " + s.accessType + "->" + t.accessType});
+            }
+            if (s.key != null && t.key == null) {
+                diffs.add(new String[]{LOST_INDEX, s.name + " no longer uses " + s.key});
+            } else if (s.key != null && !s.key.equals(t.key)) {
+                diffs.add(new String[]{KEY_CHANGED, s.name + " " + s.key + "->" + t.key});
+            }
+        }
+        if (!sourceTables.keySet().equals(targetTables.keySet())) {
+            diffs.add(new String[]{TABLES_CHANGED, sourceTables.keySet() + "->" + targetTables.keySet()});
+        } else if (!source.joinOrder().equals(target.joinOrder())) {
+            diffs.add(new String[]{JOIN_ORDER_CHANGED, String.join(",", source.joinOrder()) + "->" + String.join(",", target.joinOrder())});
+        }
+        if (target.filesort && !source.filesort) {
+            diffs.add(new String[]{NEW_FILESORT, ""});
+        }
+        if (target.temporary && !source.temporary) {
+            diffs.add(new String[]{NEW_TEMPORARY, ""});
+        }
+        long before = source.rowsExaminedEstimate();
+        long after = target.rowsExaminedEstimate();
+        if (after >= minRows && after > Math.max(before, 1) * rowsFactor) {
+            diffs.add(new String[]{ROWS_BLOWUP, before + "->" + after + " rows examined"});
+        }
+        return diffs;
+    }
+
+    public static boolean isRegression(String flag) {
+        return switch (flag) {
+            case ACCESS_REGRESSION, LOST_INDEX, ROWS_BLOWUP, NEW_FILESORT, NEW_TEMPORARY -> true;
+            default -> false;
+        };
+    }
+
+    private static Map<String, TableAccess> byOccurrence(Plan plan) {
+        Map<String, TableAccess> result = new LinkedHashMap<>();
+        Map<String, Integer> seen = new HashMap<>();
+        for (TableAccess t : plan.tables) {
+            int n = seen.merge(String.valueOf(t.name), 1, Integer::sum);
+            result.put(t.name + (n > 1 ? "#" + n : ""), t);
+        }
+        return result;
+    }
+
+    /**
+     * Ranking weight of a flag: scans and large examinations outrank sorting, which outranks missed keys.
+     */
+    public static int weight(String flag) {
+        return switch (flag) {
+            case FULL_SCAN, LARGE_ROWS -> 3;
+            case FILESORT, TEMPORARY -> 2;
+            default -> 1;
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.dyrnq.dbops.lock;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Builds a {@link WaitForGraph} from performance_schema (MySQL 8.0): InnoDB row lock waits from
+ * {@code data_lock_waits}, metadata lock waits from {@code metadata_locks}, and session details from
+ * {@code threads}, {@code events_statements_current} and {@code information_schema.INNODB_TRX}.
+ * Nodes are keyed by performance_schema THREAD_ID.
+ */
+@Slf4j
+public class LockSampler {
+    static final String ROW_WAITS_SQL = "SELECT w.REQUESTING_THREAD_ID, w.BLOCKING_THREAD_ID, l.OBJECT_SCHEMA, l.OBJECT_NAME, " +
+            "l.INDEX_NAME, l.LOCK_MODE FROM performance_schema.data_lock_waits w " +
+            "JOIN performance_schema.data_locks l ON l.ENGINE_LOCK_ID = w.REQUESTING_ENGINE_LOCK_ID";
+    static final String METADATA_LOCKS_SQL = "SELECT OWNER_THREAD_ID, OBJECT_TYPE, OBJECT_SCHEMA, OBJECT_NAME, LOCK_TYPE, LOCK_STATUS " +
+            "FROM performance_schema.metadata_locks WHERE OBJECT_TYPE IN ('TABLE', 'SCHEMA', 'GLOBAL', 'COMMIT', 'BACKUP LOCK') " +
+            "AND LOCK_STATUS IN ('GRANTED', 'PENDING')";
+    static final String SESSIONS_SQL = "SELECT t.THREAD_ID, t.PROCESSLIST_ID, t.PROCESSLIST_USER, t.PROCESSLIST_HOST, t.PROCESSLIST_DB, " +
+            "t.PROCESSLIST_COMMAND, t.PROCESSLIST_TIME, t.PROCESSLIST_STATE, t.PROCESSLIST_INFO, s.SQL_TEXT, " +
+            "x.trx_id, x.trx_state, TIMESTAMPDIFF(SECOND, x.trx_started, NOW()), x.trx_rows_locked, x.trx_rows_modified " +
+            "FROM performance_schema.threads t " +
+            "LEFT JOIN performance_schema.events_statements_current s ON s.THREAD_ID = t.THREAD_ID AND s.NESTING_EVENT_LEVEL = 0 " +
+            "LEFT JOIN information_schema.INNODB_TRX x ON x.trx_mysql_thread_id = t.PROCESSLIST_ID " +
+            "WHERE t.PROCESSLIST_ID IS NOT NULL";
+
+    // metadata lock types in the order of MySQL's MDL compatibility matrices
+    static final List<String> MDL_TYPES = List.of("SHARED", "SHARED_HIGH_PRIO", "SHARED_READ", "SHARED_WRITE",
+            "SHARED_WRITE_LOW_PRIO", "SHARED_UPGRADABLE", "SHARED_READ_ONLY", "SHARED_NO_WRITE", "SHARED_NO_READ_WRITE", "EXCLUSIVE");
+    // row: requested type, column: granted type; '+' compatible
+    static final String[] GRANTED_MATRIX = {
+            "+++++++++-",
+            "+++++++++-",
+            "++++++++--",
+            "++++++----",
+            "++++++----",
+            "+++++-+---",
+            "+++--++---",
+            "+++---+---",
+            "++--------",
+            "----------"
+    };
+    // row: requested type, column: type of an earlier pending request; '+' means the request may jump ahead
+    static final String[] PENDING_MATRIX = {
+            "++++++++++",
+            "++++++++++",
+            "++++++++--",
+            "+++++++---",
+            "++++++----",
+            "+++++++++-",
+            "+++-++++--",
+            "+++++++++-",
+            "+++++++++-",
+            "++++++++++"
+    };
+
+    /**
+     * Take one sample; the three queries run back to back on the same connection.
+     */
+    public WaitForGraph sample(Connection connection) throws SQLException {
+        WaitForGraph graph = new WaitForGraph();
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(ROW_WAITS_SQL)) {
+                while (rs.next()) {
+                    String object = rs.getString(3) + "." + rs.getString(4) + (rs.getString(5) == null ? "" : "(" + rs.getString(5) + ")");
+                    graph.addEdge(rs.getLong(1), rs.getLong(2), WaitForGraph.Kind.ROW, object, rs.getString(6));
+                }
+            } catch (SQLException e) {
+                // 5.7 has no data_lock_waits; metadata locks still work there with the MDL instrument on
+                log.warn("row lock waits unavailable: {}", e.getMessage());
+            }
+            try (ResultSet rs = stmt.executeQuery(METADATA_LOCKS_SQL)) {
+                addMetadataEdges(graph, rs);
+            }
+            Set<Long> involved = new HashSet<>();
+            graph.nodes().forEach(n -> involved.add(n.getThreadId()));
+            if (!involved.isEmpty()) {
+                try (ResultSet rs = stmt.executeQuery(SESSIONS_SQL)) {
+                    while (rs.next()) {
+                        long threadId = rs.getLong(1);
+                        if (involved.contains(threadId)) {
+                            graph.get(threadId).setSession(session(rs));
+                        }
+                    }
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static void addMetadataEdges(WaitForGraph graph, ResultSet rs) throws SQLException {
+        Map<String, List<long[]>> granted = new HashMap<>();
+        Map<String, List<long[]>> pending = new HashMap<>();
+        while (rs.next()) {
+            int type = MDL_TYPES.indexOf(rs.getString(5));
+            if (type < 0) {
+                // INTENTION_EXCLUSIVE and friends on GLOBAL/SCHEMA only conflict with explicit global locks
+                type = "INTENTION_EXCLUSIVE".equals(rs.getString(5)) ? MDL_TYPES.indexOf("SHARED_WRITE") : MDL_TYPES.indexOf("SHARED");
+            }
+            String object = rs.getString(2) + " " + Objects.toString(rs.getString(3), "") + (rs.getString(4) == null ? "" : "." + rs.getString(4));
+            long[] lock = {rs.getLong(1), type};
+            ("GRANTED".equals(rs.getString(6)) ? granted : pending).computeIfAbsent(object, k -> new ArrayList<>()).add(lock);
+        }
+        for (Map.Entry<String, List<long[]>> entry : pending.entrySet()) {
+            String object = entry.getKey();
+            List<long[]> waiters = entry.getValue();
+            for (long[] waiter : waiters) {
+                String mode = MDL_TYPES.get((int) waiter[1]);
+                for (long[] holder : granted.getOrDefault(object, Collections.emptyList())) {
+                    if (GRANTED_MATRIX[(int) waiter[1]].charAt((int) holder[1]) == '-') {
+                        graph.addEdge(waiter[0], holder[0], WaitForGraph.Kind.METADATA, object, mode);
+                    }
+                }
+                // queued strong requests (an ALTER waiting for X) hold back weaker requests arriving later
+                for (long[] queued : waiters) {
+                    if (queued != waiter && queued[1] > waiter[1] && PENDING_MATRIX[(int) waiter[1]].charAt((int) queued[1]) == '-') {
+                        graph.addEdge(waiter[0], queued[0], WaitForGraph.Kind.METADATA, object, mode);
+                    }
+                }
+            }
+        }
+    }
+
+    private static WaitForGraph.Session session(ResultSet rs) throws SQLException {
+        WaitForGraph.Session s = new WaitForGraph.Session();
+        s.processlistId = rs.getLong(2);
+        s.user = rs.getString(3);
+        s.host = rs.getString(4);
+        s.db = rs.getString(5);
+        s.command = rs.getString(6);
+        s.time = rs.getLong(7);
+        s.state = rs.getString(8);
+        s.info = rs.getString(9);
+        s.lastStatement = rs.getString(10);
+        s.trxId = rs.getString(11);
+        s.trxState = rs.getString(12);
+        if (rs.getObject(13) != null) {
+            s.trxAgeSeconds = rs.getLong(13);
+        }
+        s.trxRowsLocked = rs.getLong(14);
+        s.trxRowsModified = rs.getLong(15);
+        return s;
+    }
+}
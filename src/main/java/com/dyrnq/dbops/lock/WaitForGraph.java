@@ -0,0 +1,207 @@
+package com.dyrnq.dbops.lock;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Wait-for graph between server threads: an edge points from a waiting thread to the thread holding
+ * (or queued ahead for) the lock it needs.
+ * <p>
+ * A root blocker blocks at least one thread and waits for none. Threads that only wait on each other
+ * in a cycle have no root; {@link #cycles()} reports them instead.
+ */
+public class WaitForGraph {
+    public enum Kind {ROW, METADATA}
+
+    private final Map<Long, Node> nodes = new LinkedHashMap<>();
+
+    public Node node(long threadId) {
+        return nodes.computeIfAbsent(threadId, Node::new);
+    }
+
+    public Node get(long threadId) {
+        return nodes.get(threadId);
+    }
+
+    public Collection<Node> nodes() {
+        return nodes.values();
+    }
+
+    public void addEdge(long waiter, long blocker, Kind kind, String object, String lockMode) {
+        if (waiter == blocker) {
+            return;
+        }
+        Node w = node(waiter);
+        Node b = node(blocker);
+        for (Edge e : w.waitsFor) {
+            if (e.blocker == b && e.kind == kind && Objects.equals(e.object, object)) {
+                return;
+            }
+        }
+        Edge edge = new Edge(w, b, kind, object, lockMode);
+        w.waitsFor.add(edge);
+        b.blocks.add(edge);
+    }
+
+    public boolean isEmpty() {
+        return nodes.values().stream().noneMatch(n -> !n.blocks.isEmpty());
+    }
+
+    /**
+     * Root blockers ordered by the number of threads they block, directly or transitively.
+     */
+    public List<Node> rootBlockers() {
+        List<Node> roots = new ArrayList<>();
+        for (Node n : nodes.values()) {
+            if (!n.blocks.isEmpty() && n.waitsFor.isEmpty()) {
+                roots.add(n);
+            }
+        }
+        roots.sort(Comparator.comparingInt(Node::blockedCount).reversed().thenComparingLong(Node::getThreadId));
+        return roots;
+    }
+
+    /**
+     * Strongly connected groups of waiting threads; MySQL resolves row lock deadlocks itself, so these are
+     * normally metadata lock cycles or a deadlock caught between two samples.
+     */
+    public List<List<Node>> cycles() {
+        List<List<Node>> result = new ArrayList<>();
+        Map<Node, Integer> index = new HashMap<>();
+        Map<Node, Integer> low = new HashMap<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        Set<Node> onStack = new HashSet<>();
+        int[] counter = {0};
+        for (Node n : nodes.values()) {
+            if (!index.containsKey(n)) {
+                strongConnect(n, index, low, stack, onStack, counter, result);
+            }
+        }
+        return result;
+    }
+
+    private void strongConnect(Node v, Map<Node, Integer> index, Map<Node, Integer> low, Deque<Node> stack,
+                               Set<Node> onStack, int[] counter, List<List<Node>> result) {
+        index.put(v, counter[0]);
+        low.put(v, counter[0]);
+        counter[0]++;
+        stack.push(v);
+        onStack.add(v);
+        for (Edge e : v.waitsFor) {
+            Node w = e.blocker;
+            if (!index.containsKey(w)) {
+                strongConnect(w, index, low, stack, onStack, counter, result);
+                low.put(v, Math.min(low.get(v), low.get(w)));
+            } else if (onStack.contains(w)) {
+                low.put(v, Math.min(low.get(v), index.get(w)));
+            }
+        }
+        if (low.get(v).equals(index.get(v))) {
+            List<Node> component = new ArrayList<>();
+            Node w;
+            do {
+                w = stack.pop();
+                onStack.remove(w);
+                component.add(w);
+            } while (w != v);
+            if (component.size() > 1) {
+                result.add(component);
+            }
+        }
+    }
+
+    @Getter
+    public static class Node {
+        private final long threadId;
+        private final List<Edge> waitsFor = new ArrayList<>();
+        private final List<Edge> blocks = new ArrayList<>();
+        private Session session;
+
+        Node(long threadId) {
+            this.threadId = threadId;
+        }
+
+        public void setSession(Session session) {
+            this.session = session;
+        }
+
+        /**
+         * Distinct threads waiting on this one, directly or through other waiters.
+         */
+        public int blockedCount() {
+            return waiters().size();
+        }
+
+        public Set<Node> waiters() {
+            Set<Node> seen = new LinkedHashSet<>();
+            Deque<Node> queue = new ArrayDeque<>();
+            queue.add(this);
+            while (!queue.isEmpty()) {
+                for (Edge e : queue.poll().blocks) {
+                    if (e.waiter != this && seen.add(e.waiter)) {
+                        queue.add(e.waiter);
+                    }
+                }
+            }
+            return seen;
+        }
+
+        /**
+         * Length of the longest wait chain ending at this thread, 0 when nothing waits on it.
+         */
+        public int chainDepth() {
+            return chainDepth(new HashSet<>());
+        }
+
+        private int chainDepth(Set<Node> path) {
+            if (!path.add(this)) {
+                return 0;
+            }
+            int depth = 0;
+            for (Edge e : blocks) {
+                depth = Math.max(depth, 1 + e.waiter.chainDepth(path));
+            }
+            path.remove(this);
+            return depth;
+        }
+    }
+
+    @Getter
+    public static class Edge {
+        private final Node waiter;
+        private final Node blocker;
+        private final Kind kind;
+        private final String object;
+        private final String lockMode;
+
+        Edge(Node waiter, Node blocker, Kind kind, String object, String lockMode) {
+            this.waiter = waiter;
+            this.blocker = blocker;
+            this.kind = kind;
+            this.object = object;
+            this.lockMode = lockMode;
+        }
+    }
+
+    /**
+     * What the server reported about a thread when the graph was sampled.
+     */
+    @Getter
+    public static class Session {
+        long processlistId;
+        String user;
+        String host;
+        String db;
+        String command;
+        long time;
+        String state;
+        String info;
+        String lastStatement;
+        String trxId;
+        String trxState;
+        long trxAgeSeconds = -1;
+        long trxRowsLocked;
+        long trxRowsModified;
+    }
+}
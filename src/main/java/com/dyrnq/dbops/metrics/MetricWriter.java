@@ -0,0 +1,111 @@
+package com.dyrnq.dbops.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prometheus text exposition (0.0.4) for one datasource, grouped by metric family so samples from
+ * several datasources can be merged family by family into one valid response.
+ * <p>
+ * Samples are appended straight into per-family builders; numbers are written with
+ * {@link StringBuilder#append(long)} and no formatting objects are created.
+ */
+public class MetricWriter {
+    final Map<String, Family> families = new LinkedHashMap<>();
+    private final String datasource;
+
+    public MetricWriter(String datasource) {
+        this.datasource = datasource;
+    }
+
+    static class Family {
+        final String help;
+        final String type;
+        final StringBuilder samples = new StringBuilder(256);
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private StringBuilder begin(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, k -> new Family(help, type));
+        StringBuilder sb = family.samples;
+        sb.append(name).append("{datasource=\"");
+        escape(sb, datasource);
+        sb.append('"');
+        return sb;
+    }
+
+    private static StringBuilder label(StringBuilder sb, String name, String value) {
+        sb.append(',').append(name).append("=\"");
+        escape(sb, value == null ? "" : value);
+        return sb.append('"');
+    }
+
+    public void gauge(String name, String help, double value) {
+        value(begin(name, "gauge", help).append("} "), value);
+    }
+
+    public void gauge(String name, String help, String labelName, String labelValue, double value) {
+        value(label(begin(name, "gauge", help), labelName, labelValue).append("} "), value);
+    }
+
+    public void gauge(String name, String help, String label1, String value1, String label2, String value2, double value) {
+        StringBuilder sb = begin(name, "gauge", help);
+        label(sb, label1, value1);
+        label(sb, label2, value2);
+        value(sb.append("} "), value);
+    }
+
+    public void untyped(String name, String help, String labelName, String labelValue, double value) {
+        value(label(begin(name, "untyped", help), labelName, labelValue).append("} "), value);
+    }
+
+    private static void value(StringBuilder sb, double value) {
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else if (Double.isNaN(value)) {
+            sb.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            sb.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Write the families of all writers into one response; HELP and TYPE appear once per family.
+     */
+    public static void merge(Iterable<MetricWriter> writers, StringBuilder out) {
+        Map<String, Family> first = new LinkedHashMap<>();
+        for (MetricWriter writer : writers) {
+            writer.families.forEach(first::putIfAbsent);
+        }
+        for (Map.Entry<String, Family> entry : first.entrySet()) {
+            String name = entry.getKey();
+            out.append("# HELP ").append(name).append(' ').append(entry.getValue().help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(entry.getValue().type).append('\n');
+            for (MetricWriter writer : writers) {
+                Family family = writer.families.get(name);
+                if (family != null) {
+                    out.append(family.samples);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.dyrnq.dbops.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.noear.solon.data.sql.SqlUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Collects MySQL metrics for a set of datasources.
+ * <p>
+ * Each datasource is collected on its own task with a timeout; a result younger than the cache TTL is
+ * served as is, and a collection still running from an earlier scrape is joined rather than duplicated.
+ * A datasource that times out is reported with {@code dbops_up 0} and its pool stats, so one slow server
+ * never delays the others beyond the timeout. Non-MySQL datasources (e.g. SQLite) only report
+ * availability, probe latency and pool stats.
+ */
+@Slf4j
+public class MetricsCollector implements AutoCloseable {
+    private final List<String> datasources;
+    private final Function<String, DataSource> lookup;
+    private final long timeoutMillis;
+    private final long cacheTtlMillis;
+    private final ExecutorService executor;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    public MetricsCollector(List<String> datasources, long timeoutMillis, long cacheTtlMillis) {
+        this(datasources, MetricsCollector::dataSource, timeoutMillis, cacheTtlMillis);
+    }
+
+    /**
+     * @param lookup resolves a datasource name, {@code null} when it is not configured
+     */
+    public MetricsCollector(List<String> datasources, Function<String, DataSource> lookup, long timeoutMillis, long cacheTtlMillis) {
+        this.datasources = List.copyOf(datasources);
+        this.lookup = lookup;
+        this.timeoutMillis = timeoutMillis;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, datasources.size()), r -> {
+            Thread t = new Thread(r, "metrics-collect");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static class Cached {
+        volatile MetricWriter writer;
+        volatile long collectedAt;
+        volatile Future<MetricWriter> inFlight;
+    }
+
+    /**
+     * Prometheus text for all datasources.
+     */
+    public String scrape() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<String, Future<MetricWriter>> pending = new LinkedHashMap<>();
+        List<MetricWriter> writers = new ArrayList<>();
+        for (String ds : datasources) {
+            pending.put(ds, submit(ds));
+        }
+        for (Map.Entry<String, Future<MetricWriter>> entry : pending.entrySet()) {
+            String ds = entry.getKey();
+            try {
+                long wait = Math.max(0, deadline - System.nanoTime());
+                writers.add(entry.getValue().get(wait, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // keep the collection running for the next scrape
+                log.warn("collect {} timed out after {}ms", ds, timeoutMillis);
+                writers.add(down(ds, "timeout"));
+            } catch (ExecutionException e) {
+                log.warn("collect {} failed: {}", ds, e.getCause().getMessage());
+                writers.add(down(ds, "error"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writers.add(down(ds, "interrupted"));
+            }
+        }
+        StringBuilder out = new StringBuilder(16 * 1024);
+        MetricWriter.merge(writers, out);
+        return out.toString();
+    }
+
+    private synchronized Future<MetricWriter> submit(String ds) {
+        Cached cached = cache.computeIfAbsent(ds, k -> new Cached());
+        if (cached.writer != null && System.currentTimeMillis() - cached.collectedAt < cacheTtlMillis) {
+            return CompletableFuture.completedFuture(cached.writer);
+        }
+        if (cached.inFlight != null && !cached.inFlight.isDone()) {
+            return cached.inFlight;
+        }
+        cached.inFlight = executor.submit(() -> {
+            MetricWriter writer = collect(ds);
+            cached.writer = writer;
+            cached.collectedAt = System.currentTimeMillis();
+            return writer;
+        });
+        return cached.inFlight;
+    }
+
+    private MetricWriter down(String ds, String reason) {
+        MetricWriter w = new MetricWriter(ds);
+        w.gauge("dbops_up", "1 if the datasource answered within the scrape timeout", 0);
+        w.gauge("dbops_collect_failed", "collection failure by reason", "reason", reason, 1);
+        poolStats(w, lookup.apply(ds));
+        return w;
+    }
+
+    private static DataSource dataSource(String ds) {
+        try {
+            return SqlUtils.ofName(ds).getDataSource();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    MetricWriter collect(String ds) throws SQLException {
+        long start = System.nanoTime();
+        MetricWriter w = new MetricWriter(ds);
+        DataSource dataSource = lookup.apply(ds);
+        if (dataSource == null) {
+            throw new SQLException("datasource " + ds + " is not configured");
+        }
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout((int) Math.max(1, timeoutMillis / 1000));
+            String product = conn.getMetaData().getDatabaseProductName();
+            boolean mysql = product != null && (product.toLowerCase(Locale.ROOT).contains("mysql") || product.toLowerCase(Locale.ROOT).contains("mariadb"));
+            if (mysql) {
+                globalStatus(w, stmt);
+                globalVariables(w, stmt);
+                replication(w, stmt);
+                processlist(w, stmt);
+            } else {
+                try (ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                    rs.next();
+                }
+            }
+            w.gauge("dbops_up", "1 if the datasource answered within the scrape timeout", 1);
+        }
+        poolStats(w, dataSource);
+        w.gauge("dbops_collect_duration_seconds", "time spent collecting the datasource", (System.nanoTime() - start) / 1e9);
+        return w;
+    }
+
+    private static void globalStatus(MetricWriter w, Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SHOW GLOBAL STATUS")) {
+            while (rs.next()) {
+                double value = parse(rs.getString(2));
+                if (!Double.isNaN(value)) {
+                    w.untyped("mysql_global_status", "SHOW GLOBAL STATUS numeric values", "name", rs.getString(1), value);
+                }
+            }
+        }
+    }
+
+    private static void globalVariables(MetricWriter w, Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SHOW GLOBAL VARIABLES")) {
+            while (rs.next()) {
+                double value = parse(rs.getString(2));
+                if (!Double.isNaN(value)) {
+                    w.gauge("mysql_global_variables", "SHOW GLOBAL VARIABLES numeric values", "name", rs.getString(1), value);
+                }
+            }
+        }
+    }
+
+    private static void replication(MetricWriter w, Statement stmt) {
+        ResultSet rs = null;
+        try {
+            try {
+                rs = stmt.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                rs = stmt.executeQuery("SHOW SLAVE STATUS");
+            }
+            Set<String> columns = new HashSet<>();
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                columns.add(rs.getMetaData().getColumnLabel(i));
+            }
+            boolean legacy = !columns.contains("Seconds_Behind_Source");
+            while (rs.next()) {
+                String channel = columns.contains("Channel_Name") ? rs.getString("Channel_Name") : "";
+                String lag = rs.getString(legacy ? "Seconds_Behind_Master" : "Seconds_Behind_Source");
+                w.gauge("mysql_replica_seconds_behind_source", "Seconds_Behind_Source, -1 when NULL", "channel", channel,
+                        lag == null ? -1 : parse(lag));
+                w.gauge("mysql_replica_io_running", "1 when the IO thread is running", "channel", channel,
+                        "Yes".equals(rs.getString(legacy ? "Slave_IO_Running" : "Replica_IO_Running")) ? 1 : 0);
+                w.gauge("mysql_replica_sql_running", "1 when the SQL thread is running", "channel", channel,
+                        "Yes".equals(rs.getString(legacy ? "Slave_SQL_Running" : "Replica_SQL_Running")) ? 1 : 0);
+                w.gauge("mysql_replica_relay_log_space_bytes", "Relay_Log_Space", "channel", channel, parse(rs.getString("Relay_Log_Space")));
+            }
+        } catch (SQLException e) {
+            log.debug("replication status unavailable: {}", e.getMessage());
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void processlist(MetricWriter w, Statement stmt) throws SQLException {
+        Map<String, long[]> summary = new TreeMap<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT COMMAND, STATE, TIME FROM information_schema.PROCESSLIST")) {
+            while (rs.next()) {
+                String key = Objects.toString(rs.getString(1), "") + '\u0001' + Objects.toString(rs.getString(2), "");
+                long[] v = summary.computeIfAbsent(key, k -> new long[2]);
+                v[0]++;
+                v[1] = Math.max(v[1], rs.getLong(3));
+            }
+        }
+        for (Map.Entry<String, long[]> entry : summary.entrySet()) {
+            int sep = entry.getKey().indexOf('\u0001');
+            String command = entry.getKey().substring(0, sep);
+            String state = entry.getKey().substring(sep + 1);
+            w.gauge("mysql_processlist_threads", "threads by command and state", "command", command, "state", state, entry.getValue()[0]);
+            w.gauge("mysql_processlist_max_time_seconds", "longest running thread by command and state", "command", command, "state", state, entry.getValue()[1]);
+        }
+    }
+
+    private static void poolStats(MetricWriter w, DataSource dataSource) {
+        if (!(dataSource instanceof HikariDataSource hikari)) {
+            return;
+        }
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+        w.gauge("hikari_connections_active", "connections in use", pool.getActiveConnections());
+        w.gauge("hikari_connections_idle", "idle connections", pool.getIdleConnections());
+        w.gauge("hikari_connections_total", "open connections", pool.getTotalConnections());
+        w.gauge("hikari_connections_pending", "threads waiting for a connection", pool.getThreadsAwaitingConnection());
+        w.gauge("hikari_connections_max", "maximum pool size", hikari.getMaximumPoolSize());
+    }
+
+    /**
+     * Numeric value of a status or variable; ON/OFF become 1/0, anything else NaN.
+     */
+    static double parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return Double.NaN;
+        }
+        char c = value.charAt(0);
+        if ((c >= '0' && c <= '9') || c == '-') {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        if ("ON".equalsIgnoreCase(value) || "YES".equalsIgnoreCase(value)) {
+            return 1;
+        }
+        if ("OFF".equalsIgnoreCase(value) || "NO".equalsIgnoreCase(value)) {
+            return 0;
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
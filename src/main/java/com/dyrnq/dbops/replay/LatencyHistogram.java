@@ -0,0 +1,72 @@
+package com.dyrnq.dbops.replay;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets: bucket {@code i} counts values below
+ * {@code 2^i} µs. Percentiles are the upper bound of the bucket they fall in, so within a factor of two.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+    // display buckets in milliseconds; the last one is open
+    public static final double[] DECADES_MS = {1, 10, 100, 1000, 10000};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    public void record(long micros) {
+        long v = Math.max(0, micros);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(v));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        sumMicros.add(v);
+    }
+
+    public void recordMillis(double millis) {
+        record((long) (millis * 1000));
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double meanMs() {
+        long n = count.sum();
+        return n == 0 ? 0 : sumMicros.sum() / 1000d / n;
+    }
+
+    public double percentileMs(double q) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return (1L << i) / 1000d;
+            }
+        }
+        return (1L << (BUCKETS - 1)) / 1000d;
+    }
+
+    /**
+     * Counts per {@link #DECADES_MS} bucket plus the open one, attributing each power-of-two bucket to the
+     * decade its upper bound falls in.
+     */
+    public long[] decades() {
+        long[] result = new long[DECADES_MS.length + 1];
+        for (int i = 0; i < BUCKETS; i++) {
+            double upperMs = (1L << i) / 1000d;
+            int d = 0;
+            while (d < DECADES_MS.length && upperMs > DECADES_MS[d]) {
+                d++;
+            }
+            result[d] += buckets.get(i);
+        }
+        return result;
+    }
+}
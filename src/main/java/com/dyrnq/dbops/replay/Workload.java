@@ -0,0 +1,316 @@
+package com.dyrnq.dbops.replay;
+
+import com.dyrnq.dbops.utils.SqlNormalizer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A captured workload grouped by the original connection, read from a slow log, a general log or NDJSON.
+ * <p>
+ * NDJSON lines look like {@code {"ts": 1714557600.123, "session": 42, "schema": "shop", "sql": "...",
+ * "duration_ms": 1.2}}; {@code ts} is the start time in epoch seconds and {@code duration_ms} is optional.
+ * General logs carry no latency, so their statements are replayed without a recorded baseline.
+ */
+@Slf4j
+public class Workload {
+    public static final String SLOW = "slow";
+    public static final String GENERAL = "general";
+    public static final String NDJSON = "ndjson";
+
+    private static final Pattern SLOW_TIME = Pattern.compile("^# Time: (\\S+)");
+    private static final Pattern SLOW_ID = Pattern.compile("Id:\\s*(\\d+)");
+    private static final Pattern SLOW_QUERY_TIME = Pattern.compile("^# Query_time: ([\\d.]+)");
+    private static final Pattern SET_TIMESTAMP = Pattern.compile("^SET timestamp=(\\d+);$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern USE = Pattern.compile("^use `?([^`;\\s]+)`?;$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern GENERAL_LINE = Pattern.compile(
+            "^(\\d{4}-\\d{2}-\\d{2}T\\S+)?\\s+(\\d+) (Connect|Query|Init DB|Quit|Execute|Prepare|Close stmt|Reset stmt|Field List|Statistics|Ping|Change user)\\t?(.*)$");
+    private static final Pattern CONNECT_DB = Pattern.compile(" on (\\S+) using ");
+
+    public static class Event {
+        public long session;
+        // start time in epoch microseconds, then the offset from the first event of the workload
+        public long micros;
+        public String schema;
+        public String sql;
+        public String fingerprint;
+        public double recordedMs = -1;
+    }
+
+    private final Map<Long, List<Event>> sessions = new LinkedHashMap<>();
+    private long events;
+    private long skipped;
+    private long spanMicros;
+
+    public Map<Long, List<Event>> sessions() {
+        return sessions;
+    }
+
+    public long events() {
+        return events;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    public long spanMicros() {
+        return spanMicros;
+    }
+
+    public static String detect(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (line.startsWith("{")) {
+                    return NDJSON;
+                }
+                if (line.startsWith("# Time:") || line.startsWith("# User@Host:")) {
+                    return SLOW;
+                }
+                if (GENERAL_LINE.matcher(line).matches()) {
+                    return GENERAL;
+                }
+            }
+        }
+        throw new IOException("cannot detect the format of " + file + ", use --input-format");
+    }
+
+    /**
+     * @param accept statements rejected by this are counted as skipped and not kept
+     * @param limit  stop after this many accepted statements, 0 reads the whole file
+     */
+    public static Workload read(Path file, String format, Predicate<String> accept, long limit) throws IOException {
+        Workload workload = new Workload();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            switch (format) {
+                case SLOW -> workload.readSlowLog(reader, accept, limit);
+                case GENERAL -> workload.readGeneralLog(reader, accept, limit);
+                case NDJSON -> workload.readNdjson(reader, accept, limit);
+                default -> throw new IllegalArgumentException("unsupported input format " + format);
+            }
+        }
+        workload.rebase();
+        return workload;
+    }
+
+    private boolean add(Event e, Predicate<String> accept, long limit) {
+        if (e.sql == null || e.sql.isBlank()) {
+            return true;
+        }
+        e.sql = e.sql.trim();
+        if (e.sql.endsWith(";")) {
+            e.sql = e.sql.substring(0, e.sql.length() - 1).trim();
+        }
+        if (!accept.test(e.sql)) {
+            skipped++;
+            return true;
+        }
+        e.fingerprint = SqlNormalizer.normalize(e.sql, 200);
+        sessions.computeIfAbsent(e.session, k -> new ArrayList<>()).add(e);
+        events++;
+        return limit <= 0 || events < limit;
+    }
+
+    /**
+     * Orders each session by start time and makes times relative to the first statement.
+     */
+    private void rebase() {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (List<Event> list : sessions.values()) {
+            for (Event e : list) {
+                first = Math.min(first, e.micros);
+                last = Math.max(last, e.micros);
+            }
+        }
+        for (List<Event> list : sessions.values()) {
+            list.sort(Comparator.comparingLong(e -> e.micros));
+            for (Event e : list) {
+                e.micros -= first;
+            }
+        }
+        spanMicros = events == 0 ? 0 : last - first;
+    }
+
+    private void readSlowLog(BufferedReader reader, Predicate<String> accept, long limit) throws IOException {
+        long endMicros = -1;
+        long timestamp = -1;
+        Map<Long, String> schemas = new HashMap<>();
+        Event current = null;
+        StringBuilder sql = new StringBuilder();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            Matcher m;
+            if ((m = SLOW_TIME.matcher(line)).find()) {
+                endMicros = parseMicros(m.group(1));
+                continue;
+            }
+            if (line.startsWith("# User@Host:")) {
+                // a new entry; the previous one is complete
+                if (current != null && !finishSlow(current, sql, timestamp, schemas, accept, limit)) {
+                    return;
+                }
+                current = new Event();
+                m = SLOW_ID.matcher(line);
+                current.session = m.find() ? Long.parseLong(m.group(1)) : 0;
+                current.micros = endMicros;
+                current.schema = schemas.get(current.session);
+                timestamp = -1;
+                continue;
+            }
+            if (current == null) {
+                continue;
+            }
+            if ((m = SLOW_QUERY_TIME.matcher(line)).find()) {
+                current.recordedMs = Double.parseDouble(m.group(1)) * 1000;
+                continue;
+            }
+            if (line.startsWith("#")) {
+                continue;
+            }
+            if ((m = SET_TIMESTAMP.matcher(line)).matches()) {
+                timestamp = Long.parseLong(m.group(1));
+                continue;
+            }
+            if (sql.length() == 0 && (m = USE.matcher(line.trim())).matches()) {
+                current.schema = m.group(1);
+                schemas.put(current.session, current.schema);
+                continue;
+            }
+            sql.append(line).append('\n');
+        }
+        if (current != null) {
+            finishSlow(current, sql, timestamp, schemas, accept, limit);
+        }
+    }
+
+    private boolean finishSlow(Event e, StringBuilder sql, long timestamp, Map<Long, String> schemas,
+                               Predicate<String> accept, long limit) {
+        // "# Time" is when the statement ended; SET timestamp is its start with second precision
+        if (e.micros >= 0) {
+            e.micros -= (long) (Math.max(e.recordedMs, 0) * 1000);
+        } else {
+            e.micros = timestamp >= 0 ? timestamp * 1_000_000 : 0;
+        }
+        e.sql = sql.toString();
+        sql.setLength(0);
+        if (e.schema == null) {
+            e.schema = schemas.get(e.session);
+        }
+        return add(e, accept, limit);
+    }
+
+    private void readGeneralLog(BufferedReader reader, Predicate<String> accept, long limit) throws IOException {
+        long micros = 0;
+        Map<Long, String> schemas = new HashMap<>();
+        Event current = null;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            Matcher m = GENERAL_LINE.matcher(line);
+            if (!m.matches()) {
+                // server restart banners, otherwise the continuation of a multi-line statement
+                if (line.contains(", Version: ") || line.startsWith("Tcp port:") || line.startsWith("Time ")) {
+                    continue;
+                }
+                if (current != null) {
+                    current.sql += "\n" + line;
+                }
+                continue;
+            }
+            if (current != null && !add(current, accept, limit)) {
+                return;
+            }
+            current = null;
+            if (m.group(1) != null) {
+                micros = parseMicros(m.group(1));
+            }
+            long session = Long.parseLong(m.group(2));
+            String command = m.group(3);
+            String argument = m.group(4);
+            switch (command) {
+                case "Connect" -> {
+                    Matcher db = CONNECT_DB.matcher(argument);
+                    if (db.find()) {
+                        schemas.put(session, db.group(1));
+                    }
+                }
+                case "Init DB" -> schemas.put(session, argument.trim());
+                case "Query", "Execute" -> {
+                    current = new Event();
+                    current.session = session;
+                    current.micros = micros;
+                    current.schema = schemas.get(session);
+                    current.sql = argument;
+                }
+                default -> {
+                }
+            }
+        }
+        if (current != null) {
+            add(current, accept, limit);
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Predicate<String> accept, long limit) throws IOException {
+        long lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonObject o;
+            try {
+                o = JsonParser.parseString(line).getAsJsonObject();
+            } catch (RuntimeException ex) {
+                log.warn("skipping line {}: {}", lineNumber, ex.getMessage());
+                continue;
+            }
+            Event e = new Event();
+            e.session = number(o.get("session"), 0).longValue();
+            e.micros = (long) (number(o.get("ts"), 0).doubleValue() * 1_000_000);
+            e.schema = o.has("schema") && !o.get("schema").isJsonNull() ? o.get("schema").getAsString() : null;
+            e.sql = o.has("sql") && !o.get("sql").isJsonNull() ? o.get("sql").getAsString() : null;
+            e.recordedMs = number(o.get("duration_ms"), -1).doubleValue();
+            if (!add(e, accept, limit)) {
+                return;
+            }
+        }
+    }
+
+    private static Number number(JsonElement element, Number defaultValue) {
+        return element == null || element.isJsonNull() ? defaultValue : element.getAsNumber();
+    }
+
+    /**
+     * ISO timestamps as written with log_timestamps UTC ({@code Z}) or SYSTEM (an offset); -1 when unparseable.
+     */
+    static long parseMicros(String text) {
+        try {
+            OffsetDateTime t = OffsetDateTime.parse(text);
+            return t.toEpochSecond() * 1_000_000 + t.getNano() / 1000;
+        } catch (DateTimeParseException e) {
+            try {
+                LocalDateTime t = LocalDateTime.parse(text);
+                return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + t.getNano() / 1000;
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+}
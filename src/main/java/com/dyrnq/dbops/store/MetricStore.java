@@ -0,0 +1,224 @@
+package com.dyrnq.dbops.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Local SQLite time-series store written by {@code record} and read by {@code report}.
+ * <p>
+ * A series is one metric of one datasource. Counters are stored as the delta since the previous sample,
+ * gauges as the sampled value; timestamps are epoch seconds. Every row carries its width, the seconds it
+ * covers, so a delta taken right after a restart or a gap of failed samples keeps its true interval. Both
+ * tables are {@code WITHOUT ROWID} and keyed by (series_id, ts), so rows are small varints clustered per
+ * series. {@link #maintain} folds raw samples into 5-minute buckets once they age out and drops buckets
+ * past retention.
+ */
+@Slf4j
+public class MetricStore implements AutoCloseable {
+    public static final String COUNTER = "counter";
+    public static final String GAUGE = "gauge";
+    public static final int BUCKET_SECONDS = 300;
+
+    private final Connection connection;
+    private final Map<String, Long> seriesIds = new HashMap<>();
+    private final Map<Long, String> seriesKinds = new HashMap<>();
+    // {series_id, ts, value, width}
+    private final List<long[]> pending = new ArrayList<>();
+    private final Map<String, String[]> pendingDigests = new HashMap<>();
+
+    public MetricStore(String path) throws SQLException {
+        File parent = new File(path).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new SQLException("cannot create directory " + parent);
+        }
+        connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("CREATE TABLE IF NOT EXISTS series (id INTEGER PRIMARY KEY, datasource TEXT NOT NULL, " +
+                    "kind TEXT NOT NULL, name TEXT NOT NULL, UNIQUE (datasource, name))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS samples (series_id INTEGER NOT NULL, ts INTEGER NOT NULL, " +
+                    "value INTEGER NOT NULL, width INTEGER NOT NULL, PRIMARY KEY (series_id, ts)) WITHOUT ROWID");
+            stmt.execute("CREATE TABLE IF NOT EXISTS samples_5m (series_id INTEGER NOT NULL, ts INTEGER NOT NULL, " +
+                    "value INTEGER NOT NULL, width INTEGER NOT NULL, PRIMARY KEY (series_id, ts)) WITHOUT ROWID");
+            stmt.execute("CREATE TABLE IF NOT EXISTS digests (digest TEXT PRIMARY KEY, schema_name TEXT, digest_text TEXT)");
+        }
+        connection.setAutoCommit(false);
+        connection.commit();
+    }
+
+    public long seriesId(String datasource, String kind, String name) throws SQLException {
+        String key = datasource + '\u0001' + name;
+        Long id = seriesIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        try (PreparedStatement ps = connection.prepareStatement("INSERT OR IGNORE INTO series (datasource, kind, name) VALUES (?, ?, ?)")) {
+            ps.setString(1, datasource);
+            ps.setString(2, kind);
+            ps.setString(3, name);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("SELECT id, kind FROM series WHERE datasource = ? AND name = ?")) {
+            ps.setString(1, datasource);
+            ps.setString(2, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                id = rs.getLong(1);
+                seriesKinds.put(id, rs.getString(2));
+            }
+        }
+        seriesIds.put(key, id);
+        return id;
+    }
+
+    /**
+     * @param width seconds the value covers: the interval of a counter delta, the sampling interval of a gauge
+     */
+    public void add(long seriesId, long ts, long value, long width) {
+        pending.add(new long[]{seriesId, ts, value, width});
+    }
+
+    public void digestText(String digest, String schema, String text) {
+        pendingDigests.putIfAbsent(digest, new String[]{schema, text});
+    }
+
+    public int pendingSize() {
+        return pending.size();
+    }
+
+    /**
+     * Write buffered samples in one transaction.
+     */
+    public void flush() throws SQLException {
+        if (pending.isEmpty() && pendingDigests.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement("INSERT OR REPLACE INTO samples (series_id, ts, value, width) VALUES (?, ?, ?, ?)");
+             PreparedStatement dps = connection.prepareStatement("INSERT OR IGNORE INTO digests (digest, schema_name, digest_text) VALUES (?, ?, ?)")) {
+            for (long[] row : pending) {
+                ps.setLong(1, row[0]);
+                ps.setLong(2, row[1]);
+                ps.setLong(3, row[2]);
+                ps.setLong(4, row[3]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            for (Map.Entry<String, String[]> entry : pendingDigests.entrySet()) {
+                dps.setString(1, entry.getKey());
+                dps.setString(2, entry.getValue()[0]);
+                dps.setString(3, entry.getValue()[1]);
+                dps.addBatch();
+            }
+            dps.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        log.debug("flushed {} samples", pending.size());
+        pending.clear();
+        pendingDigests.clear();
+    }
+
+    /**
+     * Downsample raw samples older than {@code rawSeconds} into 5-minute buckets (counters summed, gauges
+     * averaged over time, widths summed) and delete buckets older than {@code retentionSeconds}.
+     */
+    public void maintain(long now, long rawSeconds, long retentionSeconds) throws SQLException {
+        long cutoff = (now - rawSeconds) / BUCKET_SECONDS * BUCKET_SECONDS;
+        try (PreparedStatement rollup = connection.prepareStatement(
+                "INSERT OR REPLACE INTO samples_5m (series_id, ts, value, width) " +
+                        "SELECT s.series_id, s.ts / " + BUCKET_SECONDS + " * " + BUCKET_SECONDS + " AS bucket, " +
+                        "CASE WHEN r.kind = '" + COUNTER + "' THEN SUM(s.value) " +
+                        "ELSE CAST(ROUND(SUM(s.value * s.width) * 1.0 / SUM(s.width)) AS INTEGER) END, SUM(s.width) " +
+                        "FROM samples s JOIN series r ON r.id = s.series_id WHERE s.ts < ? GROUP BY s.series_id, bucket");
+             PreparedStatement deleteRaw = connection.prepareStatement("DELETE FROM samples WHERE ts < ?");
+             PreparedStatement deleteOld = connection.prepareStatement("DELETE FROM samples_5m WHERE ts < ?")) {
+            rollup.setLong(1, cutoff);
+            int rolled = rollup.executeUpdate();
+            deleteRaw.setLong(1, cutoff);
+            int deleted = deleteRaw.executeUpdate();
+            deleteOld.setLong(1, now - retentionSeconds);
+            int expired = deleteOld.executeUpdate();
+            connection.commit();
+            if (rolled + deleted + expired > 0) {
+                log.info("store maintenance: {} buckets written, {} raw samples folded, {} buckets expired", rolled, deleted, expired);
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    public String kind(long seriesId) {
+        return seriesKinds.get(seriesId);
+    }
+
+    /**
+     * Series ids and names of a datasource whose name matches a SQL LIKE pattern.
+     */
+    public Map<String, long[]> series(String datasource, String namePattern) throws SQLException {
+        Map<String, long[]> result = new TreeMap<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT id, kind, name FROM series WHERE datasource = ? AND name LIKE ?")) {
+            ps.setString(1, datasource);
+            ps.setString(2, namePattern);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    seriesKinds.put(rs.getLong(1), rs.getString(2));
+                    result.put(rs.getString(3), new long[]{rs.getLong(1), COUNTER.equals(rs.getString(2)) ? 1 : 0});
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Samples of a series since {@code from}, 5-minute buckets first then raw samples, as
+     * {ts, value, width} rows; width is the seconds a value covers.
+     */
+    public long[][] read(long seriesId, long from) throws SQLException {
+        List<long[]> rows = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT ts, value, width FROM samples_5m WHERE series_id = ? AND ts >= ? " +
+                        "UNION ALL SELECT ts, value, width FROM samples WHERE series_id = ? AND ts >= ? ORDER BY 1")) {
+            ps.setLong(1, seriesId);
+            ps.setLong(2, from);
+            ps.setLong(3, seriesId);
+            ps.setLong(4, from);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)});
+                }
+            }
+        }
+        return rows.toArray(new long[0][]);
+    }
+
+    public Map<String, String[]> digests() throws SQLException {
+        Map<String, String[]> result = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT digest, schema_name, digest_text FROM digests")) {
+            while (rs.next()) {
+                result.put(rs.getString(1), new String[]{rs.getString(2), rs.getString(3)});
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.dyrnq.dbops.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MySQL GTID set ({@code uuid:1-5:7,uuid2[:tag]:1-100}) held as sorted, merged interval arrays per source,
+ * so subtraction and counting are a linear merge over the intervals.
+ */
+public class GtidSet {
+    private static final long[] EMPTY = new long[0];
+    // per source uuid (and tag): flattened closed intervals [start0, end0, start1, end1, ...]
+    private final Map<String, long[]> intervals = new TreeMap<>();
+
+    public static GtidSet parse(String text) {
+        GtidSet set = new GtidSet();
+        if (text == null) {
+            return set;
+        }
+        String compact = text.replaceAll("\\s+", "");
+        if (compact.isEmpty()) {
+            return set;
+        }
+        // raw intervals per key; sorted and merged once at the end, so parsing stays linear for sorted input
+        Map<String, long[]> raw = new TreeMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (String member : compact.split(",")) {
+            if (member.isEmpty()) {
+                continue;
+            }
+            String[] parts = member.split(":");
+            String key = parts[0].toLowerCase();
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.isEmpty()) {
+                    continue;
+                }
+                if (!Character.isDigit(part.charAt(0))) {
+                    // tagged GTIDs (8.3+): uuid:tag:1-5
+                    key = parts[0].toLowerCase() + ":" + part;
+                    continue;
+                }
+                int dash = part.indexOf('-');
+                long start = Long.parseLong(dash < 0 ? part : part.substring(0, dash));
+                long end = dash < 0 ? start : Long.parseLong(part.substring(dash + 1));
+                int size = sizes.getOrDefault(key, 0);
+                long[] flat = raw.getOrDefault(key, EMPTY);
+                if (size + 2 > flat.length) {
+                    flat = Arrays.copyOf(flat, Math.max(8, flat.length * 2));
+                    raw.put(key, flat);
+                }
+                flat[size] = start;
+                flat[size + 1] = end;
+                sizes.put(key, size + 2);
+            }
+        }
+        // the server prints sets already sorted, so normalize is normally a single check
+        raw.forEach((key, flat) -> set.intervals.put(key, normalize(Arrays.copyOf(flat, sizes.get(key)))));
+        return set;
+    }
+
+    private static long[] normalize(long[] flat) {
+        int n = flat.length / 2;
+        boolean sorted = true;
+        for (int i = 1; i < n && sorted; i++) {
+            sorted = flat[2 * i] > flat[2 * i - 1] + 1;
+        }
+        if (sorted) {
+            return flat;
+        }
+        long[][] pairs = new long[n][];
+        for (int i = 0; i < n; i++) {
+            pairs[i] = new long[]{flat[2 * i], flat[2 * i + 1]};
+        }
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        long[] merged = new long[flat.length];
+        int m = 0;
+        for (long[] p : pairs) {
+            if (m > 0 && p[0] <= merged[m - 1] + 1) {
+                merged[m - 1] = Math.max(merged[m - 1], p[1]);
+            } else {
+                merged[m++] = p[0];
+                merged[m++] = p[1];
+            }
+        }
+        return Arrays.copyOf(merged, m);
+    }
+
+    /**
+     * Transactions in this set that are missing from {@code other}.
+     */
+    public GtidSet subtract(GtidSet other) {
+        GtidSet result = new GtidSet();
+        for (Map.Entry<String, long[]> entry : intervals.entrySet()) {
+            long[] a = entry.getValue();
+            long[] b = other.intervals.getOrDefault(entry.getKey(), EMPTY);
+            long[] out = new long[a.length + b.length];
+            int m = 0;
+            int j = 0;
+            for (int i = 0; i < a.length; i += 2) {
+                long start = a[i];
+                long end = a[i + 1];
+                while (j < b.length && b[j + 1] < start) {
+                    j += 2;
+                }
+                int k = j;
+                while (k < b.length && b[k] <= end && start <= end) {
+                    if (b[k] > start) {
+                        if (m == out.length) {
+                            out = Arrays.copyOf(out, out.length * 2 + 2);
+                        }
+                        out[m++] = start;
+                        out[m++] = b[k] - 1;
+                    }
+                    start = Math.max(start, b[k + 1] + 1);
+                    k += 2;
+                }
+                if (start <= end) {
+                    if (m == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2 + 2);
+                    }
+                    out[m++] = start;
+                    out[m++] = end;
+                }
+            }
+            if (m > 0) {
+                result.intervals.put(entry.getKey(), Arrays.copyOf(out, m));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of transactions in the set.
+     */
+    public long count() {
+        long count = 0;
+        for (long[] a : intervals.values()) {
+            for (int i = 0; i < a.length; i += 2) {
+                count += a[i + 1] - a[i] + 1;
+            }
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : intervals.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey());
+            long[] a = entry.getValue();
+            for (int i = 0; i < a.length; i += 2) {
+                sb.append(':').append(a[i]);
+                if (a[i + 1] != a[i]) {
+                    sb.append('-').append(a[i + 1]);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
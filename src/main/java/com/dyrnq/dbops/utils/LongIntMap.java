@@ -0,0 +1,82 @@
+package com.dyrnq.dbops.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from {@code long} keys to non-negative {@code int} values, without boxing.
+ * Used to index row arrays by a 64-bit hash.
+ */
+public class LongIntMap {
+    private static final int MISSING = -1;
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // murmur3 finalizer spreads hashes whose low bits are not random
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    /**
+     * @return the value for key, or -1 when absent
+     */
+    public int get(long key) {
+        int i = slot(key);
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must not be negative: " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(keys.length * 2);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != MISSING) {
+                    put(oldKeys[j], oldValues[j]);
+                }
+            }
+        }
+        int i = slot(key);
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,189 @@
+package com.dyrnq.dbops.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies a statement by what it does when executed, so commands that must not change a server can
+ * filter what they run. Literals and comments are ignored, versioned comments count as code, and a
+ * {@code WITH} is classified by the statement that follows its CTE list.
+ */
+public class SqlClassifier {
+    private static final Set<String> STATEMENTS = Set.of("SELECT", "TABLE", "VALUES", "INSERT", "REPLACE", "UPDATE", "DELETE");
+    private static final Set<String> QUERIES = Set.of("SELECT", "TABLE", "VALUES");
+    private static final Set<String> SESSION = Set.of("SHOW", "USE", "COMMIT", "ROLLBACK", "DO");
+    // SET forms that change the server, an account or another session rather than the current session
+    private static final Set<String> NOT_SESSION_SET = Set.of("GLOBAL", "PERSIST", "PERSIST_ONLY", "PASSWORD", "DEFAULT", "RESOURCE");
+    private static final Pattern NOT_SESSION_VARIABLE = Pattern.compile("^@@(GLOBAL|PERSIST|PERSIST_ONLY)\\.", Pattern.CASE_INSENSITIVE);
+    private static final Pattern INTO_FILE = Pattern.compile("\\bINTO\\s+(OUTFILE|DUMPFILE)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LOCKING = Pattern.compile("\\bFOR\\s+(UPDATE|SHARE)\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The statement that executes: {@code SELECT}, {@code UPDATE}, ... for a {@code WITH}, otherwise the
+     * first keyword, upper case; empty when there is none.
+     */
+    public static String statementType(String sql) {
+        return statementType(words(code(sql)));
+    }
+
+    /**
+     * Whether executing the statement leaves data, schema, accounts and server settings unchanged:
+     * queries without {@code INTO OUTFILE}, SHOW, EXPLAIN (not ANALYZE of a write), USE, transaction
+     * control and session variable assignments. Stored functions called by a query are not inspected.
+     */
+    public static boolean isReadOnly(String sql) {
+        String code = code(sql);
+        if (code.indexOf(';') >= 0) {
+            // more than one statement
+            return false;
+        }
+        return isReadOnly(code, words(code));
+    }
+
+    /**
+     * Whether a query takes row locks ({@code FOR UPDATE}, {@code FOR SHARE}, {@code LOCK IN SHARE MODE}).
+     */
+    public static boolean isLocking(String sql) {
+        return LOCKING.matcher(code(sql)).find();
+    }
+
+    /**
+     * A query that neither writes nor locks rows, safe to run repeatedly on a production server.
+     */
+    public static boolean isPlainQuery(String sql) {
+        return isReadOnly(sql) && QUERIES.contains(statementType(sql)) && !isLocking(sql);
+    }
+
+    private static boolean isReadOnly(String code, List<String> words) {
+        if (words.isEmpty()) {
+            return false;
+        }
+        String first = words.get(0);
+        String second = words.size() > 1 ? words.get(1) : "";
+        return switch (first) {
+            case "SELECT", "TABLE", "VALUES", "WITH" -> QUERIES.contains(statementType(words)) && !INTO_FILE.matcher(code).find();
+            case "EXPLAIN", "DESC", "DESCRIBE" -> !"ANALYZE".equals(second) || isReadOnly(code, analyzed(words));
+            case "BEGIN" -> words.size() == 1 || words.size() == 2 && "WORK".equals(second);
+            case "START" -> "TRANSACTION".equals(second);
+            case "SET" -> isSessionSet(code);
+            default -> SESSION.contains(first);
+        };
+    }
+
+    /**
+     * The words of the statement that {@code EXPLAIN ANALYZE [FORMAT = x]} executes.
+     */
+    private static List<String> analyzed(List<String> words) {
+        int i = 2;
+        if (i < words.size() && "FORMAT".equals(words.get(i))) {
+            i += 2;
+        }
+        return words.subList(Math.min(i, words.size()), words.size());
+    }
+
+    private static String statementType(List<String> words) {
+        if (words.isEmpty()) {
+            return "";
+        }
+        if (!"WITH".equals(words.get(0))) {
+            return words.get(0);
+        }
+        for (String word : words) {
+            if (STATEMENTS.contains(word)) {
+                return word;
+            }
+        }
+        return "WITH";
+    }
+
+    /**
+     * Every assignment of the SET must target the session: no GLOBAL/PERSIST scope, no @@global. variable,
+     * and not SET PASSWORD, SET DEFAULT ROLE or SET RESOURCE GROUP.
+     */
+    private static boolean isSessionSet(String code) {
+        String body = code.substring(code.toUpperCase(Locale.ROOT).indexOf("SET") + 3);
+        for (String assignment : topLevel(body, ',')) {
+            String target = assignment.trim().split("[\\s=]+", 2)[0];
+            if (NOT_SESSION_SET.contains(target.toUpperCase(Locale.ROOT)) || NOT_SESSION_VARIABLE.matcher(target).find()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The statement with literals and comments removed, versioned comments unwrapped and the trailing
+     * semicolon dropped.
+     */
+    private static String code(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String code = SqlNormalizer.stripLiteralsAndComments(sql, true).trim();
+        while (code.endsWith(";")) {
+            code = code.substring(0, code.length() - 1).trim();
+        }
+        return code;
+    }
+
+    /**
+     * Upper-case words outside parentheses and backquotes; a leading parenthesis of {@code (SELECT ...)}
+     * does not count as nesting.
+     */
+    private static List<String> words(String code) {
+        List<String> words = new ArrayList<>();
+        int start = 0;
+        while (start < code.length() && (code.charAt(start) == '(' || Character.isWhitespace(code.charAt(start)))) {
+            start++;
+        }
+        int depth = 0;
+        int n = code.length();
+        for (int i = start; i < n; i++) {
+            char c = code.charAt(i);
+            if (c == '`') {
+                int end = code.indexOf('`', i + 1);
+                i = end < 0 ? n : end;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (depth == 0 && (Character.isLetter(c) || c == '_')) {
+                int end = i;
+                while (end < n && (Character.isLetterOrDigit(code.charAt(end)) || code.charAt(end) == '_')) {
+                    end++;
+                }
+                // part of @var or @@scope.name, not a keyword
+                if (i == 0 || code.charAt(i - 1) != '@' && code.charAt(i - 1) != '.') {
+                    words.add(code.substring(i, end).toUpperCase(Locale.ROOT));
+                }
+                i = end - 1;
+            }
+        }
+        return words;
+    }
+
+    private static List<String> topLevel(String code, char separator) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int from = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == '`') {
+                int end = code.indexOf('`', i + 1);
+                i = end < 0 ? code.length() - 1 : end;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (c == separator && depth == 0) {
+                parts.add(code.substring(from, i));
+                from = i + 1;
+            }
+        }
+        parts.add(code.substring(from));
+        return parts;
+    }
+}
@@ -0,0 +1,104 @@
+package com.dyrnq.dbops.utils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a statement to its shape: literals become {@code ?}, IN lists collapse, whitespace is folded.
+ */
+public class SqlNormalizer {
+    private static final Pattern NUMBERS = Pattern.compile("(?<![\\w`])-?(?:0x[0-9a-fA-F]+|\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?)\\b");
+    private static final Pattern IN_LISTS = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern VALUES_LISTS = Pattern.compile("(\\(\\?\\))(?:\\s*,\\s*\\(\\?(?:\\s*,\\s*\\?)*\\))+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    public static String normalize(String sql) {
+        return normalize(sql, 0);
+    }
+
+    /**
+     * @param maxLength truncate the result to this many characters, 0 keeps it whole
+     */
+    public static String normalize(String sql, int maxLength) {
+        if (sql == null) {
+            return "";
+        }
+        String s = stripLiteralsAndComments(sql, false);
+        s = NUMBERS.matcher(s).replaceAll("?");
+        s = IN_LISTS.matcher(s).replaceAll("(?)");
+        s = VALUES_LISTS.matcher(s).replaceAll("$1");
+        s = SPACES.matcher(s).replaceAll(" ").trim();
+        if (s.endsWith(";")) {
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        if (maxLength > 0 && s.length() > maxLength) {
+            s = s.substring(0, maxLength);
+        }
+        return s;
+    }
+
+    /**
+     * Replaces quoted strings with {@code ?} and comments with a space in one pass, so comment markers inside
+     * literals and quotes inside comments are left alone. Backquoted identifiers are kept.
+     *
+     * @param unwrapVersioned keep the body of versioned comments such as {@code /*!80000 ...}, which MySQL executes
+     */
+    static String stripLiteralsAndComments(String sql, boolean unwrapVersioned) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int n = sql.length();
+        boolean inVersioned = false;
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            char next = i + 1 < n ? sql.charAt(i + 1) : 0;
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = i + 1;
+                while (end < n) {
+                    char e = sql.charAt(end);
+                    if (e == '\\' && c != '`') {
+                        end += 2;
+                        continue;
+                    }
+                    if (e == c) {
+                        // a doubled quote is an escaped quote
+                        if (end + 1 < n && sql.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end, n - 1);
+                if (c == '`') {
+                    out.append(sql, i, end + 1);
+                } else {
+                    out.append('?');
+                }
+                i = end;
+            } else if (c == '#' || c == '-' && next == '-' && (i + 2 == n || Character.isWhitespace(sql.charAt(i + 2)))) {
+                // MySQL only starts a -- comment when a space or control character follows
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? n : end;
+                out.append(' ');
+            } else if (c == '/' && next == '*' && unwrapVersioned && i + 2 < n && sql.charAt(i + 2) == '!') {
+                // skip the marker and the optional version, the body is scanned as code
+                i += 2;
+                while (i + 1 < n && Character.isDigit(sql.charAt(i + 1))) {
+                    i++;
+                }
+                inVersioned = true;
+                out.append(' ');
+            } else if (c == '*' && next == '/' && inVersioned) {
+                i++;
+                inVersioned = false;
+                out.append(' ');
+            } else if (c == '/' && next == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 1;
+                out.append(' ');
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
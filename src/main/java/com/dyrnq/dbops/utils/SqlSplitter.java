@@ -0,0 +1,71 @@
+package com.dyrnq.dbops.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a script into statements on {@code ;}, ignoring semicolons inside quotes, backticks and comments.
+ */
+public class SqlSplitter {
+
+    public static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        if (script == null) {
+            return statements;
+        }
+        StringBuilder current = new StringBuilder();
+        int n = script.length();
+        for (int i = 0; i < n; i++) {
+            char c = script.charAt(i);
+            char next = i + 1 < n ? script.charAt(i + 1) : 0;
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = i + 1;
+                while (end < n) {
+                    char e = script.charAt(end);
+                    if (e == '\\' && c != '`') {
+                        end += 2;
+                        continue;
+                    }
+                    if (e == c) {
+                        // a doubled quote is an escaped quote
+                        if (end + 1 < n && script.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end, n - 1);
+                current.append(script, i, end + 1);
+                i = end;
+            } else if (c == '#' || c == '-' && next == '-' && (i + 2 == n || Character.isWhitespace(script.charAt(i + 2)))) {
+                // MySQL only starts a -- comment when a space or control character follows
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? n : end;
+                current.append('\n');
+            } else if (c == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                end = end < 0 ? n - 1 : end + 1;
+                // optimizer hints and versioned comments are part of the statement
+                char kind = i + 2 < n ? script.charAt(i + 2) : 0;
+                current.append(kind == '+' || kind == '!' ? script.substring(i, end + 1) : " ");
+                i = end;
+            } else if (c == ';') {
+                add(statements, current);
+            } else {
+                current.append(c);
+            }
+        }
+        add(statements, current);
+        return statements;
+    }
+
+    private static void add(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+}
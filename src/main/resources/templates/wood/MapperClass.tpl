@@ -0,0 +1,174 @@
+package ${mapper_package_name};
+
+<#list imports as i>
+import ${i};
+</#list>
+import ${full_domain};
+import org.noear.wood.DbContext;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ${tableComment}
+ */
+@Component
+public class ${mapper} {
+    public static final String TABLE = "`${table}`";
+    /**
+     * All columns in table order, aliased to the ${domain} field names.
+     */
+    public static final String SELECT_COLUMNS = "<#list fieldList as f>`${f.columnName}` AS ${f.fieldName}<#sep>, </#sep></#list>";
+    public static final String INSERT_COLUMNS = "<#list fieldList as f>`${f.columnName}`<#sep>, </#sep></#list>";
+    private static final String ROW_PLACEHOLDERS = "(<#list fieldList as f>?<#sep>, </#sep></#list>)";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    ${autowired}
+    DbContext db;
+
+    private static void addValues(List<Object> args, ${domain} m) {
+<#list fieldList as f>
+        args.add(m.get${f.fieldName?cap_first}());
+</#list>
+    }
+
+    /**
+     * Insert rows with multi-row INSERT statements of at most batchSize rows each.
+     */
+    public int insertBatch(Collection<${domain}> list, int batchSize) throws SQLException {
+        return executeBatch("INSERT INTO " + TABLE + " (" + INSERT_COLUMNS + ") VALUES ", "", list, batchSize);
+    }
+
+    public int insertBatch(Collection<${domain}> list) throws SQLException {
+        return insertBatch(list, DEFAULT_BATCH_SIZE);
+    }
+<#if nonPkFieldList?has_content>
+
+    /**
+     * Insert rows, updating the existing ones on a primary or unique key conflict.
+     */
+    public int upsertBatch(Collection<${domain}> list, int batchSize) throws SQLException {
+        return executeBatch("INSERT INTO " + TABLE + " (" + INSERT_COLUMNS + ") VALUES ",
+                " ON DUPLICATE KEY UPDATE <#list nonPkFieldList as f>`${f.columnName}` = VALUES(`${f.columnName}`)<#sep>, </#sep></#list>", list, batchSize);
+    }
+
+    public int upsertBatch(Collection<${domain}> list) throws SQLException {
+        return upsertBatch(list, DEFAULT_BATCH_SIZE);
+    }
+</#if>
+
+    private int executeBatch(String head, String tail, Collection<${domain}> list, int batchSize) throws SQLException {
+        if (list == null || list.isEmpty()) {
+            return 0;
+        }
+        int size = Math.max(1, batchSize);
+        int affected = 0;
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>(Math.min(list.size(), size) * ${fieldList?size});
+        Iterator<${domain}> it = list.iterator();
+        while (it.hasNext()) {
+            sql.setLength(0);
+            args.clear();
+            sql.append(head);
+            int rows = 0;
+            while (it.hasNext() && rows < size) {
+                if (rows++ > 0) {
+                    sql.append(", ");
+                }
+                sql.append(ROW_PLACEHOLDERS);
+                addValues(args, it.next());
+            }
+            sql.append(tail);
+            affected += db.exe(sql.toString(), args.toArray());
+        }
+        return affected;
+    }
+<#if pkList?has_content>
+
+    private static final String KEYSET_ORDER = " ORDER BY <#list pkList as f>`${f.columnName}`<#sep>, </#sep></#list>";
+<#if pkList?size == 1>
+    private static final String KEYSET_AFTER = " WHERE `${pkList[0].columnName}` > ?";
+<#else>
+    private static final String KEYSET_AFTER = " WHERE (<#list pkList as f>`${f.columnName}`<#sep>, </#sep></#list>) > (<#list pkList as f>?<#sep>, </#sep></#list>)";
+</#if>
+
+    public ${domain} selectByPk(<#list pkList as f>${f.fieldType} ${f.fieldName}<#sep>, </#sep></#list>) throws SQLException {
+        List<${domain}> list = db.sql("SELECT " + SELECT_COLUMNS + " FROM " + TABLE + " WHERE <#list pkList as f>`${f.columnName}` = ?<#sep> AND </#sep></#list> LIMIT 1",
+                <#list pkList as f>${f.fieldName}<#sep>, </#sep></#list>).getList(${domain}.class);
+        return list.isEmpty() ? null : list.get(0);
+    }
+<#if pkList?size == 1>
+
+    /**
+     * Load many rows by primary key with one IN query per batch instead of one query per key.
+     */
+    public List<${domain}> selectByPks(Collection<${pkList[0].boxedFieldType}> keys) throws SQLException {
+        List<${domain}> result = new ArrayList<>(keys.size());
+        List<Object> args = new ArrayList<>();
+        Iterator<${pkList[0].boxedFieldType}> it = keys.iterator();
+        while (it.hasNext()) {
+            args.clear();
+            StringBuilder in = new StringBuilder();
+            while (it.hasNext() && args.size() < DEFAULT_BATCH_SIZE) {
+                in.append(args.isEmpty() ? "?" : ", ?");
+                args.add(it.next());
+            }
+            result.addAll(db.sql("SELECT " + SELECT_COLUMNS + " FROM " + TABLE + " WHERE `${pkList[0].columnName}` IN (" + in + ")", args.toArray()).getList(${domain}.class));
+        }
+        return result;
+    }
+</#if>
+
+    /**
+     * Keyset pagination over the primary key: the page of rows following {@code after}, the first page when it is null.
+     */
+    public List<${domain}> selectPageAfter(${domain} after, int limit) throws SQLException {
+        if (after == null) {
+            return db.sql("SELECT " + SELECT_COLUMNS + " FROM " + TABLE + KEYSET_ORDER + " LIMIT ?", limit).getList(${domain}.class);
+        }
+        return db.sql("SELECT " + SELECT_COLUMNS + " FROM " + TABLE + KEYSET_AFTER + KEYSET_ORDER + " LIMIT ?",
+                <#list pkList as f>after.get${f.fieldName?cap_first}(), </#list>limit).getList(${domain}.class);
+    }
+
+    /**
+     * Iterate over every row in primary key order, holding at most fetchSize rows in memory.
+     *
+     * @return the number of rows visited
+     */
+    public long forEach(int fetchSize, Consumer<${domain}> consumer) throws SQLException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetchSize must be positive: " + fetchSize);
+        }
+        long count = 0;
+        ${domain} last = null;
+        while (true) {
+            List<${domain}> page = selectPageAfter(last, fetchSize);
+            page.forEach(consumer);
+            count += page.size();
+            if (page.size() < fetchSize) {
+                return count;
+            }
+            last = page.get(page.size() - 1);
+        }
+    }
+</#if>
+<#list uniqueIndexList as u>
+
+    /**
+     * Lookup by unique index ${u.indexName}.
+     */
+    public ${domain} selectBy${u.methodSuffix}(<#list u.fieldList as f>${f.fieldType} ${f.fieldName}<#sep>, </#sep></#list>) throws SQLException {
+        List<${domain}> list = db.sql("SELECT " + SELECT_COLUMNS + " FROM " + TABLE + " WHERE <#list u.fieldList as f>`${f.columnName}` = ?<#sep> AND </#sep></#list> LIMIT 1",
+                <#list u.fieldList as f>${f.fieldName}<#sep>, </#sep></#list>).getList(${domain}.class);
+        return list.isEmpty() ? null : list.get(0);
+    }
+</#list>
+
+    ${customize_begin}
+    ${customize_content!}
+    ${customize_end}
+}
@@ -0,0 +1,44 @@
+package ${package_name};
+
+<#if openapi>
+import io.swagger.v3.oas.annotations.media.Schema;
+</#if>
+
+import java.io.Serializable;
+
+/**
+ * ${tableComment}
+ */
+<#if openapi>
+@Schema(description = "${tableComment?j_string}")
+</#if>
+public class ${domain} implements Serializable {
+    public static final String TABLE_NAME = "${table}";
+<#list fieldList as f>
+    public static final String ${f.finalFieldName} = "${f.columnName}";
+</#list>
+
+<#list fieldList as f>
+    /**
+     * ${f.fieldComment!}
+     */
+<#if openapi>
+    @Schema(description = "${(f.fieldComment!)?j_string}")
+</#if>
+    private ${f.fieldType} ${f.fieldName};
+</#list>
+<#list fieldList as f>
+
+    public ${f.fieldType} get${f.fieldName?cap_first}() {
+        return ${f.fieldName};
+    }
+
+    public void set${f.fieldName?cap_first}(${f.fieldType} ${f.fieldName}) {
+        this.${f.fieldName} = ${f.fieldName};
+    }
+</#list>
+
+    ${customize_begin}
+    ${customize_content!}
+    ${customize_end}
+}
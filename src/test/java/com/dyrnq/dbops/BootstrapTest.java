@@ -0,0 +1,69 @@
+package com.dyrnq.dbops;
+
+import org.junit.jupiter.api.Test;
+import org.noear.solon.core.Props;
+import picocli.CommandLine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BootstrapTest {
+    // descriptions of options whose values are datasource names
+    private static final Pattern NAMES_DATASOURCES = Pattern.compile("^(source |target |replica )?datasource( name|s|[;,]|$)");
+
+    private static Props config(String... names) {
+        Props cfg = new Props();
+        for (String name : names) {
+            cfg.setProperty(Bootstrap.DATASOURCES_PREFIX + name + ".jdbcUrl", "jdbc:mysql://" + name + "/");
+        }
+        return cfg;
+    }
+
+    private static List<String> kept(String... args) {
+        Props cfg = config("primary", "r1", "r2", "other");
+        Bootstrap bootstrap = Bootstrap.plan(new CommandLine(new Main()), args);
+        bootstrap.apply(cfg);
+        List<String> names = new ArrayList<>(Bootstrap.configuredDatasources(cfg));
+        names.sort(null);
+        return names;
+    }
+
+    @Test
+    void keepsReplicasAndSource() {
+        assertEquals(List.of("primary", "r1", "r2"), kept("replicas", "-R", "r1,r2", "-S", "primary"));
+        assertEquals(List.of("r1"), kept("replicas", "--replica", "r1"));
+    }
+
+    @Test
+    void keepsSourceAndTarget() {
+        assertEquals(List.of("other", "primary"), kept("schema-diff", "--source-ds", "primary", "--target-ds", "other"));
+    }
+
+    @Test
+    void keepsEverythingForEmptyList() {
+        assertEquals(List.of("other", "primary", "r1", "r2"), kept("serve"));
+        assertEquals(Bootstrap.Mode.NONE, Bootstrap.plan(new CommandLine(new Main()), new String[]{"version"}).mode());
+    }
+
+    @Test
+    void everyDatasourceOptionIsMarked() {
+        CommandLine main = new CommandLine(new Main());
+        List<String> unmarked = new ArrayList<>();
+        main.getSubcommands().forEach((name, sub) -> {
+            if (Bootstrap.NO_CONTEXT.contains(name) || Bootstrap.CONFIG_ONLY.contains(name) || Bootstrap.FULL_CONTEXT.contains(name)) {
+                return;
+            }
+            for (CommandLine.Model.OptionSpec option : sub.getCommandSpec().options()) {
+                String description = String.join(" ", option.description());
+                if (NAMES_DATASOURCES.matcher(description).find() && !Bootstrap.isDatasourceOption(option)) {
+                    unmarked.add(name + " " + option.longestName());
+                }
+            }
+        });
+        assertTrue(unmarked.isEmpty(), "datasource options without @DatasourceOption: " + unmarked);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dyrnq.dbops.command;
+
+import com.dyrnq.dbops.ddl.TargetDialect;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SchemaToDorisTest {
+    private static final String SOURCE = """
+            CREATE TABLE `orders` (
+              `id` bigint unsigned NOT NULL AUTO_INCREMENT,
+              `amount` decimal(12,4) unsigned NOT NULL DEFAULT '0.0000',
+              `created_at` timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+              `updated_at` datetime DEFAULT NULL ON UPDATE CURRENT_TIMESTAMP,
+              `qty` mediumint(9) DEFAULT NULL,
+              `ratio` double(8,3) DEFAULT NULL,
+              `note` text,
+              `status` enum('new','paid') DEFAULT NULL,
+              `flag` tinyint(1) DEFAULT NULL,
+              `code` char(8) NOT NULL,
+              PRIMARY KEY (`id`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4""";
+    // the created column line: name, type, nullability
+    private static final Pattern CREATED_COLUMN = Pattern.compile("^\\s*`([^`]+)` (\\w+(?:\\([^)]*\\))?)(.*?),?$");
+
+    private static Map<String, String> column(String name, String dataType, String columnType, String nullable) {
+        Map<String, String> column = new LinkedHashMap<>();
+        column.put("COLUMN_NAME", name);
+        column.put("DATA_TYPE", dataType);
+        column.put("COLUMN_TYPE", columnType);
+        column.put("IS_NULLABLE", nullable);
+        return column;
+    }
+
+    private static List<Map<String, String>> sourceColumns() {
+        return List.of(
+                column("id", "bigint", "bigint unsigned", "NO"),
+                column("amount", "decimal", "decimal(12,4) unsigned", "NO"),
+                column("created_at", "timestamp", "timestamp(3)", "NO"),
+                column("updated_at", "datetime", "datetime", "YES"),
+                column("qty", "mediumint", "mediumint(9)", "YES"),
+                column("ratio", "double", "double(8,3)", "YES"),
+                column("note", "text", "text", "YES"),
+                column("status", "enum", "enum('new','paid')", "YES"),
+                column("flag", "tinyint", "tinyint(1)", "YES"),
+                column("code", "char", "char(8)", "NO"));
+    }
+
+    /**
+     * The columns the target reports for a table created from the statement.
+     */
+    private static List<Map<String, String>> createdColumns(String create) {
+        List<Map<String, String>> columns = new ArrayList<>();
+        for (String line : create.split("\n")) {
+            Matcher m = CREATED_COLUMN.matcher(line);
+            if (m.matches()) {
+                columns.add(column(m.group(1), "", m.group(2), m.group(3).contains("NOT NULL") ? "NO" : "YES"));
+            }
+        }
+        return columns;
+    }
+
+    private static void assertCreatedTableIsInSync(String dialect) throws Exception {
+        SchemaToDoris command = new SchemaToDoris();
+        command.dialect = TargetDialect.of(dialect);
+        String create = command.convertToDorisOlapTable(SOURCE, "orders", "dw", "orders", Map.of());
+        List<Map<String, String>> created = createdColumns(create);
+        assertEquals(sourceColumns().size(), created.size(), create);
+
+        List<String> statements = new ArrayList<>();
+        command.syncColumns("`dw`.`orders`", "orders", sourceColumns(), created, statements);
+        assertEquals(List.of(), statements);
+        assertEquals(List.of(), command.heavyChanges);
+    }
+
+    @Test
+    void createdDorisTableNeedsNoSync() throws Exception {
+        assertCreatedTableIsInSync("doris");
+    }
+
+    @Test
+    void createdStarRocksTableNeedsNoSync() throws Exception {
+        assertCreatedTableIsInSync("starrocks");
+    }
+}
@@ -0,0 +1,42 @@
+package com.dyrnq.dbops.ddl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DdlApplierTest {
+
+    @Test
+    void altersRunAfterTablesAndAreReportedApplied(@TempDir Path dir) throws Exception {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + dir.resolve("ddl.db"));
+        DdlApplier applier = new DdlApplier(dataSource, 2, 0, 0, 0);
+        List<DdlApplier.Result> results = applier.apply(List.of(
+                "ALTER TABLE `t` ADD COLUMN `b` int;",
+                "CREATE TABLE `t` (`a` int);",
+                "CREATE TABLE `existing` (`a` int);"), Set.of("existing"));
+
+        assertEquals("ALTER", results.get(0).getKind());
+        assertEquals("t", results.get(0).getName());
+        assertEquals(DdlApplier.Status.APPLIED, results.get(0).getStatus());
+        assertEquals("TABLE", results.get(1).getKind());
+        assertEquals(DdlApplier.Status.CREATED, results.get(1).getStatus());
+        assertEquals(DdlApplier.Status.SKIPPED, results.get(2).getStatus());
+    }
+
+    @Test
+    void lockWaitTimeoutIsNotTransient() {
+        assertFalse(DdlApplier.isTransient(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        assertTrue(DdlApplier.isTransient(new SQLException("Deadlock found", "40001", 1213)));
+        assertTrue(DdlApplier.isTransient(new SQLException("errCode = 2, detailMessage = FE is not ready", "HY000", 1105)));
+    }
+}
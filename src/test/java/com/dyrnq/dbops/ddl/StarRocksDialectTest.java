@@ -0,0 +1,28 @@
+package com.dyrnq.dbops.ddl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StarRocksDialectTest {
+    private final StarRocksDialect dialect = new StarRocksDialect();
+
+    @Test
+    void keysOnMysqlPrimaryKey() {
+        List<String> keys = dialect.keyColumns(List.of("a", "id", "b"), List.of("id"));
+        assertEquals(List.of("id"), keys);
+        assertEquals("PRIMARY KEY(`id`)", dialect.tableClauses(keys, true, null, Map.of()).get(1));
+    }
+
+    @Test
+    void duplicateKeyWithoutPrimaryKey() {
+        List<String> keys = dialect.keyColumns(List.of("a", "b"), List.of());
+        List<String> clauses = dialect.tableClauses(keys, false, null, Map.of());
+        assertEquals("DUPLICATE KEY(`a`)", clauses.get(1));
+        assertTrue(clauses.contains("DISTRIBUTED BY HASH(`a`) BUCKETS 10"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.dyrnq.dbops.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricWriterTest {
+
+    private static String text(MetricWriter... writers) {
+        StringBuilder out = new StringBuilder();
+        MetricWriter.merge(List.of(writers), out);
+        return out.toString();
+    }
+
+    @Test
+    void escapesLabelValues() {
+        MetricWriter w = new MetricWriter("a\"b");
+        w.gauge("m", "help", "name", "c:\\tmp\nx", 1);
+        assertEquals("# HELP m help\n# TYPE m gauge\nm{datasource=\"a\\\"b\",name=\"c:\\\\tmp\\nx\"} 1\n", text(w));
+    }
+
+    @Test
+    void nullLabelValueIsEmpty() {
+        MetricWriter w = new MetricWriter("db");
+        w.gauge("m", "help", "channel", null, 0);
+        assertTrue(text(w).contains("m{datasource=\"db\",channel=\"\"} 0\n"));
+    }
+
+    @Test
+    void formatsValues() {
+        MetricWriter w = new MetricWriter("db");
+        w.gauge("whole", "h", 42);
+        w.gauge("negative", "h", -3);
+        w.gauge("fraction", "h", 0.25);
+        w.gauge("huge", "h", 1e20);
+        w.gauge("nan", "h", Double.NaN);
+        w.gauge("inf", "h", Double.POSITIVE_INFINITY);
+        w.gauge("ninf", "h", Double.NEGATIVE_INFINITY);
+        String text = text(w);
+        assertTrue(text.contains("whole{datasource=\"db\"} 42\n"));
+        assertTrue(text.contains("negative{datasource=\"db\"} -3\n"));
+        assertTrue(text.contains("fraction{datasource=\"db\"} 0.25\n"));
+        assertTrue(text.contains("huge{datasource=\"db\"} 1.0E20\n"));
+        assertTrue(text.contains("nan{datasource=\"db\"} NaN\n"));
+        assertTrue(text.contains("inf{datasource=\"db\"} +Inf\n"));
+        assertTrue(text.contains("ninf{datasource=\"db\"} -Inf\n"));
+    }
+
+    @Test
+    void mergesFamiliesAcrossDatasources() {
+        MetricWriter a = new MetricWriter("a");
+        a.gauge("up", "answered", 1);
+        a.untyped("status", "status values", "name", "Threads_connected", 5);
+        MetricWriter b = new MetricWriter("b");
+        b.gauge("up", "answered", 0);
+        assertEquals("# HELP up answered\n# TYPE up gauge\n"
+                + "up{datasource=\"a\"} 1\nup{datasource=\"b\"} 0\n"
+                + "# HELP status status values\n# TYPE status untyped\n"
+                + "status{datasource=\"a\",name=\"Threads_connected\"} 5\n", text(a, b));
+    }
+
+    @Test
+    void twoLabels() {
+        MetricWriter w = new MetricWriter("db");
+        w.gauge("threads", "h", "command", "Query", "state", "Sending data", 3);
+        assertTrue(text(w).contains("threads{datasource=\"db\",command=\"Query\",state=\"Sending data\"} 3\n"));
+    }
+}
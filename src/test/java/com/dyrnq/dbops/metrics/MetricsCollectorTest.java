@@ -0,0 +1,71 @@
+package com.dyrnq.dbops.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Scrapes an embedded SQLite datasource end to end; the MySQL-only statements are skipped for it, so the
+ * scrape covers scheduling, caching, failure reporting and the merged exposition format.
+ */
+class MetricsCollectorTest {
+
+    private static DataSource sqlite(Path dir) {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + dir.resolve("metrics.db"));
+        return dataSource;
+    }
+
+    @Test
+    void scrapesSqliteAndReportsMissingDatasourceDown(@TempDir Path dir) {
+        Map<String, DataSource> configured = Map.of("lite", sqlite(dir));
+        try (MetricsCollector collector = new MetricsCollector(List.of("lite", "missing"), configured::get, 5000, 0)) {
+            String text = collector.scrape();
+            assertTrue(text.contains("# TYPE dbops_up gauge\n"));
+            assertTrue(text.contains("dbops_up{datasource=\"lite\"} 1\n"));
+            assertTrue(text.contains("dbops_up{datasource=\"missing\"} 0\n"));
+            assertTrue(text.contains("dbops_collect_failed{datasource=\"missing\",reason=\"error\"} 1\n"));
+            assertTrue(text.contains("dbops_collect_duration_seconds{datasource=\"lite\"} "));
+            // HELP and TYPE once per family even with two datasources in it
+            assertEquals(text.indexOf("# HELP dbops_up "), text.lastIndexOf("# HELP dbops_up "));
+            assertFalse(text.contains("mysql_global_status"));
+        }
+    }
+
+    @Test
+    void servesCachedResultWithinTtl(@TempDir Path dir) {
+        int[] lookups = {0};
+        DataSource dataSource = sqlite(dir);
+        try (MetricsCollector collector = new MetricsCollector(List.of("lite"), ds -> {
+            lookups[0]++;
+            return dataSource;
+        }, 5000, 60_000)) {
+            String first = collector.scrape();
+            String second = collector.scrape();
+            assertEquals(first, second);
+            assertEquals(1, lookups[0]);
+        }
+    }
+
+    @Test
+    void parsesStatusValues() {
+        assertEquals(12, MetricsCollector.parse("12"));
+        assertEquals(-1.5, MetricsCollector.parse("-1.5"));
+        assertEquals(1, MetricsCollector.parse("ON"));
+        assertEquals(0, MetricsCollector.parse("off"));
+        assertEquals(1, MetricsCollector.parse("Yes"));
+        assertTrue(Double.isNaN(MetricsCollector.parse("utf8mb4")));
+        assertTrue(Double.isNaN(MetricsCollector.parse("")));
+        assertTrue(Double.isNaN(MetricsCollector.parse(null)));
+        assertTrue(Double.isNaN(MetricsCollector.parse("1.2.3")));
+    }
+}
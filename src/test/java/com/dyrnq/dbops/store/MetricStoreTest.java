@@ -0,0 +1,35 @@
+package com.dyrnq.dbops.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MetricStoreTest {
+
+    @Test
+    void rollupWeighsGaugesByWidthAndSumsCounters(@TempDir Path dir) throws Exception {
+        try (MetricStore store = new MetricStore(dir.resolve("store.db").toString())) {
+            long gauge = store.seriesId("db", MetricStore.GAUGE, "threads");
+            long counter = store.seriesId("db", MetricStore.COUNTER, "queries");
+            // 10 for 240 seconds, then 70 for 60 seconds
+            store.add(gauge, 600, 10, 240);
+            store.add(gauge, 660, 70, 60);
+            store.add(counter, 600, 100, 240);
+            store.add(counter, 660, 30, 60);
+            store.add(counter, 1000, 5, 340);
+            store.flush();
+            store.maintain(1000, 0, 86_400);
+
+            assertArrayEquals(new long[][]{{600, 22, 300}}, store.read(gauge, 0));
+            long[][] counters = store.read(counter, 0);
+            assertEquals(2, counters.length);
+            assertArrayEquals(new long[]{600, 130, 300}, counters[0]);
+            // still raw, the bucket at 900 is not complete before 1200
+            assertArrayEquals(new long[]{1000, 5, 340}, counters[1]);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.dyrnq.dbops.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtidSetTest {
+    private static final String A = "3e11fa47-71ca-11e1-9e33-c80aa9429562";
+    private static final String B = "8a94f357-aab4-11df-86ab-c80aa9429562";
+
+    @Test
+    void parsesAndPrintsServerFormat() {
+        GtidSet set = GtidSet.parse(A + ":1-5:7:9-10,\n" + B + ":1-100");
+        assertEquals(A + ":1-5:7:9-10," + B + ":1-100", set.toString());
+        assertEquals(108, set.count());
+    }
+
+    @Test
+    void emptyInput() {
+        assertTrue(GtidSet.parse(null).isEmpty());
+        assertTrue(GtidSet.parse(" \n").isEmpty());
+        assertEquals(0, GtidSet.parse("").count());
+        assertEquals("", GtidSet.parse("").toString());
+    }
+
+    @Test
+    void mergesUnsortedOverlappingAndAdjacentIntervals() {
+        GtidSet set = GtidSet.parse(A + ":20-30:1-5:6-10:8-12:31:40");
+        assertEquals(A + ":1-12:20-31:40", set.toString());
+        assertEquals(12 + 12 + 1, set.count());
+        // the same source in two members is one set of intervals
+        assertEquals(A + ":1-7", GtidSet.parse(A + ":5-7," + A + ":1-4").toString());
+    }
+
+    @Test
+    void mixedCaseUuidsAreTheSameSource() {
+        GtidSet set = GtidSet.parse(A.toUpperCase() + ":1-3," + A + ":4-6");
+        assertEquals(A + ":1-6", set.toString());
+        assertTrue(GtidSet.parse(A + ":1-6").subtract(GtidSet.parse(A.toUpperCase() + ":1-6")).isEmpty());
+    }
+
+    @Test
+    void taggedMembersAreSeparateSources() {
+        GtidSet set = GtidSet.parse(A + ":1-3:batch:1-2:5");
+        assertEquals(A + ":1-3," + A + ":batch:1-2:5", set.toString());
+        assertEquals(6, set.count());
+        GtidSet missing = set.subtract(GtidSet.parse(A + ":1-3:batch:1-2"));
+        assertEquals(A + ":batch:5", missing.toString());
+        assertEquals(1, missing.count());
+    }
+
+    @Test
+    void subtractSplitsAndTrimsIntervals() {
+        GtidSet source = GtidSet.parse(A + ":1-100," + B + ":1-10");
+        GtidSet replica = GtidSet.parse(A + ":1-10:20-30:95-120," + B + ":1-10");
+        GtidSet missing = source.subtract(replica);
+        assertEquals(A + ":11-19:31-94", missing.toString());
+        assertEquals(9 + 64, missing.count());
+    }
+
+    @Test
+    void subtractEdgeCases() {
+        GtidSet set = GtidSet.parse(A + ":1-10");
+        assertEquals(set.toString(), set.subtract(GtidSet.parse("")).toString());
+        assertEquals(set.toString(), set.subtract(GtidSet.parse(B + ":1-10")).toString());
+        assertTrue(set.subtract(GtidSet.parse(A + ":1-10")).isEmpty());
+        assertTrue(set.subtract(GtidSet.parse(A + ":1-1000")).isEmpty());
+        assertEquals(A + ":1:10", set.subtract(GtidSet.parse(A + ":2-9")).toString());
+        assertEquals(A + ":2-3:5-6:8-10", set.subtract(GtidSet.parse(A + ":1:4:7")).toString());
+        assertTrue(GtidSet.parse("").subtract(set).isEmpty());
+    }
+
+    @Test
+    void manyGapsSubtractToTheGaps() {
+        StringBuilder sb = new StringBuilder(A);
+        for (int i = 0; i < 100_000; i++) {
+            sb.append(':').append(i * 3 + 1).append('-').append(i * 3 + 2);
+        }
+        GtidSet set = GtidSet.parse(sb.toString());
+        assertEquals(200_000, set.count());
+        assertTrue(set.subtract(GtidSet.parse(A + ":1-300000")).isEmpty());
+        assertEquals(100_000, GtidSet.parse(A + ":1-300000").subtract(set).count());
+    }
+}
@@ -0,0 +1,70 @@
+package com.dyrnq.dbops.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlClassifierTest {
+
+    @Test
+    void queriesAreReadOnly() {
+        assertTrue(SqlClassifier.isReadOnly("SELECT * FROM t WHERE a = 'x; DELETE FROM t'"));
+        assertTrue(SqlClassifier.isReadOnly("(SELECT 1) UNION (SELECT 2);"));
+        assertTrue(SqlClassifier.isReadOnly("TABLE t"));
+        assertTrue(SqlClassifier.isReadOnly("-- comment\nSELECT /*!40001 SQL_NO_CACHE */ * FROM t"));
+        assertTrue(SqlClassifier.isReadOnly("WITH RECURSIVE c (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM c WHERE n < 3) SELECT * FROM c"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT * INTO OUTFILE '/tmp/t' FROM t"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT 1; DELETE FROM t"));
+    }
+
+    @Test
+    void withIsClassifiedByItsStatement() {
+        assertEquals("UPDATE", SqlClassifier.statementType("WITH c AS (SELECT 1) UPDATE t JOIN c SET t.a = 1"));
+        assertEquals("DELETE", SqlClassifier.statementType("with `update` as (select 1) delete from t"));
+        assertFalse(SqlClassifier.isReadOnly("WITH c AS (SELECT id FROM t) DELETE FROM t WHERE id IN (SELECT id FROM c)"));
+        assertFalse(SqlClassifier.isReadOnly("WITH c AS (SELECT 1) UPDATE t JOIN c SET t.a = 1"));
+    }
+
+    @Test
+    void onlySessionSetIsReadOnly() {
+        assertTrue(SqlClassifier.isReadOnly("SET NAMES utf8mb4"));
+        assertTrue(SqlClassifier.isReadOnly("SET @a = 1, @@session.sql_mode = ''"));
+        assertTrue(SqlClassifier.isReadOnly("SET TRANSACTION ISOLATION LEVEL READ COMMITTED"));
+        assertFalse(SqlClassifier.isReadOnly("SET PASSWORD = 'secret'"));
+        assertFalse(SqlClassifier.isReadOnly("SET PASSWORD FOR 'app'@'%' = 'secret'"));
+        assertFalse(SqlClassifier.isReadOnly("SET GLOBAL max_connections = 10"));
+        assertFalse(SqlClassifier.isReadOnly("SET sql_mode = '', GLOBAL max_connections = 10"));
+        assertFalse(SqlClassifier.isReadOnly("SET @@global.max_connections = 10"));
+        assertFalse(SqlClassifier.isReadOnly("SET PERSIST max_connections = 10"));
+        assertFalse(SqlClassifier.isReadOnly("SET DEFAULT ROLE ALL TO app"));
+        assertFalse(SqlClassifier.isReadOnly("/*!40101 SET GLOBAL max_connections = 10 */"));
+    }
+
+    @Test
+    void onlyStartTransactionIsReadOnly() {
+        assertTrue(SqlClassifier.isReadOnly("START TRANSACTION READ ONLY"));
+        assertTrue(SqlClassifier.isReadOnly("BEGIN"));
+        assertFalse(SqlClassifier.isReadOnly("START REPLICA"));
+        assertFalse(SqlClassifier.isReadOnly("START GROUP_REPLICATION"));
+        assertFalse(SqlClassifier.isReadOnly("BEGIN NOT ATOMIC DELETE FROM t; END"));
+    }
+
+    @Test
+    void explainAnalyzeRunsItsStatement() {
+        assertTrue(SqlClassifier.isReadOnly("EXPLAIN FORMAT=JSON DELETE FROM t"));
+        assertTrue(SqlClassifier.isReadOnly("EXPLAIN ANALYZE FORMAT=TREE SELECT * FROM t"));
+        assertFalse(SqlClassifier.isReadOnly("EXPLAIN ANALYZE UPDATE t SET a = 1"));
+    }
+
+    @Test
+    void plainQueriesNeitherWriteNorLock() {
+        assertTrue(SqlClassifier.isPlainQuery("SELECT 'FOR UPDATE' FROM t"));
+        assertFalse(SqlClassifier.isPlainQuery("SELECT * FROM t WHERE id = 1 FOR UPDATE"));
+        assertFalse(SqlClassifier.isPlainQuery("WITH c AS (SELECT 1) SELECT * FROM c FOR SHARE"));
+        assertFalse(SqlClassifier.isPlainQuery("SELECT * FROM t LOCK IN SHARE MODE"));
+        assertFalse(SqlClassifier.isPlainQuery("SHOW STATUS"));
+        assertFalse(SqlClassifier.isPlainQuery("WITH c AS (SELECT 1) DELETE FROM t"));
+    }
+}